@@ -0,0 +1,110 @@
+package jpabook.jpashop;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.service.MemberService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+// 서비스, 리포지토리 벤치마크용 애플리케이션 컨텍스트 + 메모리 H2 데이터
+// 데이터 크기마다 다른 메모리 DB를 쓴다. (같은 JVM에서 크기별로 실행해도 섞이지 않도록)
+public final class BenchmarkData {
+
+    public static final int ITEM_COUNT = 100;
+    private static final int CHUNK_SIZE = 1000;
+
+    private final ConfigurableApplicationContext context;
+    private final Long[] memberIds;
+    private final Long[] itemIds;
+
+    private BenchmarkData(ConfigurableApplicationContext context, Long[] memberIds, Long[] itemIds) {
+        this.context = context;
+        this.memberIds = memberIds;
+        this.itemIds = itemIds;
+    }
+
+    // 회원 orderCount / 10명, 상품 100개, 주문 orderCount개 (주문마다 상품 하나)
+    public static BenchmarkData start(String name, int orderCount) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(JpashopApplication.class)
+                .properties(
+                        "spring.main.web-application-type=none",
+                        "spring.main.banner-mode=off",
+                        "spring.datasource.url=jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1",
+                        "spring.jpa.open-in-view=false",
+                        // 쿼리 로그, 배경 작업이 측정에 끼어들지 않도록
+                        "decorator.datasource.p6spy.enable-logging=false",
+                        "jpashop.outbox.relay.enabled=false",
+                        "logging.level.root=warn")
+                .run();
+
+        EntityManager em = context.getBean(EntityManagerFactory.class).createEntityManager();
+        try {
+            em.getTransaction().begin();
+            Long[] itemIds = new Long[ITEM_COUNT];
+            for (int i = 0; i < ITEM_COUNT; i++) {
+                Book book = new Book();
+                book.setName("book-" + i);
+                book.setPrice(10000 + i * 100);
+                book.setStockQuantity(Integer.MAX_VALUE / 2);
+                em.persist(book);
+                itemIds[i] = book.getId();
+            }
+            Long[] memberIds = new Long[Math.max(10, orderCount / 10)];
+            for (int i = 0; i < memberIds.length; i++) {
+                Member member = new Member();
+                member.setName("member-" + i);
+                member.setAddress(new Address("서울", "경기", "123-123"));
+                em.persist(member);
+                memberIds[i] = member.getId();
+                flushChunk(em, i);
+            }
+            em.flush();
+            em.clear();
+
+            for (int i = 0; i < orderCount; i++) {
+                Member member = em.getReference(Member.class, memberIds[i % memberIds.length]);
+                Book book = em.find(Book.class, itemIds[i % itemIds.length]);
+                OrderItem orderItem = OrderItem.createOrderItem(book, book.getPrice(), 1);
+                em.persist(Order.createOrder(member, new Delivery(), orderItem));
+                flushChunk(em, i);
+            }
+            em.getTransaction().commit();
+
+            // 시작 시 만든 회원 이름 색인에는 방금 넣은 회원이 없다. (없어도 like 검색으로 찾지만, 색인 경로를 측정하려고 다시 만든다)
+            context.getBean(MemberService.class).buildMemberNameIndex();
+            return new BenchmarkData(context, memberIds, itemIds);
+        } finally {
+            em.close();
+        }
+    }
+
+    private static void flushChunk(EntityManager em, int index) {
+        if ((index + 1) % CHUNK_SIZE == 0) {
+            em.flush();
+            em.clear();
+        }
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public Long memberId(int index) {
+        return memberIds[index % memberIds.length];
+    }
+
+    public Long itemId(int index) {
+        return itemIds[index % itemIds.length];
+    }
+
+    public void close() {
+        context.close();
+    }
+}
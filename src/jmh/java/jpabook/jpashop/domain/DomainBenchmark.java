@@ -0,0 +1,93 @@
+package jpabook.jpashop.domain;
+
+import jpabook.jpashop.domain.item.Book;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// 주문 도메인 로직 (DB 없이 엔티티 객체만)
+// ./gradlew jmh -PjmhInclude=DomainBenchmark
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class DomainBenchmark {
+
+    private static final int HOT_ITEM_SHARDS = 8;
+
+    private Book book;
+    private Book hotBook;
+
+    // 재고는 매 반복(iteration)마다 다시 채운다. (반복 하나에 수천만 번 차감해도 모자라지 않게)
+    @Setup(Level.Iteration)
+    public void setUp() {
+        book = book("book", Integer.MAX_VALUE);
+        hotBook = book("hot book", Integer.MAX_VALUE);
+        hotBook.enableHotMode(HOT_ITEM_SHARDS);
+    }
+
+    // 주문상품 수별 주문
+    @State(Scope.Thread)
+    public static class Lines {
+
+        @Param({"1", "10", "100"})
+        int orderLines;
+
+        OrderItem[] orderItems;
+        Order order;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            orderItems = new OrderItem[orderLines];
+            for (int i = 0; i < orderLines; i++) {
+                Book book = book("line book " + i, Integer.MAX_VALUE);
+                orderItems[i] = OrderItem.createOrderItem(book, book.getPrice(), 2);
+            }
+            order = Order.createOrder(new Member(), new Delivery(), orderItems);
+        }
+    }
+
+    @Benchmark
+    public OrderItem createOrderItem() {
+        return OrderItem.createOrderItem(book, book.getPrice(), 1);
+    }
+
+    // 회원은 주문 목록(member.orders)이 계속 늘어나지 않도록 매번 새로 만든다.
+    @Benchmark
+    public Order createOrder(Lines lines) {
+        return Order.createOrder(new Member(), new Delivery(), lines.orderItems);
+    }
+
+    @Benchmark
+    public int getTotalPrice(Lines lines) {
+        return lines.order.getTotalPrice();
+    }
+
+    @Benchmark
+    public int removeStock() {
+        book.removeStock(1);
+        return book.getStockQuantity();
+    }
+
+    // 인기 상품 모드: 무작위 재고 조각에서 차감
+    @Benchmark
+    public Book removeStockHotItem() {
+        hotBook.removeStock(1);
+        return hotBook;
+    }
+
+    private static Book book(String name, int stockQuantity) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(10000);
+        book.setStockQuantity(stockQuantity);
+        return book;
+    }
+}
@@ -0,0 +1,73 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.BenchmarkData;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import java.util.concurrent.TimeUnit;
+
+// OrderRepository.findAll의 criteria 조립 비용 (조회는 하지 않는다)
+// - buildCriteria: CriteriaQuery 조립 (검색 조건, 회원 이름 색인 조회 포함)
+// - createQuery: 조립 + 하이버네이트의 JPQL 변환, 쿼리 계획(캐시)까지
+// ./gradlew jmh -PjmhInclude=OrderRepositoryBenchmark
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class OrderRepositoryBenchmark {
+
+    @Param({"status", "memberName", "both"})
+    String search;
+
+    private BenchmarkData data;
+    private OrderRepository orderRepository;
+    private EntityManager em;
+    private CriteriaBuilder cb;
+    private OrderSearch orderSearch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = BenchmarkData.start("order-repository-" + search, 1000);
+        orderRepository = data.getBean(OrderRepository.class);
+        em = data.getBean(EntityManagerFactory.class).createEntityManager();
+        cb = em.getCriteriaBuilder();
+
+        orderSearch = new OrderSearch();
+        if (!"memberName".equals(search)) {
+            orderSearch.setOrderStatus(OrderStatus.ORDER);
+        }
+        if (!"status".equals(search)) {
+            orderSearch.setMemberName("member-7");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+        data.close();
+    }
+
+    @Benchmark
+    public CriteriaQuery<Order> buildCriteria() {
+        return orderRepository.findAllCriteria(cb, orderSearch);
+    }
+
+    @Benchmark
+    public TypedQuery<Order> createQuery() {
+        return em.createQuery(orderRepository.findAllCriteria(cb, orderSearch)).setMaxResults(1000);
+    }
+}
@@ -0,0 +1,71 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.BenchmarkData;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.OrderSearch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// 주문 서비스 전체 경로 (트랜잭션 + JPA + 메모리 H2), 기존 주문 수별
+// order()는 실행하는 동안 주문이 계속 쌓이므로, 뒤쪽 반복일수록 데이터가 조금씩 커진다.
+// ./gradlew jmh -PjmhInclude=OrderServiceBenchmark
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class OrderServiceBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int orderCount;
+
+    private BenchmarkData data;
+    private OrderService orderService;
+    private OrderSearch byStatus;
+    private OrderSearch byMemberName;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = BenchmarkData.start("order-service-" + orderCount, orderCount);
+        orderService = data.getBean(OrderService.class);
+
+        byStatus = new OrderSearch();
+        byStatus.setOrderStatus(OrderStatus.ORDER);
+        // 이름 색인으로 회원 id를 찾는 경로 (member-7, member-70, member-700, ...)
+        byMemberName = new OrderSearch();
+        byMemberName.setMemberName("member-7");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        data.close();
+    }
+
+    @Benchmark
+    public Long order() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return orderService.order(data.memberId(random.nextInt(orderCount)), data.itemId(random.nextInt(BenchmarkData.ITEM_COUNT)), 1);
+    }
+
+    // 주문 상태 검색: 최대 1000건
+    @Benchmark
+    public List<Order> findOrdersByStatus() {
+        return orderService.findOrders(byStatus);
+    }
+
+    @Benchmark
+    public List<Order> findOrdersByMemberName() {
+        return orderService.findOrders(byMemberName);
+    }
+}
@@ -2,9 +2,13 @@ package jpabook.jpashop;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 // 이 어노테이션에 의해서 패키지 내의 component들을 scan한다. => bean으로 자동 관리
 @SpringBootApplication
+@EnableJpaAuditing // 엔티티 생성, 수정 시각 자동 기록 (BaseTimeEntity)
+@EnableScheduling // 배송 처리 (DeliveryDispatcher)
 public class JpashopApplication {
 
 	public static void main(String[] args) {
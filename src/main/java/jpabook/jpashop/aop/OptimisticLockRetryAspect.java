@@ -0,0 +1,55 @@
+package jpabook.jpashop.aop;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.OptimisticLockException;
+import java.util.concurrent.ThreadLocalRandom;
+
+// @RetryOnOptimisticLock 메서드 재시도
+// 트랜잭션 advice(LOWEST_PRECEDENCE)보다 우선순위를 높게 줘서 트랜잭션 바깥을 감싼다.
+// => 재시도할 때마다 새 트랜잭션에서 엔티티를 다시 읽고(최신 재고, version) 비즈니스 로직을 다시 수행한다.
+@Slf4j
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+public class OptimisticLockRetryAspect {
+
+    @Around("@annotation(retry)")
+    public Object retry(ProceedingJoinPoint joinPoint, RetryOnOptimisticLock retry) throws Throwable {
+        // 이미 바깥 트랜잭션에 참여하고 있으면, 여기서 재시도해봐야 같은 (이미 실패한) 트랜잭션이다. => 바깥에 맡긴다.
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+
+        int attempt = 1;
+        while (true) {
+            try {
+                return joinPoint.proceed();
+            } catch (ConcurrencyFailureException | OptimisticLockException e) {
+                // 커밋 시점의 @Version 충돌, 같은 row 락 대기 시간 초과 등
+                if (attempt >= retry.maxAttempts()) {
+                    log.warn("optimistic lock retry exhausted: {} ({} attempts)", joinPoint.getSignature().toShortString(), attempt);
+                    throw e;
+                }
+                backoff(retry.backoffMillis(), attempt);
+                attempt++;
+            }
+        }
+    }
+
+    // 동시에 충돌한 요청들이 또 동시에 재시도하지 않도록 대기 시간을 흩뿌린다.
+    private void backoff(long backoffMillis, int attempt) throws InterruptedException {
+        long max = backoffMillis << (attempt - 1);
+        if (max > 0) {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(max) + 1);
+        }
+    }
+}
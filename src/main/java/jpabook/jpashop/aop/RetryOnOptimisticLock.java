@@ -0,0 +1,19 @@
+package jpabook.jpashop.aop;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// 낙관적 락 충돌(@Version) 시 트랜잭션을 처음부터 다시 실행한다.
+// 트랜잭션 바깥에서 재시도해야 하므로 @Transactional 메서드에 함께 붙인다. (OptimisticLockRetryAspect)
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnOptimisticLock {
+
+    // 최초 실행 포함 최대 실행 횟수
+    int maxAttempts() default 3;
+
+    // 재시도 전 대기 시간의 기준(ms), 재시도할수록 늘어나고 무작위로 흩뿌린다.
+    long backoffMillis() default 10;
+}
@@ -0,0 +1,131 @@
+package jpabook.jpashop.api;
+
+
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.CategoryTree;
+import jpabook.jpashop.repository.ItemPage;
+import jpabook.jpashop.service.CategoryService;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RestController
+@RequiredArgsConstructor
+public class CategoryApiController {
+
+    private final CategoryService categoryService;
+
+    // 조회(GET)
+
+    // 카테고리 트리 전체, 메모리 스냅샷에서 바로 응답 (쿼리 X)
+    @GetMapping("/api/v1/categories")
+    public Result<List<CategoryDto>> categoriesV1() {
+        List<CategoryDto> collect = categoryService.getTree().getRoots().stream()
+                .map(CategoryDto::new)
+                .collect(Collectors.toList());
+        return new Result<>(collect);
+    }
+
+    // 카테고리 상품 목록 (키셋 페이징)
+    // /api/v1/categories/{id}/items?size=..&cursor=..&subtree=true
+    // subtree=true 이면 하위 카테고리의 상품까지, 응답의 nextCursor를 다음 요청의 cursor로 넘기면 다음 페이지
+    @GetMapping("/api/v1/categories/{id}/items")
+    public PageResult<List<CategoryItemDto>> categoryItemsV1(
+            @PathVariable("id") Long id,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "20") int size,
+            @RequestParam(value = "subtree", defaultValue = "false") boolean subtree) {
+        ItemPage page = categoryService.findItemPage(id, cursor, size, subtree);
+        List<CategoryItemDto> collect = page.getContent().stream()
+                .map(CategoryItemDto::new)
+                .collect(Collectors.toList());
+        return new PageResult<>(collect, page.getNextCursor());
+    }
+
+    // 등록(POST)
+
+    // { "name": "소설", "parentId": 1 }
+    @PostMapping("/api/v1/categories")
+    public CreateCategoryResponse saveCategoryV1(@RequestBody @Valid CreateCategoryRequest request) {
+        Long id = categoryService.addCategory(request.getName(), request.getParentId());
+        return new CreateCategoryResponse(id);
+    }
+
+    // 카테고리에 상품 연결, 해제
+    @PutMapping("/api/v1/categories/{id}/items/{itemId}")
+    public void addCategoryItemV1(@PathVariable("id") Long id, @PathVariable("itemId") Long itemId) {
+        categoryService.addItem(id, itemId);
+    }
+
+    @DeleteMapping("/api/v1/categories/{id}/items/{itemId}")
+    public void removeCategoryItemV1(@PathVariable("id") Long id, @PathVariable("itemId") Long itemId) {
+        categoryService.removeItem(id, itemId);
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class Result<T> {
+        private T data;
+    }
+
+    // 페이지 조회 응답 { "data": [...], "nextCursor": "..." }
+    @Data
+    @AllArgsConstructor
+    static class PageResult<T> {
+        private T data;
+        private String nextCursor;
+    }
+
+    // 카테고리 (하위 카테고리 포함)
+    // 상품 수는 미리 세어둔 값이므로 상품 컬렉션을 읽지 않는다.
+    @Data
+    static class CategoryDto {
+        private Long id;
+        private String name;
+        private int itemCount;
+        private int subtreeItemCount;
+        private List<CategoryDto> children;
+
+        public CategoryDto(CategoryTree.Node node) {
+            id = node.getId();
+            name = node.getName();
+            itemCount = node.getItemCount();
+            subtreeItemCount = node.getSubtreeItemCount();
+            children = node.getChildren().stream()
+                    .map(CategoryDto::new)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @Data
+    static class CategoryItemDto {
+        private Long itemId;
+        private String name;
+        private int price;
+
+        public CategoryItemDto(Item item) {
+            itemId = item.getId();
+            name = item.getName();
+            price = item.getPrice();
+        }
+    }
+
+    @Data
+    static class CreateCategoryRequest {
+        @NotEmpty
+        private String name;
+        private Long parentId;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class CreateCategoryResponse {
+        private Long id;
+    }
+}
@@ -0,0 +1,47 @@
+package jpabook.jpashop.api;
+
+
+import jpabook.jpashop.service.ItemImportResult;
+import jpabook.jpashop.service.ItemImportService;
+import jpabook.jpashop.service.ItemService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+@RestController
+@RequiredArgsConstructor
+public class ItemApiController {
+
+    private final ItemService itemService;
+    private final ItemImportService itemImportService;
+
+    // 상품 카탈로그 일괄 등록: 요청 본문이 CSV 또는 NDJSON 파일
+    // /api/v1/items/import?format=csv
+    // 본문을 한 줄씩 읽으면서 저장하므로 파일 크기와 관계없이 메모리 사용량이 일정하다.
+    // 잘못된 행은 건너뛰고, 결과에 줄 번호와 사유를 담아서 응답한다.
+    @PostMapping("/api/v1/items/import")
+    public ItemImportResult importItems(@RequestParam(value = "format", defaultValue = "csv") String format,
+                                        HttpServletRequest request) throws IOException {
+        return itemImportService.importItems(
+                new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8), format);
+    }
+
+    // 인기 상품 모드 켜기 (재고 조각 수 지정)
+    // /api/v1/items/{id}/hot?shards=8
+    @PostMapping("/api/v1/items/{id}/hot")
+    public void enableHotMode(@PathVariable("id") Long id,
+                              @RequestParam(value = "shards", defaultValue = "8") int shards) {
+        itemService.enableHotMode(id, shards);
+    }
+
+    // 인기 상품 모드 끄기
+    @DeleteMapping("/api/v1/items/{id}/hot")
+    public void disableHotMode(@PathVariable("id") Long id) {
+        itemService.disableHotMode(id);
+    }
+
+}
@@ -1,15 +1,25 @@
 package jpabook.jpashop.api;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.service.IdempotencyService;
+import jpabook.jpashop.service.MemberJoinResult;
 import jpabook.jpashop.service.MemberService;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotEmpty;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -18,6 +28,8 @@ import java.util.stream.Collectors;
 public class MemberApiController {
 
     private final MemberService memberService;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyService idempotencyService;
 
     // MVC Controller와 RestController의 차이?? (메서드 반환값 타입 등)
 
@@ -29,8 +41,13 @@ public class MemberApiController {
     // 조회(GET)
 
     // 전체 회원 조회
+    // 조건부 GET (ETag): 회원 목록 버전이 If-None-Match와 같으면 목록 조회, 직렬화 없이 304 응답
+    // 응답 형식(v1, v2)이 다르므로 ETag에 버전을 붙여서 구분한다.
     @GetMapping("/api/v1/members")
-    public List<Member> membersV1() {
+    public List<Member> membersV1(WebRequest webRequest) {
+        if (webRequest.checkNotModified("members-v1-" + memberService.findMembersVersion())) {
+            return null;
+        }
         // 단순히 엔티티 리스트를 담아서 응답
         // 문제점: Member 엔티티들이 가지고 있는 모든 정보들이 외부로 노출됨
         // => JsonIgnore로 해결 가능하지만 다른 문제가 여전히 존재함: 엔티티와 api 스펙 간 서로 영향을 주고 받게 됨
@@ -42,7 +59,10 @@ public class MemberApiController {
     }
 
     @GetMapping("/api/v2/members")
-    public Result memberV2() {
+    public Result memberV2(WebRequest webRequest) {
+        if (webRequest.checkNotModified("members-v2-" + memberService.findMembersVersion())) {
+            return null;
+        }
         // DB에서 먼저 회원 엔티티들을 받고, => 하나 씩 회원 DTO에 담기 => 회원 DTO 리스트 만들기
         List<Member> findMembers = memberService.findMembers();
         List<MemberDto> collect = findMembers.stream()
@@ -52,6 +72,25 @@ public class MemberApiController {
         return new Result(collect);
     }
 
+    // 회원 전체 내보내기 (format=ndjson | csv)
+    // v2처럼 엔티티 리스트 => DTO 리스트 => JSON 으로 전부 메모리에 올리지 않고,
+    // DB 커서에서 한 행 읽을 때마다 응답 스트림에 바로 쓴다. => 회원 수와 관계없이 메모리 사용량이 일정하다.
+    @GetMapping("/api/v1/members/export")
+    public void exportMembers(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                              HttpServletResponse response) throws IOException {
+        // 형식 확인은 출력 스트림을 열기 전에 (열고 나면 400 응답 본문을 쓸 수 없다)
+        String contentType = MemberExportWriter.contentType(format);
+        MemberExportWriter exportWriter = MemberExportWriter.of(format,
+                new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8), objectMapper);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setContentType(contentType);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"members." + format.toLowerCase() + "\"");
+
+        exportWriter.writeHeader();
+        memberService.exportMembers(exportWriter::write);
+        exportWriter.flush();
+    }
+
     // 등록(POST)
 
     // 방법1: 엔티티를 직접 인자로 받아서 바인딩, 노출됨
@@ -72,15 +111,44 @@ public class MemberApiController {
     // 방법2: 별도의 data transformation object로 데이터 받기
     // => 즉, request, response 둘다 별도의 객체로 이루어짐 (요청 => request DTO => 비즈니스 로직 => response DTO => 응답)
     // => 엔티티와 api 스펙이 서로 영향을 주지 않는다.
+    // Idempotency-Key 헤더: 타임아웃 후 재시도해도 한 번만 가입하고, 처음 만들어진 회원 id로 같은 응답을 준다.
     @PostMapping("/api/v2/members")
-    public CreateMemberResponse saveMemberV2(@RequestBody @Valid CreateMemberRequest request) {
+    public CreateMemberResponse saveMemberV2(@RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                             @RequestBody @Valid CreateMemberRequest request) {
         Member member = new Member();
         member.setName(request.getName());
 
-        Long id = memberService.join(member);
+        Long id = idempotencyService.execute("member", idempotencyKey, request.getName(),
+                () -> memberService.join(member));
         return new CreateMemberResponse(id);
     }
 
+    // 방법3: 일괄 등록 (다른 시스템에서 회원을 옮겨올 때)
+    // 한 명씩 등록 api를 부르면 회원마다 중복 조회 + insert 왕복이 생긴다.
+    // => 중복 검사는 in 절 몇 번, insert는 JDBC 배치로 처리하고, 회원마다 등록된 id 또는 실패 사유를 요청 순서대로 응답한다.
+    @PostMapping("/api/v2/members/batch")
+    public BatchCreateMemberResponse saveMembersV2(@RequestBody BatchCreateMemberRequest request) {
+        List<Member> members = request.getMembers().stream()
+                .map(m -> {
+                    Member member = new Member();
+                    member.setName(m.getName());
+                    return member;
+                })
+                .collect(Collectors.toList());
+
+        List<MemberJoinResult> results = memberService.joinBatch(members);
+        List<BatchCreateMemberResult> data = new ArrayList<>(results.size());
+        int created = 0;
+        for (int i = 0; i < results.size(); i++) {
+            MemberJoinResult result = results.get(i);
+            data.add(new BatchCreateMemberResult(i, result.getId(), result.getError()));
+            if (result.isSuccess()) {
+                created++;
+            }
+        }
+        return new BatchCreateMemberResponse(created, results.size() - created, data);
+    }
+
     // 수정(PUT)
 
     // 요청 => 수정 request DTO => 비즈니스 로직 => 수정 response DTO => 응답
@@ -137,6 +205,30 @@ public class MemberApiController {
         private String name;
     }
 
+    // 일괄 등록
+    // 항목별로 결과를 응답해야 하므로 @Valid로 요청 전체를 거절하지 않고, 서비스에서 항목마다 검증한다.
+    @Data
+    static class BatchCreateMemberRequest {
+        private List<CreateMemberRequest> members = new ArrayList<>();
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class BatchCreateMemberResponse {
+        private int created;
+        private int failed;
+        private List<BatchCreateMemberResult> data;
+    }
+
+    // 요청의 index번째 회원: 성공하면 id, 실패하면 error
+    @Data
+    @AllArgsConstructor
+    static class BatchCreateMemberResult {
+        private int index;
+        private Long id;
+        private String error;
+    }
+
     @Data
     static class CreateMemberResponse{
         private Long id;
@@ -0,0 +1,127 @@
+package jpabook.jpashop.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jpabook.jpashop.exception.InvalidRequestException;
+import jpabook.jpashop.repository.MemberExportDto;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+// 회원 내보내기 한 행씩 응답 스트림에 쓰기 (NDJSON, CSV)
+// 행을 모아두지 않고 바로 쓰므로, 메모리는 버퍼 크기만큼만 쓴다.
+abstract class MemberExportWriter {
+
+    // 이 행 수마다 flush => 클라이언트가 다운로드를 바로 받기 시작하고, 버퍼가 커지지 않는다.
+    private static final int FLUSH_ROWS = 1000;
+
+    protected final Writer writer;
+    private int rows;
+
+    MemberExportWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    static MemberExportWriter of(String format, Writer writer, ObjectMapper objectMapper) {
+        if ("ndjson".equalsIgnoreCase(format)) {
+            return new Ndjson(writer, objectMapper);
+        }
+        if ("csv".equalsIgnoreCase(format)) {
+            return new Csv(writer);
+        }
+        throw unsupported(format);
+    }
+
+    // 응답 본문을 열기 전에 호출 => 지원하지 않는 형식이면 400
+    static String contentType(String format) {
+        if ("ndjson".equalsIgnoreCase(format)) {
+            return "application/x-ndjson";
+        }
+        if ("csv".equalsIgnoreCase(format)) {
+            return "text/csv";
+        }
+        throw unsupported(format);
+    }
+
+    private static InvalidRequestException unsupported(String format) {
+        return new InvalidRequestException("지원하지 않는 형식입니다. (ndjson, csv) format=" + format);
+    }
+
+    // 커서를 도는 중에 호출되므로 IOException은 unchecked로 감싼다. (클라이언트가 연결을 끊은 경우 등)
+    void write(MemberExportDto row) {
+        try {
+            writeRow(row);
+            if (++rows % FLUSH_ROWS == 0) {
+                writer.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void writeHeader() throws IOException {
+    }
+
+    void flush() throws IOException {
+        writer.flush();
+    }
+
+    protected abstract void writeRow(MemberExportDto row) throws IOException;
+
+    // 한 줄에 회원 하나 (JSON)
+    static class Ndjson extends MemberExportWriter {
+
+        private final ObjectMapper objectMapper;
+
+        Ndjson(Writer writer, ObjectMapper objectMapper) {
+            super(writer);
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        protected void writeRow(MemberExportDto row) throws IOException {
+            writer.write(objectMapper.writeValueAsString(row));
+            writer.write('\n');
+        }
+    }
+
+    // RFC 4180: 쉼표, 따옴표, 줄바꿈이 들어간 값은 따옴표로 감싸고, 따옴표는 두 번 쓴다.
+    static class Csv extends MemberExportWriter {
+
+        Csv(Writer writer) {
+            super(writer);
+        }
+
+        @Override
+        void writeHeader() throws IOException {
+            writer.write("id,name,city,street,zipcode\r\n");
+        }
+
+        @Override
+        protected void writeRow(MemberExportDto row) throws IOException {
+            writer.write(String.valueOf(row.getId()));
+            writer.write(',');
+            writeField(row.getName());
+            writer.write(',');
+            writeField(row.getCity());
+            writer.write(',');
+            writeField(row.getStreet());
+            writer.write(',');
+            writeField(row.getZipcode());
+            writer.write("\r\n");
+        }
+
+        private void writeField(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+}
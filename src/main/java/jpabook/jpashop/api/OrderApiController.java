@@ -0,0 +1,257 @@
+package jpabook.jpashop.api;
+
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.exception.InvalidRequestException;
+import jpabook.jpashop.exception.NotFoundException;
+import jpabook.jpashop.repository.OrderListDto;
+import jpabook.jpashop.repository.OrderPage;
+import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.service.OrderAdmission;
+import jpabook.jpashop.service.OrderIntakeQueue;
+import jpabook.jpashop.service.OrderService;
+import jpabook.jpashop.service.OrderTicket;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@RestController
+@RequiredArgsConstructor
+public class OrderApiController {
+
+    // v2 한 페이지 최대 주문 수: default_batch_fetch_size(100)와 맞춰서, 주문상품, 상품을 각각 in 절 한 번에 가져오도록 한다.
+    private static final int MAX_V2_PAGE_SIZE = 100;
+
+    // 번호표 조회 롱 폴링 최대 대기 시간
+    private static final long MAX_TICKET_WAIT_MILLIS = 30_000;
+
+    private final OrderService orderService;
+    private final OrderIntakeQueue orderIntakeQueue;
+    private final OrderAdmission orderAdmission;
+
+    // 조회(GET)
+
+    // 주문 목록 조회 (키셋 페이징)
+    // /api/v1/orders?memberName=..&orderStatus=..&size=..&cursor=..
+    // 응답의 nextCursor를 다음 요청의 cursor로 넘기면 다음 페이지, nextCursor가 null이면 마지막 페이지
+    // offset 페이징과 달리 깊은 페이지도 첫 페이지와 같은 비용으로 조회된다.
+    @GetMapping("/api/v1/orders")
+    public PageResult<List<OrderListDto>> ordersV1(@ModelAttribute OrderSearch orderSearch,
+                                                   @RequestParam(value = "cursor", required = false) String cursor,
+                                                   @RequestParam(value = "size", defaultValue = "20") int size) {
+        OrderPage<OrderListDto> page = orderService.findOrderListPage(orderSearch, cursor, size);
+        return new PageResult<>(page.getContent(), page.getNextCursor());
+    }
+
+    // 주문 + 주문상품 전체 조회 (키셋 페이징)
+    // 1. 주문 + 회원 + 배송: fetch join (xToOne 관계는 행 수가 늘지 않으므로 페이징에 문제 없음)
+    // 2. 주문상품: 지연 로딩, default_batch_fetch_size에 의해 페이지의 주문 id들을 in 절로 한 번에
+    // 3. 상품: 지연 로딩, 마찬가지로 in 절로 한 번에
+    // => 페이지 크기와 관계없이 쿼리 3번, 페이징은 DB에서 수행
+    @GetMapping("/api/v2/orders")
+    public PageResult<List<OrderDto>> ordersV2(@ModelAttribute OrderSearch orderSearch,
+                                               @RequestParam(value = "cursor", required = false) String cursor,
+                                               @RequestParam(value = "size", defaultValue = "20") int size) {
+        OrderPage<Order> page = orderService.findOrderPage(orderSearch, cursor, Math.min(size, MAX_V2_PAGE_SIZE));
+        List<OrderDto> collect = page.getContent().stream()
+                .map(OrderDto::new)
+                .collect(Collectors.toList());
+        return new PageResult<>(collect, page.getNextCursor());
+    }
+
+    // 등록(POST)
+
+    // 장바구니 주문: 여러 상품을 한 주문으로
+    // { "memberId": 1, "orderItems": [ { "itemId": 2, "count": 3 }, ... ] }
+    @PostMapping("/api/v1/orders")
+    public CreateOrderResponse saveOrderV1(@RequestBody @Valid CreateOrderRequest request) {
+        // 같은 상품이 여러 줄로 오면 수량을 합친다.
+        Map<Long, Integer> itemCounts = new LinkedHashMap<>();
+        for (OrderLineRequest line : request.getOrderItems()) {
+            itemCounts.merge(line.getItemId(), line.getCount(), Integer::sum);
+        }
+        // 회원별 속도 제한, 전체 동시 주문 수 제한 => 넘으면 429 + Retry-After
+        Long orderId = orderAdmission.admit(request.getMemberId(), () -> orderService.checkout(request.getMemberId(), itemCounts));
+        return new CreateOrderResponse(orderId);
+    }
+
+    // 비동기 주문 접수
+    // { "memberId": 1, "itemId": 2, "count": 3 } => 202 { "ticketId": "...", "status": "PENDING" }
+    // 주문은 대기열에서 다른 주문들과 묶여서 커밋된다. 결과는 번호표 조회로 확인한다.
+    // 대기열이 가득 차면 503 (잠시 후 다시 시도)
+    @PostMapping("/api/v1/orders/async")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public OrderTicketResponse saveOrderAsyncV1(@RequestBody @Valid CreateAsyncOrderRequest request) {
+        OrderTicket ticket = orderIntakeQueue.submit(request.getMemberId(), request.getItemId(), request.getCount());
+        return new OrderTicketResponse(ticket);
+    }
+
+    // 번호표 조회
+    // waitMillis를 주면 결과가 나오거나 그 시간이 지날 때까지 응답을 미룬다. (롱 폴링, 요청 스레드는 기다리지 않는다)
+    @GetMapping("/api/v1/orders/tickets/{ticketId}")
+    public DeferredResult<OrderTicketResponse> orderTicketV1(@PathVariable("ticketId") String ticketId,
+                                                             @RequestParam(value = "waitMillis", defaultValue = "0") long waitMillis) {
+        OrderTicket ticket = orderIntakeQueue.findTicket(ticketId);
+        if (ticket == null) {
+            throw new NotFoundException("없거나 보관 기간이 지난 번호표입니다. ticketId=" + ticketId);
+        }
+        long wait = Math.min(waitMillis, MAX_TICKET_WAIT_MILLIS);
+        DeferredResult<OrderTicketResponse> result = new DeferredResult<>(wait > 0 ? wait : null);
+        if (wait <= 0) {
+            result.setResult(new OrderTicketResponse(ticket));
+            return result;
+        }
+        // 시간이 지나면 그때의 상태(PENDING)로 응답
+        result.onTimeout(() -> result.setResult(new OrderTicketResponse(ticket)));
+        ticket.getCompletion().thenAccept(t -> result.setResult(new OrderTicketResponse(t)));
+        return result;
+    }
+
+    // 일괄 주문 취소
+    // { "orderIds": [1, 2, 3] } 또는 { "memberName": "..." } (검색 조건에 맞는 주문 최대 1000건)
+    // 배송 완료된 주문, 이미 취소된 주문은 건너뛰고 실제로 취소된 주문 id 목록을 응답한다.
+    @PostMapping("/api/v1/orders/cancel")
+    public BulkCancelResponse cancelOrdersV1(@RequestBody BulkCancelRequest request) {
+        List<Long> cancelled;
+        if (request.getOrderIds() != null) {
+            cancelled = orderService.cancelOrders(new LinkedHashSet<>(request.getOrderIds()));
+        } else if (StringUtils.hasText(request.getMemberName())) {
+            OrderSearch orderSearch = new OrderSearch();
+            orderSearch.setMemberName(request.getMemberName());
+            cancelled = orderService.cancelOrders(orderSearch);
+        } else {
+            // 조건 없이 전체 주문을 취소하는 실수를 막는다.
+            throw new InvalidRequestException("orderIds 또는 memberName이 필요합니다.");
+        }
+        return new BulkCancelResponse(cancelled.size(), cancelled);
+    }
+
+    // 페이지 조회 응답 { "data": [...], "nextCursor": "..." }
+    @Data
+    @AllArgsConstructor
+    static class PageResult<T> {
+        private T data;
+        private String nextCursor;
+    }
+
+    // 등록
+    @Data
+    static class CreateOrderRequest {
+        @NotNull
+        private Long memberId;
+        @NotEmpty
+        @Valid
+        private List<OrderLineRequest> orderItems;
+    }
+
+    @Data
+    static class OrderLineRequest {
+        @NotNull
+        private Long itemId;
+        @Min(1)
+        private int count;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class CreateOrderResponse {
+        private Long orderId;
+    }
+
+    // 비동기 주문 접수
+    @Data
+    static class CreateAsyncOrderRequest {
+        @NotNull
+        private Long memberId;
+        @NotNull
+        private Long itemId;
+        @Min(1)
+        private int count;
+    }
+
+    @Data
+    static class OrderTicketResponse {
+        private String ticketId;
+        private OrderTicket.Status status;
+        private Long orderId;
+        private String error;
+
+        public OrderTicketResponse(OrderTicket ticket) {
+            // status를 먼저 읽는다. (OrderTicket 참고)
+            status = ticket.getStatus();
+            ticketId = ticket.getId();
+            orderId = ticket.getOrderId();
+            error = ticket.getError();
+        }
+    }
+
+    // 일괄 취소
+    @Data
+    static class BulkCancelRequest {
+        private List<Long> orderIds;
+        private String memberName;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class BulkCancelResponse {
+        private int count;
+        private List<Long> cancelledOrderIds;
+    }
+
+    // 주문
+    // 엔티티를 그대로 노출하지 않고, 안의 주문상품(OrderItem) 역시 DTO로 바꿔서 응답한다.
+    @Data
+    static class OrderDto {
+        private Long orderId;
+        private String name;
+        private LocalDateTime orderDate;
+        private OrderStatus orderStatus;
+        private Address address;
+        private List<OrderItemDto> orderItems;
+
+        public OrderDto(Order order) {
+            orderId = order.getId();
+            name = order.getMember().getName();
+            orderDate = order.getOrderDate();
+            orderStatus = order.getStatus();
+            address = order.getDelivery().getAddress();
+            orderItems = order.getOrderItems().stream()
+                    .map(OrderItemDto::new)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    // 주문상품
+    @Data
+    static class OrderItemDto {
+        private String itemName;
+        private int orderPrice;
+        private int count;
+
+        public OrderItemDto(OrderItem orderItem) {
+            itemName = orderItem.getItem().getName();
+            orderPrice = orderItem.getOrderPrice();
+            count = orderItem.getCount();
+        }
+    }
+
+}
@@ -10,6 +10,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -45,8 +46,13 @@ public class ItemController {
         return "redirect:/";
     }
 
+    // 조건부 GET: 상품 목록 버전을 ETag로 내려주고, 클라이언트가 If-None-Match로 같은 값을 보내면
+    // 목록 조회, 화면 렌더링 없이 304 Not Modified로 응답한다. (버전 확인은 버전 행 조회 한 번)
     @GetMapping("/items")
-    public String list(Model model) {
+    public String list(Model model, WebRequest webRequest) {
+        if (webRequest.checkNotModified("items-" + itemService.findItemsVersion())) {
+            return null;
+        }
         List<Item> items = itemService.findItems();
         model.addAttribute("items", items);
         return "items/itemList";
@@ -2,11 +2,14 @@ package jpabook.jpashop.controller;
 
 
 import jpabook.jpashop.domain.Member;
-import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.OrderListDto;
+import jpabook.jpashop.repository.OrderPage;
 import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.service.IdempotencyService;
 import jpabook.jpashop.service.ItemService;
 import jpabook.jpashop.service.MemberService;
+import jpabook.jpashop.service.OrderAdmission;
 import jpabook.jpashop.service.OrderService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
@@ -14,6 +17,7 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.UUID;
 
 @Controller
 @RequiredArgsConstructor
@@ -22,6 +26,8 @@ public class OrderController {
     private final OrderService orderService;
     private final MemberService memberService;
     private final ItemService itemService;
+    private final IdempotencyService idempotencyService;
+    private final OrderAdmission orderAdmission;
 
     @GetMapping("/order")
     public String creataForm(Model model) {
@@ -33,6 +39,8 @@ public class OrderController {
         // 리스트 안에서 선택할 수 있도록 폼에 리스트들을 담아서 화면에 넘겨주기
         model.addAttribute("members", members);
         model.addAttribute("items", items);
+        // 주문 버튼을 두 번 누르거나 새로고침으로 다시 보내도 주문이 한 번만 되도록, 폼마다 멱등 키를 하나 심어둔다.
+        model.addAttribute("idempotencyKey", UUID.randomUUID().toString());
 
         return "order/orderForm";
 
@@ -43,24 +51,37 @@ public class OrderController {
     // get 방식에서 작성한 form을 submit 했을 때, 담겨져 있는 parameter들의 html name을 명시해준다. (RequestParam)
     // => form의 해당 html name의 parameter들을 각각 클래스 parameter 변수들에 바인딩
     @PostMapping("/order")
+    // 멱등 키: api 클라이언트는 Idempotency-Key 헤더, 화면은 폼의 idempotencyKey 값
+    // 입장 제한(OrderAdmission)은 실제로 주문할 때만 => 이미 처리된 키의 재시도는 토큰을 쓰지 않는다.
     public String order(@RequestParam("memberId") Long memberId,
                         @RequestParam("itemId") Long itemId,
-                        @RequestParam("count") int count) {
+                        @RequestParam("count") int count,
+                        @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKeyHeader,
+                        @RequestParam(value = "idempotencyKey", required = false) String idempotencyKeyParam) {
 
         // controller에서 엔티티를 찾아서 처리하는 것이 아니라, 서비스의 메서드를 호출하는 방식으로 구현하는 것이 깔끔하다.
         // 또한 서비스에서 트랜잭션 내에서 비즈니스 로직을 수행해야 영속 상태로 엔티티를 다룰 수 있으므로 편리하다.
         // 만약 contoller에서 엔티티를 생성하면 그것은 영속 상태가 아니므로, 그것을 서비스에 보내도 jpa로 처리하기가 까다로워 지므로 하지 말자.
         // controller는 식별자만 념겨주고, 비즈니스 로직은 다른 곳에서 처리하도록 하자.
-        orderService.order(memberId, itemId, count);
+        String idempotencyKey = idempotencyKeyHeader != null ? idempotencyKeyHeader : idempotencyKeyParam;
+        idempotencyService.execute("order", idempotencyKey, memberId + ":" + itemId + ":" + count,
+                () -> orderAdmission.admit(memberId, () -> orderService.order(memberId, itemId, count)));
         return "redirect:/orders";
     }
 
     @GetMapping("/orders")
-    public String orderList(@ModelAttribute("orderSearch") OrderSearch orderSearch, Model model) {
+    public String orderList(@ModelAttribute("orderSearch") OrderSearch orderSearch,
+                            @RequestParam(value = "cursor", required = false) String cursor,
+                            @RequestParam(value = "size", defaultValue = "20") int size,
+                            Model model) {
         // ModelAttribute 어노테이션으로 처리한 엔티티는 바로 model의 attribute에 담겨진다.
         // 검색을 누르면 폼이 submit 되면서 orderSearch 클래스의 name, status 속성값들이 바인딩되서 넘어온다.
-        List<Order> orders = orderService.findOrders(orderSearch);
-        model.addAttribute("orders", orders);
+        // 주문 엔티티 대신 화면용 DTO를 넘긴다. (주문 수, 페이지 깊이와 관계없이 쿼리 2번)
+        OrderPage<OrderListDto> page = orderService.findOrderListPage(orderSearch, cursor, size);
+        model.addAttribute("orders", page.getContent());
+        // 다음 페이지 링크에 실어 보낼 토큰
+        model.addAttribute("nextCursor", page.getNextCursor());
+        model.addAttribute("size", size);
 
         return "order/orderList";
 
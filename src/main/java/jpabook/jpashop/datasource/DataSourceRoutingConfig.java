@@ -0,0 +1,111 @@
+package jpabook.jpashop.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.JpaVendorAdapter;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// 읽기/쓰기 분리 설정 (jpashop.datasource.routing.enabled=true 일 때만)
+// 끄면 스프링 부트 기본 데이터소스(spring.datasource) 하나만 쓴다.
+//
+// 주 DB: spring.datasource.* 그대로
+// 복제본: jpashop.datasource.routing.replica-urls (쉼표로 구분), 계정은 따로 주지 않으면 주 DB와 같다.
+@Configuration
+@ConditionalOnProperty(name = "jpashop.datasource.routing.enabled", havingValue = "true")
+public class DataSourceRoutingConfig {
+
+    // 내부 라우팅 데이터소스 빈 이름: p6spy가 감싸지 않도록 제외한다. (바깥 LazyConnectionDataSourceProxy만 감싸야 쿼리 로그가 한 번 찍힌다)
+    public static final String ROUTING_DATA_SOURCE = "routingDataSource";
+
+    @Bean(ROUTING_DATA_SOURCE)
+    public ReplicationRoutingDataSource routingDataSource(
+            DataSourceProperties dataSourceProperties,
+            @Value("${jpashop.datasource.routing.replica-urls:}") String[] replicaUrls,
+            @Value("${jpashop.datasource.routing.replica-username:${spring.datasource.username:sa}}") String replicaUsername,
+            @Value("${jpashop.datasource.routing.replica-password:${spring.datasource.password:}}") String replicaPassword,
+            @Value("${jpashop.datasource.routing.connection-timeout-millis:1000}") long connectionTimeoutMillis,
+            @Value("${jpashop.datasource.routing.read-your-writes-millis:3000}") long readYourWritesMillis) {
+
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        primary.setPoolName("primary");
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : replicaUrls) {
+            if (!StringUtils.hasText(url)) {
+                continue;
+            }
+            String name = "replica-" + replicas.size();
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(url.trim())
+                    .username(replicaUsername)
+                    .password(replicaPassword)
+                    .build();
+            replica.setPoolName(name);
+            replica.setReadOnly(true);
+            // 죽은 복제본에서 오래 기다리지 않고 주 DB로 넘어가도록 짧게
+            replica.setConnectionTimeout(connectionTimeoutMillis);
+            replica.setInitializationFailTimeout(-1);
+            replicas.put(name, replica);
+        }
+
+        return new ReplicationRoutingDataSource(primary, replicas, readYourWritesMillis);
+    }
+
+    // JPA, 트랜잭션 매니저가 쓰는 데이터소스
+    // LazyConnectionDataSourceProxy: 트랜잭션 시작 시에는 가짜 커넥션만 주고, 첫 쿼리 때 실제 커넥션을 가져온다.
+    // => 그때는 readOnly 여부가 트랜잭션 동기화에 등록되어 있으므로 라우팅 데이터소스가 주 DB/복제본을 고를 수 있다.
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicationRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    // 커넥션을 트랜잭션이 끝날 때마다 반납한다.
+    // 기본값(세션이 닫힐 때 반납)이면 OSIV로 요청 내내 열려있는 세션이 첫 트랜잭션의 커넥션(주 DB 또는 복제본)을 계속 쓴다.
+    @Bean
+    public HibernatePropertiesCustomizer connectionHandlingCustomizer() {
+        return properties -> properties.put("hibernate.connection.handling_mode",
+                "DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION");
+    }
+
+    // 복제본에서 읽은 엔티티가 2차 캐시에 들어가지 않도록 (ReplicaAwareJpaDialect)
+    // 스프링 부트 기본 JpaVendorAdapter와 같은 설정에 JpaDialect만 바꾼다.
+    @Bean
+    public JpaVendorAdapter jpaVendorAdapter(JpaProperties jpaProperties, DataSource dataSource) {
+        ReplicaAwareJpaDialect jpaDialect = new ReplicaAwareJpaDialect();
+        HibernateJpaVendorAdapter adapter = new HibernateJpaVendorAdapter() {
+            @Override
+            public HibernateJpaDialect getJpaDialect() {
+                return jpaDialect;
+            }
+        };
+        adapter.setShowSql(jpaProperties.isShowSql());
+        adapter.setDatabase(jpaProperties.determineDatabase(dataSource));
+        adapter.setDatabasePlatform(jpaProperties.getDatabasePlatform());
+        adapter.setGenerateDdl(jpaProperties.isGenerateDdl());
+        return adapter;
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter() {
+        return new ReadYourWritesFilter();
+    }
+}
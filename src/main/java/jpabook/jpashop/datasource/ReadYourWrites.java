@@ -0,0 +1,63 @@
+package jpabook.jpashop.datasource;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+
+// 자기가 쓴 데이터 읽기(read-your-writes)
+// 복제본은 주 DB보다 늦게 반영되므로, 방금 쓴 클라이언트가 바로 다시 읽으면 쓰기 전 데이터를 볼 수 있다.
+// => 쓰기 트랜잭션이 커밋되면 일정 시간(window) 동안 그 클라이언트의 읽기도 주 DB로 보낸다.
+// 같은 요청(스레드) 안에서는 ThreadLocal, 다음 요청부터는 쿠키(만료 시각)로 전달한다. => 다른 서버로 가도 유지된다.
+public final class ReadYourWrites {
+
+    public static final String COOKIE_NAME = "jpashop-primary-until";
+
+    private static final ThreadLocal<Long> PRIMARY_UNTIL = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    // 주 DB로 읽어야 하는 시간 안인지
+    public static boolean isActive() {
+        Long until = PRIMARY_UNTIL.get();
+        return until != null && System.currentTimeMillis() < until;
+    }
+
+    // 요청 시작 시 쿠키 값으로 설정 (ReadYourWritesFilter)
+    static void restore(Long until) {
+        if (until == null) {
+            PRIMARY_UNTIL.remove();
+        } else {
+            PRIMARY_UNTIL.set(until);
+        }
+    }
+
+    static void clear() {
+        PRIMARY_UNTIL.remove();
+    }
+
+    // 쓰기 트랜잭션 커밋 후: 지금부터 windowMillis 동안 주 DB로 읽는다.
+    // 아직 응답을 보내기 전이면 쿠키로도 내려준다.
+    static void wrote(long windowMillis) {
+        if (windowMillis <= 0) {
+            return;
+        }
+        long until = System.currentTimeMillis() + windowMillis;
+        PRIMARY_UNTIL.set(until);
+
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes) {
+            HttpServletResponse response = ((ServletRequestAttributes) attributes).getResponse();
+            if (response != null && !response.isCommitted()) {
+                Cookie cookie = new Cookie(COOKIE_NAME, String.valueOf(until));
+                cookie.setPath("/");
+                cookie.setHttpOnly(true);
+                cookie.setMaxAge((int) Math.max(1, windowMillis / 1000));
+                response.addCookie(cookie);
+            }
+        }
+    }
+}
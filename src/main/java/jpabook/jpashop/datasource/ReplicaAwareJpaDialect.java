@@ -0,0 +1,51 @@
+package jpabook.jpashop.datasource;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+
+import javax.persistence.EntityManager;
+import java.sql.SQLException;
+
+// 읽기 전용 트랜잭션이 복제본 커넥션을 잡으면, 그 트랜잭션 동안 세션은 2차 캐시, 쿼리 캐시에서 읽기만 한다. (CacheMode.GET)
+// 커넥션은 첫 쿼리 때 잡으므로(LazyConnectionDataSourceProxy) 캐시에 넣기 전에 캐시 모드가 바뀐다.
+// 트랜잭션이 끝나면 원래 캐시 모드로 돌린다. (OSIV로 세션이 다음 트랜잭션에서도 쓰인다)
+public class ReplicaAwareJpaDialect extends HibernateJpaDialect {
+
+    @Override
+    public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition) throws SQLException {
+        Object transactionData = super.beginTransaction(entityManager, definition);
+        if (!definition.isReadOnly()) {
+            return transactionData;
+        }
+        Session session = entityManager.unwrap(Session.class);
+        CacheMode previousCacheMode = session.getCacheMode();
+        ReplicaReads.beginTransaction(() -> session.setCacheMode(CacheMode.GET));
+        return new ReadOnlyTransactionData(transactionData, session, previousCacheMode);
+    }
+
+    @Override
+    public void cleanupTransaction(Object transactionData) {
+        if (!(transactionData instanceof ReadOnlyTransactionData)) {
+            super.cleanupTransaction(transactionData);
+            return;
+        }
+        ReadOnlyTransactionData data = (ReadOnlyTransactionData) transactionData;
+        ReplicaReads.endTransaction();
+        data.session.setCacheMode(data.previousCacheMode);
+        super.cleanupTransaction(data.delegate);
+    }
+
+    private static final class ReadOnlyTransactionData {
+        private final Object delegate;
+        private final Session session;
+        private final CacheMode previousCacheMode;
+
+        ReadOnlyTransactionData(Object delegate, Session session, CacheMode previousCacheMode) {
+            this.delegate = delegate;
+            this.session = session;
+            this.previousCacheMode = previousCacheMode;
+        }
+    }
+}
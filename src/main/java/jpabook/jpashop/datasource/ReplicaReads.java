@@ -0,0 +1,92 @@
+package jpabook.jpashop.datasource;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Supplier;
+
+// 복제본에서 읽은 데이터로 캐시를 채우지 않기
+// 복제본은 주 DB보다 늦다. 커밋 후에 캐시를 무효화해도, 그 뒤에 복제본에서 예전 데이터를 읽어 다시 채우면
+// 복제 지연이 캐시 만료(또는 다음 무효화)까지 늘어난다.
+// - 캐시를 채우는 조회(주문 검색 캐시, 카테고리 트리)는 fromPrimary로 감싸서 주 DB에서 읽는다.
+// - 이미 복제본 커넥션을 잡은 트랜잭션 안이면 커넥션을 바꿀 수 없으므로, 그 결과는 캐시에 넣지 않는다. (isCurrentTransactionOnReplica)
+// - 하이버네이트 2차 캐시, 쿼리 캐시: 복제본 커넥션을 잡은 세션은 캐시에서 읽기만 하고 넣지 않는다. (ReplicaAwareJpaDialect)
+// 읽기/쓰기 분리를 끄면(복제본 없음) 아무 일도 하지 않는다.
+public final class ReplicaReads {
+
+    private static final ThreadLocal<Boolean> FORCE_PRIMARY = new ThreadLocal<>();
+
+    private ReplicaReads() {
+    }
+
+    // loader 안에서 새로 잡는 커넥션은 readOnly 트랜잭션이라도 주 DB로
+    public static <T> T fromPrimary(Supplier<T> loader) {
+        Boolean previous = FORCE_PRIMARY.get();
+        FORCE_PRIMARY.set(Boolean.TRUE);
+        try {
+            return loader.get();
+        } finally {
+            if (previous == null) {
+                FORCE_PRIMARY.remove();
+            }
+        }
+    }
+
+    // 현재 트랜잭션이 복제본 커넥션으로 읽었는지
+    public static boolean isCurrentTransactionOnReplica() {
+        Holder holder = (Holder) TransactionSynchronizationManager.getResource(ReplicaReads.class);
+        return holder != null && holder.onReplica;
+    }
+
+    static boolean isPrimaryForced() {
+        return FORCE_PRIMARY.get() != null;
+    }
+
+    // 읽기 전용 트랜잭션 시작 시 (ReplicaAwareJpaDialect), onReplica: 복제본 커넥션을 잡으면 할 일
+    static void beginTransaction(Runnable onReplica) {
+        TransactionSynchronizationManager.bindResource(ReplicaReads.class, new Holder(onReplica));
+    }
+
+    static void endTransaction() {
+        TransactionSynchronizationManager.unbindResourceIfPossible(ReplicaReads.class);
+    }
+
+    // 라우팅 데이터소스가 복제본 커넥션을 내줄 때
+    // JPA 트랜잭션이 아니면(JDBC 트랜잭션 매니저) 여기서 표시를 만들고, 트랜잭션이 끝나면 지운다.
+    static void replicaConnectionAcquired() {
+        Holder holder = (Holder) TransactionSynchronizationManager.getResource(ReplicaReads.class);
+        if (holder == null) {
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                return;
+            }
+            holder = new Holder(null);
+            TransactionSynchronizationManager.bindResource(ReplicaReads.class, holder);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    endTransaction();
+                }
+            });
+        }
+        holder.replica();
+    }
+
+    private static final class Holder {
+        private final Runnable callback;
+        private boolean onReplica;
+
+        Holder(Runnable callback) {
+            this.callback = callback;
+        }
+
+        void replica() {
+            if (onReplica) {
+                return;
+            }
+            onReplica = true;
+            if (callback != null) {
+                callback.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package jpabook.jpashop.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 읽기/쓰기 분리 데이터소스
+// @Transactional(readOnly = true) 트랜잭션은 복제본(replica)으로, 나머지(쓰기 트랜잭션, 트랜잭션 밖)는 주 DB(primary)로 보낸다.
+// 서비스들이 이미 클래스 레벨 readOnly = true + 쓰기 메서드만 @Transactional 이므로, 코드 수정 없이 조회가 복제본으로 간다.
+//
+// - 복제본이 여러 개면 돌아가면서(round robin) 쓴다.
+// - 연결에 실패한 복제본은 내리고(down) 주 DB로 넘긴다. 내려간 복제본은 주기적인 health check로 다시 올린다.
+// - 쓰기 트랜잭션이 커밋되면 잠시(ReadYourWrites) 그 클라이언트의 읽기도 주 DB로 보낸다. (복제 지연)
+// - 캐시를 채우는 조회(ReplicaReads.fromPrimary)는 주 DB로 보내고, 복제본 커넥션을 내주면 트랜잭션에 표시한다. (ReplicaReads)
+//
+// 주의: 트랜잭션 매니저는 readOnly 여부를 트랜잭션 동기화에 등록하기 전에 커넥션을 가져간다.
+// => 반드시 LazyConnectionDataSourceProxy로 감싸서, 첫 쿼리 시점(readOnly 여부가 정해진 후)에 커넥션을 고르게 한다. (DataSourceRoutingConfig)
+@Slf4j
+public class ReplicationRoutingDataSource extends AbstractDataSource {
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long readYourWritesMillis;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicationRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, long readYourWritesMillis) {
+        this.primary = primary;
+        replicas.forEach((name, dataSource) -> this.replicas.add(new Replica(name, dataSource)));
+        this.readYourWritesMillis = readYourWritesMillis;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (routesToReplica()) {
+            Replica replica = nextAvailableReplica();
+            if (replica != null) {
+                try {
+                    Connection connection = replica.dataSource.getConnection();
+                    ReplicaReads.replicaConnectionAcquired();
+                    return connection;
+                } catch (SQLException e) {
+                    replica.down(e);
+                }
+            }
+        }
+        registerReadYourWrites();
+        return primary.getConnection();
+    }
+
+    // 다른 계정의 커넥션은 복제본 계정을 알 수 없으므로 주 DB로만
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    // 현재 읽기 전용 트랜잭션이 가게 될 곳 (테스트, 로그 확인용)
+    public String currentRoute() {
+        if (routesToReplica()) {
+            Replica replica = peekAvailableReplica();
+            if (replica != null) {
+                return replica.name;
+            }
+        }
+        return "primary";
+    }
+
+    // 내려간 복제본 다시 확인 (연결 + isValid)
+    @Scheduled(fixedDelayString = "${jpashop.datasource.routing.health-check-millis:5000}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            if (replica.up) {
+                continue;
+            }
+            try (Connection connection = replica.dataSource.getConnection()) {
+                if (connection.isValid(1)) {
+                    replica.up = true;
+                    log.info("replica {} is back up", replica.name);
+                }
+            } catch (SQLException e) {
+                log.debug("replica {} is still down: {}", replica.name, e.getMessage());
+            }
+        }
+    }
+
+    // 빈 종료 시 (스프링이 close 메서드를 찾아서 호출) 커넥션 풀들을 닫는다.
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable) {
+                ((AutoCloseable) replica.dataSource).close();
+            }
+        }
+        if (primary instanceof AutoCloseable) {
+            ((AutoCloseable) primary).close();
+        }
+    }
+
+    private boolean routesToReplica() {
+        return !replicas.isEmpty()
+                && TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && !ReadYourWrites.isActive()
+                && !ReplicaReads.isPrimaryForced();
+    }
+
+    private Replica nextAvailableReplica() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.up) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private Replica peekAvailableReplica() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.get(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.up) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    // 쓰기 트랜잭션이 주 DB 커넥션을 가져가면, 커밋 후에 read-your-writes 시간을 시작한다. (트랜잭션당 한 번)
+    private void registerReadYourWrites() {
+        if (readYourWritesMillis <= 0 || replicas.isEmpty()
+                || !TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                ReadYourWrites.wrote(readYourWritesMillis);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(ReplicationRoutingDataSource.this);
+            }
+        });
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean up = true;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        void down(SQLException e) {
+            if (up) {
+                up = false;
+                log.warn("replica {} is down, routing reads to primary: {}", name, e.getMessage());
+            }
+        }
+    }
+}
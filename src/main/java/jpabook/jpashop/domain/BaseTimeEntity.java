@@ -0,0 +1,31 @@
+package jpabook.jpashop.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import javax.persistence.Column;
+import javax.persistence.EntityListeners;
+import javax.persistence.MappedSuperclass;
+import java.time.LocalDateTime;
+
+// 생성, 수정 시각 (JPA Auditing)
+// persist, 변경 감지 update 시 자동으로 채워진다. 벌크 update는 엔티티를 거치지 않으므로 직접 수정 시각을 넣어야 한다.
+// 엔티티를 그대로 응답하는 api(/api/v1/members)의 JSON에는 넣지 않는다. (응답 스펙이 바뀌지 않도록)
+@MappedSuperclass
+@EntityListeners(AuditingEntityListener.class)
+@Getter
+public abstract class BaseTimeEntity {
+
+    @JsonIgnore
+    @CreatedDate
+    @Column(name = "created_date", updatable = false)
+    private LocalDateTime createdDate;
+
+    @JsonIgnore
+    @LastModifiedDate
+    @Column(name = "last_modified_date")
+    private LocalDateTime lastModifiedDate;
+}
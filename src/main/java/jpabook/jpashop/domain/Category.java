@@ -9,6 +9,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+// 하위 트리 조회 (path like '/1/5/%')를 인덱스 범위 검색으로
+@Table(indexes = @Index(name = "idx_category_path", columnList = "path"))
 @Getter @Setter
 public class Category {
 
@@ -28,8 +30,11 @@ public class Category {
     @ManyToMany
     @JoinTable(name = "category_item",
             joinColumns = @JoinColumn(name = "category_id"),
-            inverseJoinColumns = @JoinColumn(name = "item_id"))
+            inverseJoinColumns = @JoinColumn(name = "item_id"),
+            // 같은 상품을 두 번 연결하지 않도록 + 카테고리별 상품 키셋 페이징((category_id, item_id) 순서)에 쓰는 인덱스
+            uniqueConstraints = @UniqueConstraint(name = "uk_category_item", columnNames = {"category_id", "item_id"}))
             // 중간 테이블에서 사용되는 외래키값들 넣어주기
+    // 컬렉션을 통째로 읽지 않도록, 상품 연결, 해제와 상품 목록 조회는 category_item을 직접 사용한다. (CategoryService)
     private List<Item> items = new ArrayList<>();
 
 
@@ -44,11 +49,41 @@ public class Category {
     @OneToMany(mappedBy = "parent")
     private List<Category> child = new ArrayList<>();
 
+    // 경로 (materialized path): 루트부터 자신까지의 id, 예) 도서(1) > 소설(5) > 추리(12) => "/1/5/12/"
+    // parent를 따라 올라가거나 child를 따라 내려가면 단계마다 쿼리가 나가므로,
+    // "이 카테고리 아래 전부"를 path like '/1/5/%' 한 번으로 찾는다.
+    private String path;
+
+    // 상품 수: 카테고리 화면에서 items 컬렉션 전체를 읽지 않도록 미리 세어둔다.
+    // 상품 연결, 해제 시 CategoryService가 update 문으로 +1, -1 한다. (동시에 연결해도 갱신 분실 X)
+    private int itemCount; // 이 카테고리에 직접 연결된 상품 수
+    private int subtreeItemCount; // 하위 카테고리까지 합친 상품 수 (서로 다른 상품 수, 하위 트리의 여러 카테고리에 연결된 상품도 한 번)
+
     // 연관관계 편의 메서드
     // 카테고리 간 부모 자식 관계는 양방향에서 다 설정해줘야 함
     public void addChildCategory(Category child){
+        if (child.getParent() != null && child.getParent() != this) {
+            // 하위 트리 전체의 path를 바꿔야 하므로 다른 부모로 옮기는 것은 지원하지 않는다.
+            throw new IllegalStateException("이미 다른 상위 카테고리에 속한 카테고리입니다.");
+        }
         this.child.add(child);
         child.setParent(this);
+        child.updatePath();
+    }
+
+    // id가 정해진 뒤(persist 이후)에 path를 만든다. 상위 카테고리가 먼저 저장되어 있어야 한다.
+    public void updatePath() {
+        if (id == null) {
+            return;
+        }
+        if (parent == null) {
+            path = "/" + id + "/";
+            return;
+        }
+        if (parent.getPath() == null) {
+            throw new IllegalStateException("상위 카테고리를 먼저 저장해야 합니다.");
+        }
+        path = parent.getPath() + id + "/";
     }
 
 
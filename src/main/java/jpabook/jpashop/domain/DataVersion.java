@@ -0,0 +1,57 @@
+package jpabook.jpashop.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// 데이터 버전 (서버 간 캐시 무효화)
+// 데이터 종류마다 여러 행(조각), 그 데이터를 바꾸는 트랜잭션이 같은 트랜잭션에서 버전을 올린다. (DataVersions.bump)
+// 서버마다 메모리에 든 캐시는 보관할 때의 버전과 지금 버전을 비교해서, 다른 서버가 바꾼 데이터도 알아챈다.
+@Entity
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class DataVersion {
+
+    // 카테고리 트리 (CategoryTreeCache)
+    public static final String CATEGORY = "category";
+    // 회원 이름, 상품 이름 (주문 검색 결과 캐시 OrderSearchCache)
+    public static final String MEMBER = "member";
+    public static final String ITEM = "item";
+    // 회원 목록, 상품 목록 전체 (목록 조회 api의 ETag, 회원 목록은 주문 검색의 회원 이름 색인 확인에도 쓴다)
+    // 가입, 수정, 상품 등록, 재고 변경(주문, 취소)마다 올린다.
+    public static final String MEMBER_LIST = "member.list";
+    public static final String ITEM_LIST = "item.list";
+
+    // 주문 상태별 주문 (주문 검색 결과 캐시)
+    public static String orders(OrderStatus status) {
+        return "orders." + status.name().toLowerCase();
+    }
+
+    // 모든 버전 이름, 시작할 때 행을 만들어 둔다. (DataVersions.register) 새 버전을 추가하면 여기에도 넣는다.
+    public static List<String> names() {
+        List<String> names = new ArrayList<>(Arrays.asList(CATEGORY, MEMBER, ITEM, MEMBER_LIST, ITEM_LIST));
+        for (OrderStatus status : OrderStatus.values()) {
+            names.add(orders(status));
+        }
+        return names;
+    }
+
+    @Id
+    @Column(name = "data_version_name")
+    private String name;
+
+    @Column(name = "data_version")
+    private long version;
+
+    public DataVersion(String name, long version) {
+        this.name = name;
+        this.version = version;
+    }
+}
@@ -5,13 +5,21 @@ import lombok.Getter;
 import lombok.Setter;
 
 import javax.persistence.*;
+import java.time.LocalDateTime;
 
 @Entity
+// 배송 처리(DeliveryDispatcher): 준비된 배송을 id 순서로 찾고, 임대한 배송을 임대 토큰으로 찾는다.
+@Table(indexes = {
+        @Index(name = "idx_delivery_status", columnList = "status, delivery_id"),
+        @Index(name = "idx_delivery_lease_owner", columnList = "lease_owner")
+})
 @Getter @Setter
 public class Delivery {
 
 
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "delivery_seq_generator")
+    @SequenceGenerator(name = "delivery_seq_generator", sequenceName = "delivery_seq", allocationSize = 50)
     @Column(name = "delivery_id")
     private Long id;
 
@@ -28,7 +36,18 @@ public class Delivery {
 
     // 상태 필드를 String 타입으로 저장? enumerated 공부하자.
     @Enumerated(EnumType.STRING)
-    private DeliveryStatus status; // 배송 상태 [READY, COMP]
+    private DeliveryStatus status; // 배송 상태 [READY, COMP, CANCEL]
+
+    // 배송 처리와 주문 취소가 같은 배송을 동시에 바꾸지 않도록
+    // 배송 처리의 벌크 update도 version을 올리므로, 그 사이 주문 취소(Order.cancel)는 충돌 => 재시도하면서 COMP를 보게 된다.
+    @Version
+    private Long version;
+
+    // 배송 처리 임대: 어느 배송 처리 묶음이 이 배송을 가져갔는지(임대 토큰), 언제까지인지
+    // 가져간 노드가 죽으면 임대 시간이 지난 뒤 다른 노드가 다시 가져간다.
+    @Column(name = "lease_owner")
+    private String leaseOwner;
+    private LocalDateTime leaseUntil;
 
 
 
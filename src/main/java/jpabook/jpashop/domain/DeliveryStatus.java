@@ -2,6 +2,7 @@ package jpabook.jpashop.domain;
 
 public enum DeliveryStatus {
 
-    READY, COMP
+    // 배송 준비 => 배송 완료, 또는 주문 취소로 배송 취소
+    READY, COMP, CANCEL
 
 }
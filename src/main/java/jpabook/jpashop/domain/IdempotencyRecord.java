@@ -0,0 +1,68 @@
+package jpabook.jpashop.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+// 멱등 키(Idempotency-Key)로 처리한 요청의 결과
+// 같은 키로 다시 요청하면 서비스를 다시 호출하지 않고 이 결과(만들어진 주문, 회원 id)로 처음과 같은 응답을 만든다.
+// - key: 범위(order, member) + 클라이언트가 보낸 키
+// - fingerprint: 요청 내용의 해시 => 같은 키로 다른 내용을 보내면 거절한다.
+// - status: PENDING(처리 중, 서비스 호출 전에 키를 선점) => COMPLETED(resultId 저장)
+@Entity
+// 만료된 키 정리(created_date < ?)용 인덱스
+@Table(indexes = @Index(name = "idx_idempotency_record_created_date", columnList = "created_date"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class IdempotencyRecord {
+
+    @Id
+    @Column(name = "idempotency_key", length = 200)
+    private String key;
+
+    @Column(length = 32)
+    private String fingerprint;
+
+    @Enumerated(EnumType.STRING)
+    private IdempotencyStatus status;
+
+    private Long resultId;
+
+    @Column(name = "created_date")
+    private LocalDateTime createdDate;
+
+    public IdempotencyRecord(String key, String fingerprint, Long resultId) {
+        this.key = key;
+        this.fingerprint = fingerprint;
+        this.status = IdempotencyStatus.COMPLETED;
+        this.resultId = resultId;
+        this.createdDate = LocalDateTime.now();
+    }
+
+    //==생성 메서드==//
+    // 처리 시작 전 키 선점
+    public static IdempotencyRecord pending(String key, String fingerprint) {
+        IdempotencyRecord record = new IdempotencyRecord(key, fingerprint, null);
+        record.status = IdempotencyStatus.PENDING;
+        return record;
+    }
+
+    //==비즈니스 로직==//
+    public void complete(Long resultId) {
+        this.status = IdempotencyStatus.COMPLETED;
+        this.resultId = resultId;
+    }
+
+    public boolean isPending() {
+        return status == IdempotencyStatus.PENDING;
+    }
+}
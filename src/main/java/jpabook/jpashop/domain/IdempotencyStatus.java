@@ -0,0 +1,6 @@
+package jpabook.jpashop.domain;
+
+public enum IdempotencyStatus {
+
+    PENDING, COMPLETED
+}
@@ -12,10 +12,15 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+// 같은 이름으로 동시에 가입해도 하나만 성공하도록 DB 유니크 제약 조건으로 막는다. (이름 조회에도 이 인덱스를 쓴다)
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_member_name", columnNames = "name"))
 @Getter @Setter
-public class Member {
+public class Member extends BaseTimeEntity {
 
-    @Id @GeneratedValue
+    // 일괄 가입 시 insert마다 시퀀스를 조회하지 않도록 50개씩 미리 받아둔다. (pooled)
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq_generator")
+    @SequenceGenerator(name = "member_seq_generator", sequenceName = "member_seq", allocationSize = 50)
     @Column(name = "member_id")
     private Long id;
     //칼럼명은 member_id로 설정
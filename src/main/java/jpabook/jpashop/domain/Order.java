@@ -10,12 +10,19 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+// 주문 목록 키셋 페이징((주문시간, id) 역순)을 위한 인덱스
+// columnList에는 논리 컬럼명(필드명, @Column name)을 쓴다.
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_order_date_id", columnList = "orderDate, order_id"),
+        @Index(name = "idx_orders_status_order_date_id", columnList = "status, orderDate, order_id")
+})
 @Getter @Setter
 public class Order {
 
+    // 시퀀스를 50개씩 미리 받아두고(pooled) 메모리에서 id를 발급한다. => insert 마다 시퀀스 조회 X, JDBC 배치 insert 가능
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq_generator")
+    @SequenceGenerator(name = "orders_seq_generator", sequenceName = "orders_seq", allocationSize = 50)
     @Column(name = "order_id")
     private Long id;
 
@@ -87,6 +94,8 @@ public class Order {
         // 필요한 메서드들(setter) 호출
         order.setMember(member);
         order.setDelivery(delivery);
+        // 주문하면 배송 준비 상태 => 배송 처리(DeliveryDispatcher)가 가져간다.
+        delivery.setStatus(DeliveryStatus.READY);
         // 재고에 대한 비즈니스 로직 처리는? => 이미 인자로 넘어온 orderItem 생성 단계에서 수행했음 (createOrderItem())
         for (OrderItem orderItem : orderItems) {
             order.addOrderItem(orderItem);
@@ -103,6 +112,9 @@ public class Order {
             // 배송이 이미 완료되버리면 취소 못함
             throw new IllegalStateException("이미 배송완료된 상품은 취소가 불가능합니다.");
         }
+        // 배송도 취소 => 배송 처리가 더 이상 가져가지 않는다. (READY인 배송만 완료 처리)
+        // 그 사이 배송 처리가 완료했다면 배송 version 충돌로 이 취소는 실패한다.
+        delivery.setStatus(DeliveryStatus.CANCEL);
         // 주문 상태 변경
         this.setStatus(OrderStatus.CANCEL);
         // 주문을 취소했으므로, 주문에 담겨있던 상품들 재고 회복
@@ -0,0 +1,56 @@
+package jpabook.jpashop.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+// 아웃박스: 주문 이벤트를 주문과 같은 트랜잭션으로 기록한다. => 주문이 커밋되면 이벤트도 반드시 남고, 롤백되면 같이 사라진다.
+// 릴레이(OutboxRelay)가 커밋된 이벤트에 순번(position)을 매기고, 순번 순서대로 싱크(OutboxSink)들에 전달한다.
+// id는 uuid: 시퀀스 조회 없이 만들 수 있고, 같은 트랜잭션의 다른 insert들과 JDBC 배치로 묶인다.
+@Entity
+@Table(indexes = @Index(name = "uk_outbox_event_position", columnList = "log_position", unique = true))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(generator = "uuid2")
+    @GenericGenerator(name = "uuid2", strategy = "uuid2")
+    @Column(name = "outbox_event_id", length = 36)
+    private String id;
+
+    private String aggregateType; // Order
+    private Long aggregateId;     // 주문 id
+    private String eventType;     // ORDER_PLACED, ORDER_CANCELLED
+
+    // JSON, 장바구니 주문도 담을 수 있게 넉넉히 (MySQL utf8mb4 varchar 한도 안에서)
+    @Column(length = 16000)
+    private String payload;
+
+    private LocalDateTime createdDate;
+
+    // 커밋 순서대로 릴레이가 매기는 순번, 매기기 전에는 null
+    // 트랜잭션 안에서 미리 번호를 받으면(시퀀스) 늦게 커밋된 작은 번호를 릴레이가 건너뛸 수 있다.
+    // => 커밋되어 보이는 이벤트에 릴레이가 한 곳(잠금)에서 차례로 번호를 매긴다. 구독자는 이 번호로 어디까지 받았는지 기록한다.
+    @Column(name = "log_position")
+    private Long position;
+
+    public OutboxEvent(String aggregateType, Long aggregateId, String eventType, String payload) {
+        this.aggregateType = aggregateType;
+        this.aggregateId = aggregateId;
+        this.eventType = eventType;
+        this.payload = payload;
+        this.createdDate = LocalDateTime.now();
+    }
+
+    public void assignPosition(long position) {
+        if (this.position != null) {
+            throw new IllegalStateException("이미 순번이 있는 이벤트입니다. position=" + this.position);
+        }
+        this.position = position;
+    }
+}
@@ -0,0 +1,46 @@
+package jpabook.jpashop.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.time.LocalDateTime;
+
+// 아웃박스 위치 기록
+// - 싱크마다 한 행: 어디(순번)까지 전달했는지 => 전달 후에 커밋, 중간에 실패하면 다음에 그 다음부터 다시 전달 (at-least-once)
+// - 순번 발급기 한 행(SEQUENCER): 마지막으로 매긴 순번
+// - 순번 발급기 행의 임대(leaseOwner, leaseUntil): 임대를 가진 노드 한 곳만 릴레이를 돌린다. (OutboxRelay)
+// 행 잠금(select ... for update)으로 임대가 겹치는 동안에도 한 곳만 순번을 매기고, 싱크마다 한 곳만 전달한다.
+@Entity
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class OutboxOffset {
+
+    public static final String SEQUENCER = "__sequencer";
+
+    @Id
+    @Column(name = "outbox_offset_name")
+    private String name;
+
+    @Column(name = "log_position")
+    private long position;
+
+    @Column(name = "lease_owner")
+    private String leaseOwner;
+    @Column(name = "lease_until")
+    private LocalDateTime leaseUntil;
+
+    public OutboxOffset(String name) {
+        this.name = name;
+    }
+
+    public void moveTo(long position) {
+        if (position < this.position) {
+            throw new IllegalArgumentException("순번은 뒤로 갈 수 없습니다. " + this.position + " => " + position);
+        }
+        this.position = position;
+    }
+}
@@ -1,14 +1,18 @@
 package jpabook.jpashop.domain.item;
 
 
+import jpabook.jpashop.domain.BaseTimeEntity;
 import jpabook.jpashop.domain.Category;
 import jpabook.jpashop.exception.NotEnoughStockException;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 // 상속관계 매핑
 // item 을 상속받는 엔티티들을 처리하기 위해 한 테이블에 모든 필드값들을 다 관리하는 것(그림 참고)
@@ -16,11 +20,18 @@ import java.util.List;
 @Entity
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 @DiscriminatorColumn(name = "dtype")
+// 2차 캐시: 상품은 자주 조회되고(목록, 주문) 거의 바뀌지 않는다. 하위 타입(Book, Album, Movie)도 같은 리전을 쓴다.
+// READ_WRITE: 수정하는 동안은 캐시 항목을 잠가서 DB를 읽게 하고, 커밋 후에 새 값으로 바꾼다. => 커밋된 값만 보인다.
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "item")
 @Getter
 @Setter // setter로 item의 필드를 수정하지 말고, 핵심 비즈니스 로직을 통해서 수정하자. 단 테스트시에는 사용
-public abstract class Item {
+public abstract class Item extends BaseTimeEntity {
 
-    @Id @GeneratedValue
+    // pooled 시퀀스: 시퀀스 한 번 호출로 id 50개를 확보 => 대량 등록(카탈로그 가져오기) 시 insert마다 시퀀스를 부르지 않는다.
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "item_seq_generator")
+    @SequenceGenerator(name = "item_seq_generator", sequenceName = "item_seq", allocationSize = 50)
     @Column(name = "item_id")
     private Long id;
 
@@ -28,6 +39,21 @@ public abstract class Item {
     private int price;
     private int stockQuantity;
 
+    // 낙관적 락: 동시에 같은 상품의 재고를 수정하면 나중에 커밋하는 쪽이 실패한다. (갱신 분실 => 재고 초과 판매 방지)
+    // update item set ..., version = version + 1 where item_id = ? and version = ?
+    // 실패한 주문은 @RetryOnOptimisticLock 으로 새 트랜잭션에서 다시 시도한다.
+    @Version
+    private Long version;
+
+    // 인기 상품(hot item) 모드: 재고를 여러 조각(row)에 나눠서 관리
+    // 켜져 있으면 주문, 취소 시 stockQuantity 대신 무작위 재고 조각에서 차감, 복구한다.
+    // item row는 수정되지 않으므로 item의 version 충돌도 생기지 않는다.
+    private boolean hotItem;
+
+    @OneToMany(mappedBy = "item", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("shardNo")
+    private List<ItemStockShard> stockShards = new ArrayList<>();
+
 
     // 다대다 관계에서 연관관계의 주인은 카테고리로 한건가?
     @ManyToMany(mappedBy = "items")
@@ -39,10 +65,19 @@ public abstract class Item {
     // stockQuantitiy 가져와서 setter 쓰고 등등 할 것이다.
     // 하지만 객체지향적인 접근법으로 하면, 데이터(재고 수량)를 가지고 있는 엔티티에 비즈니스 로직이 존재하는 것이 제일 바람직하다. => 응집력 강화
     public void addStock(int quantity){
+        if (hotItem) {
+            // 되돌리는 재고는 아무 조각에나 더하면 된다.
+            stockShards.get(randomShardIndex()).addQuantity(quantity);
+            return;
+        }
         this.stockQuantity += quantity;
     }
 
     public void removeStock(int quantity){
+        if (hotItem) {
+            removeShardStock(quantity);
+            return;
+        }
         int restStock = this.stockQuantity - quantity;
         if(restStock < 0){
             throw new NotEnoughStockException("need more stock");
@@ -50,6 +85,86 @@ public abstract class Item {
         this.stockQuantity = restStock;
     }
 
+    // 인기 상품 모드: 재고 조각들의 합이 곧 재고 수량이다.
+    // (stock_quantity 컬럼은 쓰지 않는다.)
+    public int getStockQuantity() {
+        if (hotItem) {
+            return stockShards.stream().mapToInt(ItemStockShard::getQuantity).sum();
+        }
+        return stockQuantity;
+    }
+
+    // 상품 수정 화면 등에서 재고 수량을 직접 바꿀 때, 인기 상품이면 조각들에 다시 나눠 담는다.
+    public void setStockQuantity(int stockQuantity) {
+        if (hotItem) {
+            distribute(stockQuantity);
+            return;
+        }
+        this.stockQuantity = stockQuantity;
+    }
+
+    // 인기 상품 모드 켜기: 현재 재고를 shardCount개 조각으로 나눈다.
+    public void enableHotMode(int shardCount) {
+        if (hotItem) {
+            throw new IllegalStateException("이미 인기 상품 모드입니다.");
+        }
+        if (shardCount < 2) {
+            throw new IllegalArgumentException("재고 조각은 2개 이상이어야 합니다.");
+        }
+        for (int shardNo = 0; shardNo < shardCount; shardNo++) {
+            stockShards.add(new ItemStockShard(this, shardNo, 0));
+        }
+        distribute(this.stockQuantity);
+        this.stockQuantity = 0;
+        this.hotItem = true;
+    }
 
+    // 인기 상품 모드 끄기: 조각들의 재고를 다시 한 row로 합친다. (조각들은 orphanRemoval로 삭제)
+    public void disableHotMode() {
+        if (!hotItem) {
+            return;
+        }
+        this.stockQuantity = getStockQuantity();
+        this.stockShards.clear();
+        this.hotItem = false;
+    }
+
+    // 무작위 조각 하나에서 차감, 그 조각이 모자라면 다음 조각들로 넘어간다.
+    // 대부분의 주문은 조각 하나(row 하나)만 수정하므로, 동시 주문들이 서로 다른 row에 흩어진다.
+    private void removeShardStock(int quantity) {
+        int size = stockShards.size();
+        int start = randomShardIndex();
+        for (int i = 0; i < size; i++) {
+            ItemStockShard shard = stockShards.get((start + i) % size);
+            if (shard.getQuantity() >= quantity) {
+                shard.removeQuantity(quantity);
+                return;
+            }
+        }
+
+        // 한 조각으로는 모자라면 여러 조각에서 나눠서 차감
+        if (getStockQuantity() < quantity) {
+            throw new NotEnoughStockException("need more stock");
+        }
+        int rest = quantity;
+        for (int i = 0; i < size && rest > 0; i++) {
+            ItemStockShard shard = stockShards.get((start + i) % size);
+            int taken = Math.min(rest, shard.getQuantity());
+            shard.removeQuantity(taken);
+            rest -= taken;
+        }
+    }
+
+    private void distribute(int quantity) {
+        int size = stockShards.size();
+        for (int i = 0; i < size; i++) {
+            // 나머지는 앞쪽 조각들에 하나씩
+            stockShards.get(i).changeQuantity(quantity / size + (i < quantity % size ? 1 : 0));
+        }
+    }
+
+    private int randomShardIndex() {
+        return ThreadLocalRandom.current().nextInt(stockShards.size());
+    }
 
 }
@@ -0,0 +1,56 @@
+package jpabook.jpashop.domain.item;
+
+
+import jpabook.jpashop.domain.BaseTimeEntity;
+import lombok.Getter;
+
+import javax.persistence.*;
+
+// 인기 상품(hot item)의 재고 조각
+// 한 상품에 주문이 몰리면 모든 주문이 item 테이블의 한 row(stock_quantity)에서 줄을 서게 된다.
+// 재고를 여러 row로 나눠 두고 주문마다 무작위 조각에서 차감하면, 동시에 처리할 수 있는 주문 수가 조각 수만큼 늘어난다.
+@Entity
+@Table(name = "item_stock_shard",
+        uniqueConstraints = @UniqueConstraint(name = "uk_item_stock_shard", columnNames = {"item_id", "shard_no"}))
+@Getter
+public class ItemStockShard extends BaseTimeEntity {
+
+    @Id @GeneratedValue
+    @Column(name = "item_stock_shard_id")
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "item_id")
+    private Item item;
+
+    @Column(name = "shard_no")
+    private int shardNo;
+
+    private int quantity;
+
+    // 같은 조각을 동시에 수정하면 나중 커밋이 실패 => 주문 재시도 시 다른 조각을 고를 확률이 높다.
+    @Version
+    private Long version;
+
+    protected ItemStockShard() {
+    }
+
+    // 조각 생성은 Item을 통해서만
+    ItemStockShard(Item item, int shardNo, int quantity) {
+        this.item = item;
+        this.shardNo = shardNo;
+        this.quantity = quantity;
+    }
+
+    void addQuantity(int quantity) {
+        this.quantity += quantity;
+    }
+
+    void removeQuantity(int quantity) {
+        this.quantity -= quantity;
+    }
+
+    void changeQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+}
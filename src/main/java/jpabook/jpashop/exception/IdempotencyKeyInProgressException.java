@@ -0,0 +1,13 @@
+package jpabook.jpashop.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// 같은 멱등 키의 첫 요청이 대기 시간 안에 끝나지 않음 => 409, 클라이언트는 같은 키로 잠시 후 다시 시도한다.
+@ResponseStatus(HttpStatus.CONFLICT)
+public class IdempotencyKeyInProgressException extends RuntimeException {
+
+    public IdempotencyKeyInProgressException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,15 @@
+package jpabook.jpashop.exception;
+
+// 클라이언트가 보낸 값이 잘못됨 => 400 (RequestExceptionHandler)
+// 잘못된 페이지 토큰, 지원하지 않는 형식, 잘못된 멱등 키, 한 번에 처리할 수 있는 양을 넘는 요청 등
+// IllegalArgumentException을 잡던 곳(가져오기의 행 검증 등)은 그대로 잡을 수 있도록 상속한다.
+public class InvalidRequestException extends IllegalArgumentException {
+
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+
+    public InvalidRequestException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,9 @@
+package jpabook.jpashop.exception;
+
+// 요청한 대상이 없음 => 404 (RequestExceptionHandler)
+public class NotFoundException extends RuntimeException {
+
+    public NotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,23 @@
+package jpabook.jpashop.exception;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+import java.nio.charset.StandardCharsets;
+
+// @ResponseStatus로는 Retry-After 헤더를 줄 수 없으므로 따로 처리한다.
+@ControllerAdvice
+public class OrderAdmissionExceptionHandler {
+
+    @ExceptionHandler(OrderAdmissionRejectedException.class)
+    public ResponseEntity<String> rejected(OrderAdmissionRejectedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .body(e.getMessage());
+    }
+}
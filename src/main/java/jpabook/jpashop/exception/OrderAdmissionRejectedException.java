@@ -0,0 +1,16 @@
+package jpabook.jpashop.exception;
+
+// 주문 요청 제한 (회원별 속도 제한, 전체 동시 주문 수 제한) => 429 + Retry-After (OrderAdmissionExceptionHandler)
+public class OrderAdmissionRejectedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public OrderAdmissionRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
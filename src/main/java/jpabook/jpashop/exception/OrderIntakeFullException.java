@@ -0,0 +1,13 @@
+package jpabook.jpashop.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// 비동기 주문 접수 대기열이 가득 참 => 503, 클라이언트는 잠시 후 다시 시도한다.
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class OrderIntakeFullException extends RuntimeException {
+
+    public OrderIntakeFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,31 @@
+package jpabook.jpashop.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+import java.nio.charset.StandardCharsets;
+
+// 클라이언트 잘못인 요청을 500 대신 400, 404로 응답한다. 본문은 예외 메시지
+// IllegalArgumentException 전체를 400으로 바꾸지 않는다. (서버 버그도 IllegalArgumentException으로 나올 수 있다)
+@ControllerAdvice
+public class RequestExceptionHandler {
+
+    @ExceptionHandler(InvalidRequestException.class)
+    public ResponseEntity<String> invalidRequest(InvalidRequestException e) {
+        return response(HttpStatus.BAD_REQUEST, e);
+    }
+
+    @ExceptionHandler(NotFoundException.class)
+    public ResponseEntity<String> notFound(NotFoundException e) {
+        return response(HttpStatus.NOT_FOUND, e);
+    }
+
+    private static ResponseEntity<String> response(HttpStatus status, RuntimeException e) {
+        return ResponseEntity.status(status)
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .body(e.getMessage());
+    }
+}
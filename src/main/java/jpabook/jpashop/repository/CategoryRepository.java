@@ -0,0 +1,120 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.Category;
+import jpabook.jpashop.domain.item.Item;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class CategoryRepository {
+
+    private final EntityManager em;
+
+    public void save(Category category) {
+        em.persist(category);
+    }
+
+    public Category findOne(Long id) {
+        return em.find(Category.class, id);
+    }
+
+    // 카테고리 트리 스냅샷(CategoryTree)을 만들기 위한 전체 조회: [id, 이름, 상위 id, path, 상품 수, 하위 포함 상품 수], 쿼리 한 번
+    // parent가 없는 루트도 포함되도록 left join
+    public List<Object[]> findAllForTree() {
+        return em.createQuery("select c.id, c.name, p.id, c.path, c.itemCount, c.subtreeItemCount" +
+                " from Category c left join c.parent p" +
+                " order by c.path", Object[].class)
+                .getResultList();
+    }
+
+    // 하위 트리 전체 (자기 자신 포함), 깊이와 관계없이 인덱스 범위 검색 한 번
+    public List<Category> findSubtree(String path) {
+        return em.createQuery("select c from Category c where c.path like :path order by c.path", Category.class)
+                .setParameter("path", path + "%")
+                .getResultList();
+    }
+
+    // 하위 트리에 속한 상품들, 쿼리 한 번
+    // 한 상품이 하위 트리의 여러 카테고리에 속할 수 있으므로 distinct
+    public List<Item> findItemsInSubtree(String path) {
+        return em.createQuery("select distinct i from Item i join i.categories c" +
+                " where c.path like :path", Item.class)
+                .setParameter("path", path + "%")
+                .getResultList();
+    }
+
+    // 카테고리별 상품 키셋 페이징: 상품 id 순서, afterItemId 다음부터 limit건
+    // category_item의 (category_id, item_id) 인덱스 범위만 읽는다. (Category.items 컬렉션을 초기화하지 않는다)
+    public List<Item> findItemPage(Long categoryId, Long afterItemId, int limit) {
+        return em.createQuery("select i from Item i join i.categories c" +
+                " where c.id = :categoryId and i.id > :afterItemId" +
+                " order by i.id", Item.class)
+                .setParameter("categoryId", categoryId)
+                .setParameter("afterItemId", afterItemId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    // 하위 카테고리까지 포함한 상품 키셋 페이징
+    public List<Item> findSubtreeItemPage(String path, Long afterItemId, int limit) {
+        return em.createQuery("select distinct i from Item i join i.categories c" +
+                " where c.path like :path and i.id > :afterItemId" +
+                " order by i.id", Item.class)
+                .setParameter("path", path + "%")
+                .setParameter("afterItemId", afterItemId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    // 상품 연결, 해제: 컬렉션(bag)을 거치면 해제할 때 전체를 읽고 지웠다가 다시 넣으므로 중간 테이블을 직접 수정한다.
+    public boolean isLinked(Long categoryId, Long itemId) {
+        return !em.createNativeQuery("select 1 from category_item where category_id = ? and item_id = ?")
+                .setParameter(1, categoryId)
+                .setParameter(2, itemId)
+                .getResultList()
+                .isEmpty();
+    }
+
+    public int linkItem(Long categoryId, Long itemId) {
+        return em.createNativeQuery("insert into category_item (category_id, item_id) values (?, ?)")
+                .setParameter(1, categoryId)
+                .setParameter(2, itemId)
+                .executeUpdate();
+    }
+
+    public int unlinkItem(Long categoryId, Long itemId) {
+        return em.createNativeQuery("delete from category_item where category_id = ? and item_id = ?")
+                .setParameter(1, categoryId)
+                .setParameter(2, itemId)
+                .executeUpdate();
+    }
+
+    // 상품이 연결된 다른 카테고리들의 path (categoryId 제외)
+    public List<String> findLinkedPaths(Long itemId, Long excludedCategoryId) {
+        return em.createQuery("select c.path from Category c join c.items i" +
+                " where i.id = :itemId and c.id <> :categoryId", String.class)
+                .setParameter("itemId", itemId)
+                .setParameter("categoryId", excludedCategoryId)
+                .getResultList();
+    }
+
+    // 상품 수 갱신: 자기 자신의 itemCount, subtreeIds(상품이 새로 들어오거나 빠지는 하위 트리의 루트들)의 subtreeItemCount
+    // 엔티티를 읽어서 바꾸지 않고 update 문에서 더하므로, 동시에 같은 카테고리에 상품을 연결해도 수가 틀어지지 않는다.
+    public void addItemCount(Long categoryId, List<Long> subtreeIds, int delta) {
+        em.createQuery("update Category c set c.itemCount = c.itemCount + :delta where c.id = :categoryId")
+                .setParameter("delta", delta)
+                .setParameter("categoryId", categoryId)
+                .executeUpdate();
+        if (subtreeIds.isEmpty()) {
+            return;
+        }
+        em.createQuery("update Category c set c.subtreeItemCount = c.subtreeItemCount + :delta where c.id in :subtreeIds")
+                .setParameter("delta", delta)
+                .setParameter("subtreeIds", subtreeIds)
+                .executeUpdate();
+    }
+}
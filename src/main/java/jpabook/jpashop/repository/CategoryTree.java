@@ -0,0 +1,156 @@
+package jpabook.jpashop.repository;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// 카테고리 트리 전체의 읽기 전용 스냅샷
+// 한 번 만들어지면 바뀌지 않으므로 여러 스레드가 잠금 없이 같이 읽는다.
+// 카테고리가 바뀌면 고치지 않고 새로 만든다. (CategoryTreeCache)
+public final class CategoryTree {
+
+    private final List<Node> roots;
+    private final Map<Long, Node> nodes;
+
+    private CategoryTree(List<Node> roots, Map<Long, Node> nodes) {
+        this.roots = Collections.unmodifiableList(roots);
+        this.nodes = Collections.unmodifiableMap(nodes);
+    }
+
+    // rows: [id, 이름, 상위 id, path, 상품 수, 하위 포함 상품 수], path 순서 => 상위 카테고리가 항상 하위보다 먼저 나온다.
+    public static CategoryTree of(List<Object[]> rows) {
+        Map<Long, Builder> builders = new LinkedHashMap<>();
+        List<Builder> rootBuilders = new ArrayList<>();
+        for (Object[] row : rows) {
+            Builder builder = new Builder((Long) row[0], (String) row[1], (Long) row[2], (String) row[3],
+                    ((Number) row[4]).intValue(), ((Number) row[5]).intValue());
+            builders.put(builder.id, builder);
+            Builder parent = builder.parentId == null ? null : builders.get(builder.parentId);
+            if (parent == null) {
+                rootBuilders.add(builder);
+            } else {
+                parent.children.add(builder);
+            }
+        }
+
+        Map<Long, Node> nodes = new HashMap<>();
+        List<Node> roots = new ArrayList<>();
+        for (Builder builder : rootBuilders) {
+            roots.add(builder.build(0, nodes));
+        }
+        return new CategoryTree(roots, nodes);
+    }
+
+    public static CategoryTree empty() {
+        return new CategoryTree(new ArrayList<>(), new HashMap<>());
+    }
+
+    public List<Node> getRoots() {
+        return roots;
+    }
+
+    // 없으면 null
+    public Node find(Long categoryId) {
+        return nodes.get(categoryId);
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    // 하위 트리의 카테고리 id 목록 (자기 자신 포함)
+    public List<Long> subtreeIds(Long categoryId) {
+        Node node = nodes.get(categoryId);
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        List<Long> ids = new ArrayList<>();
+        collect(node, ids);
+        return ids;
+    }
+
+    // 루트부터 자신까지 (예: 도서 > 소설 > 추리)
+    public List<Node> ancestorsAndSelf(Long categoryId) {
+        List<Node> path = new ArrayList<>();
+        for (Node node = nodes.get(categoryId); node != null; node = node.parentId == null ? null : nodes.get(node.parentId)) {
+            path.add(0, node);
+        }
+        return path;
+    }
+
+    private static void collect(Node node, List<Long> ids) {
+        ids.add(node.id);
+        for (Node child : node.children) {
+            collect(child, ids);
+        }
+    }
+
+    @Getter
+    public static final class Node {
+        private final Long id;
+        private final String name;
+        private final Long parentId;
+        private final String path;
+        private final int depth;
+        private final int itemCount;
+        private final int subtreeItemCount;
+        private final List<Node> children;
+
+        private Node(Long id, String name, Long parentId, String path, int depth,
+                     int itemCount, int subtreeItemCount, List<Node> children) {
+            this.id = id;
+            this.name = name;
+            this.parentId = parentId;
+            this.path = path;
+            this.depth = depth;
+            this.itemCount = itemCount;
+            this.subtreeItemCount = subtreeItemCount;
+            this.children = Collections.unmodifiableList(children);
+        }
+
+        // 루트부터 자신까지의 id ("/1/5/12/" => [1, 5, 12])
+        public List<Long> pathIds() {
+            List<Long> ids = new ArrayList<>();
+            for (String id : path.split("/")) {
+                if (!id.isEmpty()) {
+                    ids.add(Long.valueOf(id));
+                }
+            }
+            return ids;
+        }
+    }
+
+    private static final class Builder {
+        private final Long id;
+        private final String name;
+        private final Long parentId;
+        private final String path;
+        private final int itemCount;
+        private final int subtreeItemCount;
+        private final List<Builder> children = new ArrayList<>();
+
+        Builder(Long id, String name, Long parentId, String path, int itemCount, int subtreeItemCount) {
+            this.id = id;
+            this.name = name;
+            this.parentId = parentId;
+            this.path = path;
+            this.itemCount = itemCount;
+            this.subtreeItemCount = subtreeItemCount;
+        }
+
+        Node build(int depth, Map<Long, Node> nodes) {
+            List<Node> builtChildren = new ArrayList<>();
+            for (Builder child : children) {
+                builtChildren.add(child.build(depth + 1, nodes));
+            }
+            Node node = new Node(id, name, parentId, path, depth, itemCount, subtreeItemCount, builtChildren);
+            nodes.put(id, node);
+            return node;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.datasource.ReplicaReads;
+import jpabook.jpashop.domain.DataVersion;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// 카테고리 트리 스냅샷 보관
+// 카테고리는 거의 바뀌지 않으므로, 트리 전체를 한 번에 읽어 메모리에 두고 화면, api에서 쿼리 없이 쓴다.
+// 카테고리를 바꾸거나 상품을 연결, 해제하면(상품 수) invalidate() => 다음 조회 때 쿼리 한 번으로 다시 만든다.
+//
+// 스냅샷은 (세대, DB 버전, 트리)를 한 객체로 묶어서 한 번에 바꿔 끼운다. => 무효화와 다시 만들기가 엇갈려도 예전 트리가 남지 않는다.
+// - 세대: 이 서버의 invalidate()마다 증가, 스냅샷의 세대가 지금 세대와 다르면 쓰지 않는다.
+// - DB 버전(DataVersion.CATEGORY): 카테고리를 바꾸는 트랜잭션이 같이 올린다. 다른 서버가 바꾼 카테고리를 알아채는 용도
+//   매번 읽지 않고 version-check-millis마다 한 번, 그리고 트리에 없는 카테고리를 찾을 때 바로 확인한다. (find)
+@Component
+public class CategoryTreeCache {
+
+    private final CategoryRepository categoryRepository;
+    private final DataVersions dataVersions;
+    private final long versionCheckNanos;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    public CategoryTreeCache(CategoryRepository categoryRepository, DataVersions dataVersions,
+                             @Value("${jpashop.category-tree.version-check-millis:1000}") long versionCheckMillis) {
+        this.categoryRepository = categoryRepository;
+        this.dataVersions = dataVersions;
+        this.versionCheckNanos = TimeUnit.MILLISECONDS.toNanos(versionCheckMillis);
+    }
+
+    public CategoryTree get() {
+        return get(false);
+    }
+
+    // 트리에 없으면 다른 서버에서 방금 만든 카테고리일 수 있으므로 DB 버전을 바로 확인하고 한 번 더 찾는다. 그래도 없으면 null
+    public CategoryTree.Node find(Long categoryId) {
+        CategoryTree.Node node = get().find(categoryId);
+        return node != null ? node : get(true).find(categoryId);
+    }
+
+    // 카테고리 추가, 수정, 상품 연결, 해제 시 호출
+    // 바로 비우고(같은 트랜잭션 안의 조회는 방금 바꾼 카테고리를 본다), 트랜잭션이 끝나면 한 번 더 비운다.
+    // (트랜잭션 도중에 다른 스레드가 커밋 전 상태로 다시 만들었을 수 있으므로)
+    // 커밋할 때 DB 버전도 올려서 다른 서버의 스냅샷을 무효화한다.
+    public void invalidate() {
+        generation.incrementAndGet();
+        dataVersions.bump(DataVersion.CATEGORY);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    generation.incrementAndGet();
+                }
+            });
+        }
+    }
+
+    private CategoryTree get(boolean checkVersionNow) {
+        long currentGeneration = generation.get();
+        Snapshot current = snapshot.get();
+        if (current != null && current.generation == currentGeneration) {
+            long now = System.nanoTime();
+            if (!checkVersionNow && now - current.checkedAt < versionCheckNanos) {
+                return current.tree;
+            }
+            if (dataVersions.current(DataVersion.CATEGORY) == current.version) {
+                snapshot.compareAndSet(current, current.checkedAt(now));
+                return current.tree;
+            }
+        }
+        return reload(currentGeneration);
+    }
+
+    // 버전을 먼저 읽고 트리를 읽는다. (그 사이에 바뀌었으면 더 새 트리를 읽은 것이고, 다음 확인 때 다시 만든다)
+    // 동시에 여러 스레드가 다시 만들어도 결과는 같으므로 잠그지 않는다.
+    // 주 DB에서 읽는다. 이미 복제본에서 읽던 트랜잭션이면 만든 트리를 보관하지 않는다. (ReplicaReads)
+    private CategoryTree reload(long currentGeneration) {
+        Snapshot loaded = ReplicaReads.fromPrimary(() -> {
+            long version = dataVersions.current(DataVersion.CATEGORY);
+            CategoryTree tree = CategoryTree.of(categoryRepository.findAllForTree());
+            return new Snapshot(currentGeneration, version, tree, System.nanoTime());
+        });
+        if (!ReplicaReads.isCurrentTransactionOnReplica()) {
+            snapshot.set(loaded);
+        }
+        return loaded.tree;
+    }
+
+    private static final class Snapshot {
+        private final long generation;
+        private final long version;
+        private final CategoryTree tree;
+        private final long checkedAt;
+
+        Snapshot(long generation, long version, CategoryTree tree, long checkedAt) {
+            this.generation = generation;
+            this.version = version;
+            this.tree = tree;
+            this.checkedAt = checkedAt;
+        }
+
+        Snapshot checkedAt(long now) {
+            return new Snapshot(generation, version, tree, now);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.DataVersion;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class DataVersionRepository {
+
+    private final EntityManager em;
+
+    // 여러 버전을 한 번에, [이름, 버전] (행이 없는 이름은 빠진다)
+    // 엔티티로 읽지 않는다. (영속성 컨텍스트에 남은 예전 버전을 돌려주지 않도록)
+    public List<Object[]> findVersions(Collection<String> names) {
+        return em.createQuery("select v.name, v.version from DataVersion v where v.name in :names", Object[].class)
+                .setParameter("names", names)
+                .getResultList();
+    }
+
+    // 버전 +1, 행이 없으면 0
+    public int increment(String name) {
+        return em.createQuery("update DataVersion v set v.version = v.version + 1 where v.name = :name")
+                .setParameter("name", name)
+                .executeUpdate();
+    }
+
+    public void save(DataVersion dataVersion) {
+        em.persist(dataVersion);
+    }
+}
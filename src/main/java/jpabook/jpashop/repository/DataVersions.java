@@ -0,0 +1,158 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.datasource.ReplicaReads;
+import jpabook.jpashop.domain.DataVersion;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+// 데이터 버전 읽기, 올리기 (DataVersion)
+// 주문처럼 자주 바뀌는 데이터의 버전을 한 행으로 두면, 모든 주문 트랜잭션이 커밋할 때 그 행 잠금을 기다린다.
+// => 버전마다 SHARDS개 행(이름#0 ~ 이름#7)으로 나누고, 올릴 때는 아무 행 하나, 읽을 때는 합을 쓴다. (재고 조각과 같은 방식)
+//    합은 올릴 때마다 커지므로 버전 비교에 그대로 쓸 수 있다.
+// 조각 행은 시작할 때 모두 만들어 두고(register), 올릴 때는 update만 한다.
+// => 올릴 때 행을 만들면, 두 트랜잭션이 같은 조각을 동시에 처음 만들 때 한 쪽이 커밋 직전에 PK 충돌로 실패한다. (주문, 가입 실패)
+@Component
+public class DataVersions {
+
+    static final int SHARDS = 8;
+
+    private final DataVersionRepository dataVersionRepository;
+    private final TransactionTemplate registerTransaction;
+
+    public DataVersions(DataVersionRepository dataVersionRepository, PlatformTransactionManager transactionManager) {
+        this.dataVersionRepository = dataVersionRepository;
+        this.registerTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    // 모든 버전(DataVersion.names)의 조각 행 등록, 버전마다 따로 커밋한다.
+    // 스케줄러, 웹 요청보다 먼저 끝나도록 빈 초기화 때 한다. 실패하면 시작하지 않는다.
+    @PostConstruct
+    public void register() {
+        for (String name : DataVersion.names()) {
+            try {
+                registerTransaction.execute(status -> {
+                    createShardsIfAbsent(name);
+                    return null;
+                });
+            } catch (DataIntegrityViolationException e) {
+                // 다른 노드가 먼저 만들었다. (조각 행을 한 트랜잭션으로 만들므로 모두 있다)
+            }
+        }
+    }
+
+    private void createShardsIfAbsent(String name) {
+        List<String> shardNames = new ArrayList<>();
+        for (int shard = 0; shard < SHARDS; shard++) {
+            shardNames.add(shardName(name, shard));
+        }
+        for (Object[] row : dataVersionRepository.findVersions(shardNames)) {
+            shardNames.remove((String) row[0]);
+        }
+        for (String shardName : shardNames) {
+            dataVersionRepository.save(new DataVersion(shardName, 0));
+        }
+    }
+
+    // 지금 버전, 복제본은 늦을 수 있으므로 주 DB에서 읽는다.
+    public long current(String name) {
+        return current(Collections.singletonList(name)).get(name);
+    }
+
+    // 여러 버전을 쿼리 한 번으로, 한 번도 올린 적 없는 버전은 0
+    public Map<String, Long> current(Collection<String> names) {
+        Map<String, String> shardNames = new HashMap<>();
+        Map<String, Long> versions = new HashMap<>();
+        for (String name : names) {
+            versions.put(name, 0L);
+            for (int shard = 0; shard < SHARDS; shard++) {
+                shardNames.put(shardName(name, shard), name);
+            }
+        }
+        List<Object[]> rows = ReplicaReads.fromPrimary(() -> dataVersionRepository.findVersions(shardNames.keySet()));
+        for (Object[] row : rows) {
+            versions.merge(shardNames.get((String) row[0]), (Long) row[1], Long::sum);
+        }
+        // 이 트랜잭션이 커밋할 때 올릴 버전은 미리 더해서 본다. (같은 트랜잭션 안에서는 방금 바꾼 데이터가 보이므로)
+        Map<String, Long> pending = pendingBumps();
+        if (pending != null) {
+            for (Map.Entry<String, Long> entry : pending.entrySet()) {
+                versions.computeIfPresent(entry.getKey(), (name, version) -> version + entry.getValue());
+            }
+        }
+        return versions;
+    }
+
+    // 현재 트랜잭션이 커밋될 때 같이 버전을 올린다. => 데이터와 버전이 함께 보이고, 롤백되면 버전도 그대로
+    // 커밋 전까지는 이 트랜잭션의 current()에만 올린 만큼 더해서 보인다.
+    // 버전 행 잠금은 커밋 직전(beforeCommit)에 잡아서 잠깐만 들고 있는다.
+    public void bump(String name) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            bumpNow(name);
+            return;
+        }
+        Map<String, Long> pending = pendingBumps();
+        if (pending == null) {
+            pending = new HashMap<>();
+            bindPendingBumps(pending);
+        }
+        pending.merge(name, 1L, Long::sum);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                bumpNow(name);
+            }
+        });
+    }
+
+    // 지금 바로 올린다. (같은 트랜잭션의 다음 조회부터 보인다, 트랜잭션 안에서 호출)
+    // 조각 행은 시작할 때 만들어 두었다. (register)
+    public void bumpNow(String name) {
+        String shardName = shardName(name, ThreadLocalRandom.current().nextInt(SHARDS));
+        if (dataVersionRepository.increment(shardName) == 0) {
+            throw new IllegalStateException("등록되지 않은 데이터 버전입니다. (DataVersion.names) name=" + name);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Long> pendingBumps() {
+        return (Map<String, Long>) TransactionSynchronizationManager.getResource(this);
+    }
+
+    // 트랜잭션이 끝나면 지운다. 안에서 새 트랜잭션(REQUIRES_NEW)이 시작되는 동안은 잠시 떼어둔다.
+    private void bindPendingBumps(Map<String, Long> pending) {
+        TransactionSynchronizationManager.bindResource(this, pending);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void suspend() {
+                TransactionSynchronizationManager.unbindResourceIfPossible(DataVersions.this);
+            }
+
+            @Override
+            public void resume() {
+                TransactionSynchronizationManager.bindResource(DataVersions.this, pending);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(DataVersions.this);
+            }
+        });
+    }
+
+    private static String shardName(String name, int shard) {
+        return name + "#" + shard;
+    }
+}
@@ -0,0 +1,72 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.DeliveryStatus;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.LockOptions;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class DeliveryRepository {
+
+    private final EntityManager em;
+
+    // 배송 처리 후보: 준비(READY)되었고 임대가 없거나 만료된 배송 id, 오래된 순서로 최대 limit건
+    // select ... for update skip locked => 다른 노드가 지금 잠그고 있는 행은 기다리지 않고 건너뛴다.
+    // (skip locked를 지원하지 않는 DB(H2 등)에서는 하이버네이트가 그냥 for update로 보낸다. 이때도 아래 lease의 조건부 update가 중복을 막는다)
+    public List<Long> findClaimableIdsForUpdate(LocalDateTime now, int limit) {
+        return em.createQuery("select d.id from Delivery d" +
+                " where d.status = :ready and (d.leaseUntil is null or d.leaseUntil < :now)" +
+                " order by d.id", Long.class)
+                .setParameter("ready", DeliveryStatus.READY)
+                .setParameter("now", now)
+                .setMaxResults(limit)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setHint("javax.persistence.lock.timeout", LockOptions.SKIP_LOCKED)
+                .getResultList();
+    }
+
+    // 임대: 후보 조건을 다시 걸고 update => 그 사이 다른 노드가 가져갔거나 주문이 취소된 배송은 빠진다.
+    // 반환값: 실제로 임대한 배송 수
+    public int lease(Collection<Long> deliveryIds, String token, LocalDateTime now, LocalDateTime until) {
+        return em.createQuery("update Delivery d set d.leaseOwner = :token, d.leaseUntil = :until, d.version = d.version + 1" +
+                " where d.id in :ids and d.status = :ready and (d.leaseUntil is null or d.leaseUntil < :now)")
+                .setParameter("token", token)
+                .setParameter("until", until)
+                .setParameter("ids", deliveryIds)
+                .setParameter("ready", DeliveryStatus.READY)
+                .setParameter("now", now)
+                .executeUpdate();
+    }
+
+    // 임대한 배송 완료 처리: update 한 번
+    // 아직 READY이고 임대 토큰이 그대로인 배송만 => 그 사이 취소된 배송, 임대가 만료되어 다른 노드가 가져간 배송은 건드리지 않는다.
+    public int completeLeased(String token) {
+        return em.createQuery("update Delivery d set d.status = :comp, d.leaseOwner = null, d.leaseUntil = null," +
+                " d.version = d.version + 1" +
+                " where d.leaseOwner = :token and d.status = :ready")
+                .setParameter("comp", DeliveryStatus.COMP)
+                .setParameter("token", token)
+                .setParameter("ready", DeliveryStatus.READY)
+                .executeUpdate();
+    }
+
+    // 일괄 주문 취소: 주문들의 배송을 update 한 번으로 취소 (배송 완료된 배송은 제외)
+    // 반환값이 주문 수보다 적으면 그 사이 배송 처리가 완료한 배송이 있다는 뜻이다.
+    public int cancelByOrderIds(Collection<Long> orderIds) {
+        return em.createQuery("update Delivery d set d.status = :cancel, d.leaseOwner = null, d.leaseUntil = null," +
+                " d.version = d.version + 1" +
+                " where (d.status is null or d.status = :ready)" +
+                " and d.id in (select o.delivery.id from Order o where o.id in :orderIds)")
+                .setParameter("cancel", DeliveryStatus.CANCEL)
+                .setParameter("ready", DeliveryStatus.READY)
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+    }
+}
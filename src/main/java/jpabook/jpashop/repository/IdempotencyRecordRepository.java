@@ -0,0 +1,36 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.IdempotencyRecord;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+
+@Repository
+@RequiredArgsConstructor
+public class IdempotencyRecordRepository {
+
+    private final EntityManager em;
+
+    // 키 선점: 바로 insert를 보내서, 다른 서버가 먼저 선점했으면 여기서 기본키 위반(DataIntegrityViolationException)
+    public void insert(IdempotencyRecord record) {
+        em.persist(record);
+        em.flush();
+    }
+
+    public void delete(IdempotencyRecord record) {
+        em.remove(record);
+    }
+
+    public IdempotencyRecord findOne(String key) {
+        return em.find(IdempotencyRecord.class, key);
+    }
+
+    // 만료된 키 정리: 벌크 delete 한 번
+    public int deleteCreatedBefore(LocalDateTime createdDate) {
+        return em.createQuery("delete from IdempotencyRecord r where r.createdDate < :createdDate")
+                .setParameter("createdDate", createdDate)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,21 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.item.Item;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+// 상품 목록 한 페이지 (키셋 페이징, 상품 id 순서)
+// nextCursor(마지막 상품 id)가 null이면 마지막 페이지
+@Getter
+@AllArgsConstructor
+public class ItemPage {
+
+    private List<Item> content;
+    private String nextCursor;
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -3,9 +3,15 @@ package jpabook.jpashop.repository;
 
 import jpabook.jpashop.domain.item.Item;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.annotations.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -26,15 +32,71 @@ public class ItemRepository {
         }
     }
 
+    // 상품 일괄 등록 (카탈로그 가져오기)
+    // persist 후 flush => insert들이 JDBC 배치(batch_size)로 묶여서 나가고, clear로 영속성 컨텍스트를 비운다.
+    // 2차 캐시에는 넣지 않는다. (CacheMode.IGNORE) 한꺼번에 들어온 상품들이 자주 조회되는 상품들을 캐시에서 밀어내지 않도록
+    public void persistAll(List<? extends Item> items) {
+        Session session = em.unwrap(Session.class);
+        CacheMode cacheMode = session.getCacheMode();
+        session.setCacheMode(CacheMode.IGNORE);
+        try {
+            for (Item item : items) {
+                em.persist(item);
+            }
+            em.flush();
+            em.clear();
+        } finally {
+            session.setCacheMode(cacheMode);
+        }
+    }
+
     public Item findOne(Long id){
         return em.find(Item.class, id);
     }
 
-    public List<Item> findAll(){
-        return em.createQuery("select  i from Item i", Item.class)
+    // 여러 상품을 in 절 한 번으로 조회, 상품 id 순서로 정렬
+    // 상품 행 잠금 (select ... for update), 없으면 null
+    // 같은 상품에 대한 작업(카테고리 연결, 해제)을 한 줄로 세운다.
+    public Item findOneForUpdate(Long id) {
+        return em.find(Item.class, id, LockModeType.PESSIMISTIC_WRITE);
+    }
+
+    public List<Item> findAllById(Collection<Long> ids) {
+        return em.createQuery("select i from Item i where i.id in :ids order by i.id", Item.class)
+                .setParameter("ids", ids)
                 .getResultList();
     }
 
+    // 재고 일괄 복구 (일괄 주문 취소)
+    // 엔티티를 읽지 않고 update 한 번, version도 올려서 이 상품을 읽어둔 다른 트랜잭션의 주문은 충돌 => 재시도하게 한다.
+    // 벌크 update는 어느 상품이 바뀌었는지 하이버네이트가 모르므로, 커밋 시 item 2차 캐시 리전 전체가 비워진다.
+    // 인기 상품은 stock_quantity를 쓰지 않으므로 hotItem = false 조건을 걸어둔다. (반환값 0 => 그 사이 모드가 바뀜)
+    // 수정 시각도 직접 넣는다. (BaseTimeEntity)
+    public int addStock(Long itemId, int quantity) {
+        return em.createQuery("update Item i set i.stockQuantity = i.stockQuantity + :quantity, i.version = i.version + 1," +
+                " i.lastModifiedDate = :now" +
+                " where i.id = :itemId and i.hotItem = false")
+                .setParameter("quantity", quantity)
+                .setParameter("now", LocalDateTime.now())
+                .setParameter("itemId", itemId)
+                .executeUpdate();
+    }
 
+    // 인기 상품의 재고 일괄 복구: 되돌리는 재고는 아무 조각에나 더하면 되므로 0번 조각에 더한다.
+    public int addShardStock(Long itemId, int quantity) {
+        return em.createQuery("update ItemStockShard s set s.quantity = s.quantity + :quantity, s.version = s.version + 1," +
+                " s.lastModifiedDate = :now" +
+                " where s.item.id = :itemId and s.shardNo = 0")
+                .setParameter("quantity", quantity)
+                .setParameter("now", LocalDateTime.now())
+                .setParameter("itemId", itemId)
+                .executeUpdate();
+    }
 
+    // 상품 목록은 쿼리 캐시 사용: item 테이블이 바뀌면(상품 등록, 수정, 주문으로 재고 변경) 자동으로 무효화된다.
+    public List<Item> findAll(){
+        return em.createQuery("select  i from Item i", Item.class)
+                .setHint(QueryHints.HINT_CACHEABLE, true)
+                .getResultList();
+    }
 }
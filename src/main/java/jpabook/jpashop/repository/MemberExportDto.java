@@ -0,0 +1,17 @@
+package jpabook.jpashop.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// 회원 내보내기 한 행
+// 엔티티가 아니므로 영속성 컨텍스트에 쌓이지 않는다.
+@Data
+@AllArgsConstructor
+public class MemberExportDto {
+
+    private Long id;
+    private String name;
+    private String city;
+    private String street;
+    private String zipcode;
+}
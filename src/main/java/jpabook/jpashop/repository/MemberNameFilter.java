@@ -0,0 +1,121 @@
+package jpabook.jpashop.repository;
+
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// 회원 이름 중복 검사용 블룸 필터
+// 가입할 때마다 이름으로 회원을 조회하지 않도록, 이미 있는 이름인지를 메모리에서 먼저 확인한다.
+// - mightContain이 false => 그런 이름은 확실히 없다. (DB 조회 생략)
+// - mightContain이 true => 있을 수도 있다. (오탐률 약 1%) => DB에서 확인
+// 실제 중복 방지는 member.name 유니크 제약 조건이 하고, 이 필터는 DB 조회를 줄이는 용도일 뿐이다.
+//
+// 블룸 필터는 항목을 지울 수 없다. 이름을 바꾸거나 가입이 롤백되어도 예전 이름은 남아있고, 오탐(DB 조회)만 늘어난다.
+// 크기는 rebuild 시점의 회원 수로 정하므로, 회원이 크게 늘면 오탐률이 올라간다. (재시작하면 다시 맞춰진다)
+@Component
+public class MemberNameFilter {
+
+    private static final int MIN_CAPACITY = 100_000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    // 시작 시 전체 회원 이름으로 만들기 전까지는 null => 모든 이름을 "있을 수도 있다"로 본다.
+    private volatile Bits bits;
+
+    public boolean isReady() {
+        return bits != null;
+    }
+
+    // 전체 회원 이름으로 필터를 다시 만든다. 앞으로 늘어날 회원을 감안해 현재 회원 수의 2배 크기로 잡는다.
+    public void rebuild(List<String> names) {
+        Bits rebuilt = new Bits(Math.max(MIN_CAPACITY, names.size() * 2L), FALSE_POSITIVE_RATE);
+        for (String name : names) {
+            rebuilt.add(name);
+        }
+        bits = rebuilt;
+    }
+
+    // 회원 가입, 이름 수정 시 호출
+    public void put(String name) {
+        Bits current = bits;
+        if (current != null && name != null) {
+            current.add(name);
+        }
+    }
+
+    public boolean mightContain(String name) {
+        Bits current = bits;
+        if (current == null) {
+            return true;
+        }
+        return name != null && current.mightContain(name);
+    }
+
+    // 비트 배열: 이름마다 k개의 비트를 켠다. 여러 스레드가 동시에 켜도 되도록 AtomicLongArray 사용
+    private static final class Bits {
+
+        private final AtomicLongArray words;
+        private final long bitCount;
+        private final int hashCount;
+
+        Bits(long capacity, double falsePositiveRate) {
+            // 최적의 비트 수 m = -n ln p / (ln 2)^2, 해시 함수 수 k = m / n ln 2
+            long m = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.words = new AtomicLongArray((int) ((m + 63) / 64));
+            this.bitCount = words.length() * 64L;
+            this.hashCount = Math.max(1, (int) Math.round((double) m / capacity * Math.log(2)));
+        }
+
+        void add(String name) {
+            long hash = hash(name);
+            long h1 = mix(hash);
+            long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                int index = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long word;
+                do {
+                    word = words.get(index);
+                    if ((word & mask) != 0) {
+                        break;
+                    }
+                } while (!words.compareAndSet(index, word, word | mask));
+            }
+        }
+
+        boolean mightContain(String name) {
+            long hash = hash(name);
+            long h1 = mix(hash);
+            long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // 64비트 FNV-1a (String.hashCode()는 32비트라 회원이 많으면 충돌이 잦다.)
+        private static long hash(String name) {
+            long hash = 0xcbf29ce484222325L;
+            for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+                hash ^= (b & 0xff);
+                hash *= 0x100000001b3L;
+            }
+            return hash;
+        }
+
+        // 비트를 고르게 섞는다. (MurmurHash3 fmix64)
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb93fe53ce34dL;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package jpabook.jpashop.repository;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+// 회원 이름 부분 검색용 인메모리 역색인 (n-gram)
+// like '%이름%' 검색은 B-tree 인덱스를 탈 수 없어서 회원 테이블 전체를 훑는다.
+// 회원 이름을 2글자씩 잘라서(bigram) 조각 => 회원 id 목록으로 색인해두고,
+// 검색어의 조각들이 모두 들어있는 회원 id만 골라서 주문 검색에 in 절로 넘긴다.
+// 한글 이름은 대부분 2~4글자라서 trigram 대신 bigram을 쓴다.
+//
+// 색인은 서버마다 따로 들고 있고 MemberService를 통한 가입, 수정만 바로 반영된다.
+// 다른 서버, 직접 SQL로 바뀐 회원은 주기적인 rebuild(MemberService.buildMemberNameIndex) 전까지 빠져 있을 수 있다.
+// => 색인이 DB 회원과 같다고 확인될 때만 색인의 회원 id로 좁힌다. 아니면 like 검색 (OrderSearchPredicates)
+//    확인은 회원 목록 버전(DataVersion.MEMBER_LIST)으로 한다. 다시 만들 때 읽은 버전 + 그 뒤로 이 서버에서 커밋한 회원 변경 수가
+//    지금 DB 버전과 같으면 다른 서버에서 바뀐 회원이 없다. 다르면 다음 rebuild까지 like 검색
+//    직접 SQL로 회원을 바꿀 때도 회원 목록 버전을 올려야 한다. (올리지 않으면 다음 rebuild까지 색인에서 빠진다)
+//
+// rebuild는 새 색인(State)을 따로 만든 뒤 한 번에 바꿔 끼운다. 만드는 동안의 검색은 이전 색인을 그대로 쓰고,
+// 만드는 동안 들어온 가입, 수정(put, remove)은 기록해뒀다가 새 색인에 다시 적용한 뒤에 바꾼다.
+@Component
+public class MemberNameIndex {
+
+    private static final int GRAM = 2;
+
+    // 검색은 state를 한 번 읽어서 그 색인만 본다.
+    private volatile State state = new State();
+    // 시작 시 전체 회원으로 색인을 만들기 전까지는 색인을 쓰면 안된다.
+    private volatile boolean ready;
+
+    // put, remove와 rebuild의 교체를 직렬화한다. (가입, 수정은 드물다)
+    private final Object lock = new Object();
+    // rebuild 중에 들어온 변경 (rebuild 중이 아니면 null)
+    private List<Consumer<State>> journal;
+    // 이 서버에서 커밋한 회원 목록 버전 올림 수 (memberListChanged)
+    private final AtomicLong localChanges = new AtomicLong();
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        return state.names.size();
+    }
+
+    // 전체 회원(id, 이름)으로 색인을 다시 만든다.
+    public void rebuild(List<Object[]> idAndNames) {
+        rebuild(() -> idAndNames);
+    }
+
+    // loader: 전체 회원 (id, 이름) 조회
+    // 조회 전부터 변경을 기록해야, 조회 결과에 없는 방금 가입한 회원도 새 색인에 들어간다.
+    public void rebuild(Supplier<List<Object[]>> loader) {
+        rebuild(() -> State.UNKNOWN_VERSION, loader);
+    }
+
+    // memberListVersion: 지금 회원 목록 버전 (DataVersion.MEMBER_LIST)
+    // 버전을 회원보다 먼저 읽는다. 그 사이에 다른 서버가 바꾼 회원은 버전이 어긋나 보이므로 색인만 믿고 놓치지 않는다.
+    public void rebuild(LongSupplier memberListVersion, Supplier<List<Object[]>> loader) {
+        synchronized (lock) {
+            journal = new ArrayList<>();
+        }
+        State rebuilt = new State();
+        try {
+            rebuilt.localChanges = localChanges.get();
+            rebuilt.version = memberListVersion.getAsLong();
+            for (Object[] row : loader.get()) {
+                rebuilt.put((Long) row[0], (String) row[1]);
+            }
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                journal = null;
+            }
+            throw e;
+        }
+        synchronized (lock) {
+            for (Consumer<State> change : journal) {
+                change.accept(rebuilt);
+            }
+            journal = null;
+            state = rebuilt;
+        }
+        ready = true;
+    }
+
+    // 회원 가입, 이름 수정 시 호출
+    // 트랜잭션 안에서는 바로 반영하고, 롤백되면 원래대로 되돌린다.
+    // (커밋 후에 반영하면 같은 트랜잭션 안의 조회에서 방금 가입한 회원을 못 찾는다.)
+    public void put(Long memberId, String name) {
+        String previous = apply(s -> s.put(memberId, name));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_ROLLED_BACK) {
+                        return;
+                    }
+                    if (previous == null) {
+                        remove(memberId);
+                    } else {
+                        apply(s -> s.put(memberId, previous));
+                    }
+                }
+            });
+        }
+    }
+
+    // 회원 가입, 수정 트랜잭션이 회원 목록 버전을 올릴 때마다 호출 (DataVersions.bump 한 번에 한 번)
+    // put처럼 바로 세고 롤백되면 되돌린다. 같은 트랜잭션의 DataVersions.current도 커밋 전의 올림을 더해서 보므로 버전이 맞는다.
+    // 다른 트랜잭션에서는 커밋 전까지 버전이 어긋나 보인다. (like 검색)
+    public void memberListChanged() {
+        localChanges.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        localChanges.decrementAndGet();
+                    }
+                }
+            });
+        }
+    }
+
+    public void remove(Long memberId) {
+        apply(s -> s.remove(memberId));
+    }
+
+    // 현재 색인에 적용, rebuild 중이면 새 색인에도 적용되도록 기록
+    private String apply(Function<State, String> change) {
+        synchronized (lock) {
+            if (journal != null) {
+                journal.add(change::apply);
+            }
+            return change.apply(state);
+        }
+    }
+
+    // 이름에 keyword가 포함된 회원 id 목록
+    public Set<Long> findMemberIds(String keyword) {
+        return findMemberIds(state, keyword);
+    }
+
+    // 색인이 DB 회원과 같을 때만 검색 결과, 빠진 회원이 있을 수 있으면 null
+    // memberListVersion: 지금 DB의 회원 목록 버전, 색인에서 찾은 회원이 있을 때만 읽는다. (없으면 빈 목록)
+    // 버전 확인과 검색은 같은 색인(state)으로 한다.
+    public Set<Long> findMemberIdsIfCurrent(String keyword, LongSupplier memberListVersion) {
+        State current = state;
+        Set<Long> memberIds = findMemberIds(current, keyword);
+        if (memberIds.isEmpty()) {
+            return memberIds;
+        }
+        if (current.version == State.UNKNOWN_VERSION
+                || memberListVersion.getAsLong() != current.version + localChanges.get() - current.localChanges) {
+            return null;
+        }
+        return memberIds;
+    }
+
+    private Set<Long> findMemberIds(State current, String keyword) {
+        String normalized = normalize(keyword);
+        if (normalized.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Map<String, Set<Long>> postings = current.postings;
+        Map<Long, String> names = current.names;
+        // 한 글자 검색은 조각을 만들 수 없으므로 메모리에서 이름을 직접 훑는다. (그래도 DB 전체 스캔보다 훨씬 빠르다)
+        if (normalized.length() < GRAM) {
+            Set<Long> result = new HashSet<>();
+            names.forEach((id, name) -> {
+                if (name.contains(normalized)) {
+                    result.add(id);
+                }
+            });
+            return result;
+        }
+
+        // 검색어의 모든 조각을 가진 회원 id들의 교집합, 작은 목록부터 교집합을 구한다.
+        List<Set<Long>> lists = new ArrayList<>();
+        for (String gram : grams(normalized)) {
+            Set<Long> ids = postings.get(gram);
+            if (ids == null || ids.isEmpty()) {
+                return Collections.emptySet();
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+
+        Set<Long> result = new HashSet<>();
+        for (Long id : lists.get(0)) {
+            if (containsInAll(lists, id)) {
+                // 조각이 모두 있어도 순서가 다를 수 있으므로 ("ab", "bc" => "bcab") 실제 이름으로 한 번 더 확인
+                String name = names.get(id);
+                if (name != null && name.contains(normalized)) {
+                    result.add(id);
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean containsInAll(List<Set<Long>> lists, Long id) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (!lists.get(i).contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 조각 => 회원 id 목록, 회원 id => 이름 (수정 시 이전 조각 제거, 검색 결과 검증에 사용)
+    // version, localChanges: 만들 때 읽은 회원 목록 버전, 이 서버의 변경 수 (state에 넣기 전에 정해진다)
+    private static final class State {
+        private static final long UNKNOWN_VERSION = -1;
+
+        private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+        private final Map<Long, String> names = new ConcurrentHashMap<>();
+        private long version = UNKNOWN_VERSION;
+        private long localChanges;
+
+        // 반환값: 이전 이름 (없으면 null)
+        String put(Long memberId, String name) {
+            String normalized = normalize(name);
+            String previous = names.put(memberId, normalized);
+            if (previous != null) {
+                removePostings(memberId, previous);
+            }
+            for (String gram : grams(normalized)) {
+                postings.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(memberId);
+            }
+            return previous;
+        }
+
+        String remove(Long memberId) {
+            String previous = names.remove(memberId);
+            if (previous != null) {
+                removePostings(memberId, previous);
+            }
+            return previous;
+        }
+
+        private void removePostings(Long memberId, String name) {
+            for (String gram : grams(name)) {
+                Set<Long> ids = postings.get(gram);
+                if (ids != null) {
+                    ids.remove(memberId);
+                }
+            }
+        }
+    }
+
+    private static Set<String> grams(String normalized) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= normalized.length(); i++) {
+            grams.add(normalized.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private static String normalize(String value) {
+        // 기존 like 검색과 결과가 같도록 대소문자, 공백을 그대로 둔다.
+        return value == null ? "" : value;
+    }
+}
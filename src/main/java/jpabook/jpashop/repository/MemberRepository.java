@@ -3,12 +3,17 @@ package jpabook.jpashop.repository;
 
 import jpabook.jpashop.domain.Member;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 // component scan에 의해 spring bean으로 자동 관리
 @Repository
@@ -26,6 +31,9 @@ public class MemberRepository {
     // @Autowired // 생략
     private final EntityManager em;
 
+    // 내보내기 시 JDBC 드라이버가 한 번에 가져오는 행 수
+    private static final int EXPORT_FETCH_SIZE = 1000;
+
 //    // lombok 으로 생략 가능: RequiredArgsConstructor => final 자동 생성
 //    public MemberRepository(EntityManager em) {
 //        this.em = em;
@@ -50,6 +58,13 @@ public class MemberRepository {
                 .getResultList();
     }
 
+    // 여러 회원을 in 절 한 번으로 조회
+    public List<Member> findAllById(Collection<Long> ids) {
+        return em.createQuery("select m from Member m where m.id in :ids", Member.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
     public List<Member> findByName(String name){
         return em.createQuery("select m from Member m where m.name = :name", Member.class)
                 .setParameter("name", name)
@@ -57,7 +72,58 @@ public class MemberRepository {
                 .getResultList();
     }
 
+    // 중복 가입 검사: 회원 엔티티를 통째로 가져오지 않고, 유니크 인덱스로 id 하나만 확인한다.
+    public boolean existsByName(String name) {
+        return !em.createQuery("select m.id from Member m where m.name = :name", Long.class)
+                .setParameter("name", name)
+                .setMaxResults(1)
+                .getResultList()
+                .isEmpty();
+    }
+
+    // 일괄 가입 중복 검사: 주어진 이름들 중 이미 있는 이름, in 절 한 번
+    public List<String> findExistingNames(Collection<String> names) {
+        return em.createQuery("select m.name from Member m where m.name in :names", String.class)
+                .setParameter("names", names)
+                .getResultList();
+    }
 
+    // 유니크 제약 조건 위반을 커밋 전에 확인하기 위한 flush
+    // @Repository 메서드에서 발생한 예외이므로 스프링 예외(DataIntegrityViolationException)로 변환된다.
+    public void flush() {
+        em.flush();
+    }
+
+    // 영속성 컨텍스트 비우기 (일괄 가입에서 flush한 회원들)
+    public void clear() {
+        em.clear();
+    }
+
+    // 회원 전체를 한 행씩 action에 넘긴다. (내보내기)
+    // - 엔티티 대신 DTO로 조회 => 영속성 컨텍스트에 회원이 쌓이지 않으므로 중간에 clear 할 필요도 없다.
+    // - scroll(FORWARD_ONLY) + fetch size => 결과 전체를 리스트로 만들지 않고, JDBC 드라이버에서 fetch size만큼씩 가져온다.
+    //   (드라이버마다 다르다. MySQL은 useCursorFetch=true, PostgreSQL은 트랜잭션 안(autocommit off)에서만 fetch size가 적용된다.
+    //    H2 임베디드는 결과가 크면 임시 파일로 내리므로 힙에 다 올리지 않는다.)
+    // - id 순서: PK 인덱스 순서대로 읽으므로 정렬용 메모리가 필요 없다.
+    public void forEachForExport(Consumer<MemberExportDto> action) {
+        try (ScrollableResults results = em.unwrap(Session.class)
+                .createQuery("select new jpabook.jpashop.repository.MemberExportDto(m.id, m.name, m.address.city, m.address.street, m.address.zipcode)" +
+                        " from Member m order by m.id", MemberExportDto.class)
+                .setFetchSize(EXPORT_FETCH_SIZE)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                action.accept((MemberExportDto) results.get(0));
+            }
+        }
+    }
+
+    // 회원 이름 색인(MemberNameIndex)을 만들기 위한 (id, 이름) 전체 조회
+    // 엔티티가 아닌 값만 조회하므로 영속성 컨텍스트에 회원 엔티티가 쌓이지 않는다.
+    public List<Object[]> findAllIdAndNames() {
+        return em.createQuery("select m.id, m.name from Member m", Object[].class)
+                .getResultList();
+    }
 
 
 
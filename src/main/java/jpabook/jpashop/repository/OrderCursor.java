@@ -0,0 +1,45 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.exception.InvalidRequestException;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+// 주문 목록 키셋(seek) 페이징의 위치
+// 이전 페이지의 마지막 주문 (주문시간, id)을 기억해두고, 다음 페이지는 그 뒤부터 조회한다.
+// offset 페이징은 깊은 페이지일수록 앞의 행들을 다 읽고 버려야 하지만, 키셋 페이징은 인덱스에서 바로 시작 위치를 찾는다.
+@Getter
+public class OrderCursor {
+
+    private static final String SEPARATOR = "_";
+
+    private final LocalDateTime orderDate;
+    private final Long orderId;
+
+    public OrderCursor(LocalDateTime orderDate, Long orderId) {
+        this.orderDate = orderDate;
+        this.orderId = orderId;
+    }
+
+    // 클라이언트에게는 내부 구조를 알 수 없는 불투명한 토큰으로 넘긴다.
+    public String encode() {
+        String raw = orderDate + SEPARATOR + orderId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static OrderCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int index = raw.lastIndexOf(SEPARATOR);
+            LocalDateTime orderDate = LocalDateTime.parse(raw.substring(0, index));
+            Long orderId = Long.valueOf(raw.substring(index + 1));
+            return new OrderCursor(orderDate, orderId);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            // NumberFormatException도 IllegalArgumentException 이다.
+            throw new InvalidRequestException("잘못된 페이지 토큰입니다.", e);
+        }
+    }
+}
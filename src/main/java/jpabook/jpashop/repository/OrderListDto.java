@@ -0,0 +1,25 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// 주문 목록 화면(/orders)의 한 행
+// 화면에서 엔티티 그래프를 타고 다니면(item.member.name, item.orderItems[0].item.name) 행마다 지연 로딩이 발생하므로,
+// 화면에 필요한 값만 평평하게 담아서 넘긴다.
+@Data
+@AllArgsConstructor
+public class OrderListDto {
+
+    private Long orderId;
+    private String memberName;
+    private OrderStatus status;
+    private LocalDateTime orderDate;
+
+    // 대표 상품 (주문의 첫 번째 주문상품)
+    private String itemName;
+    private int orderPrice;
+    private int count;
+}
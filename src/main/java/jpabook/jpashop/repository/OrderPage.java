@@ -0,0 +1,20 @@
+package jpabook.jpashop.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+// 주문 목록 한 페이지 (키셋 페이징)
+// nextCursor가 null이면 마지막 페이지
+@Getter
+@AllArgsConstructor
+public class OrderPage<T> {
+
+    private List<T> content;
+    private String nextCursor;
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,129 @@
+package jpabook.jpashop.repository;
+
+
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// 화면 조회 전용 레포지토리
+// OrderRepository는 엔티티를 다루는 핵심 로직용, 여기는 화면에 맞춘 조회 로직용으로 분리한다.
+@Repository
+@RequiredArgsConstructor
+public class OrderQueryRepository {
+
+    private final EntityManager em;
+    private final OrderSearchPredicates orderSearchPredicates;
+
+    // 한 페이지에 가져올 수 있는 최대 주문 수
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    // 주문 목록 조회 (키셋 페이징): 주문 수, 페이지 깊이와 관계없이 쿼리 2번
+    // 1. 주문 + 회원 + 배송 (fetch join)
+    // 2. 각 주문의 대표 주문상품 + 상품 (in 절)
+    // cursor가 null이면 첫 페이지
+    public OrderPage<OrderListDto> findOrderListPage(OrderSearch orderSearch, OrderCursor cursor, int size) {
+        OrderPage<Order> page = findOrderPage(orderSearch, cursor, size);
+        return new OrderPage<>(toOrderListDtos(page.getContent()), page.getNextCursor());
+    }
+
+    // 주문 엔티티 페이지 조회 (키셋 페이징)
+    // xToOne 관계(회원, 배송)만 fetch join 한다.
+    // 컬렉션(orderItems)까지 fetch join 하면 행이 주문상품 수만큼 늘어나서, 하이버네이트가 페이징을 DB가 아닌 메모리에서 하게 된다.
+    // => 컬렉션은 지연 로딩 + default_batch_fetch_size로 in 절 한 번에 가져온다.
+    public OrderPage<Order> findOrderPage(OrderSearch orderSearch, OrderCursor cursor, int size) {
+        int limit = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Order> cq = cb.createQuery(Order.class);
+        Root<Order> o = cq.from(Order.class);
+        // fetch join으로 회원, 배송을 주문과 함께 한 번에 가져온다. => 지연 로딩 X
+        // 하이버네이트에서는 fetch가 join을 겸하므로, 검색 조건에 쓰기 위해 Join으로 캐스팅한다.
+        @SuppressWarnings("unchecked")
+        Join<Order, Member> m = (Join<Order, Member>) o.<Order, Member>fetch("member", JoinType.INNER);
+        o.fetch("delivery", JoinType.LEFT);
+
+        List<Predicate> criteria = orderSearchPredicates.build(cb, o, m, orderSearch);
+        if (cursor != null) {
+            // 이전 페이지 마지막 주문보다 (주문시간, id)가 작은 주문들
+            // (orders.order_date, orders.order_id) 인덱스를 타고 바로 시작 위치로 이동한다.
+            Path<LocalDateTime> orderDate = o.get("orderDate");
+            Path<Long> orderId = o.get("id");
+            criteria.add(cb.or(
+                    cb.lessThan(orderDate, cursor.getOrderDate()),
+                    cb.and(cb.equal(orderDate, cursor.getOrderDate()), cb.lessThan(orderId, cursor.getOrderId()))));
+        }
+        cq.where(cb.and(criteria.toArray(new Predicate[criteria.size()])));
+        cq.orderBy(cb.desc(o.get("orderDate")), cb.desc(o.get("id")));
+
+        // 다음 페이지가 있는지 알기 위해 한 건 더 가져온다.
+        List<Order> orders = em.createQuery(cq)
+                .setMaxResults(limit + 1)
+                .getResultList();
+
+        String nextCursor = null;
+        if (orders.size() > limit) {
+            orders = orders.subList(0, limit);
+            Order last = orders.get(limit - 1);
+            nextCursor = new OrderCursor(last.getOrderDate(), last.getId()).encode();
+        }
+        return new OrderPage<>(orders, nextCursor);
+    }
+
+    private List<OrderListDto> toOrderListDtos(List<Order> orders) {
+        if (orders.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> orderIds = orders.stream()
+                .map(Order::getId)
+                .collect(Collectors.toList());
+        Map<Long, OrderItem> representatives = findRepresentativeOrderItems(orderIds);
+
+        List<OrderListDto> result = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            OrderItem orderItem = representatives.get(order.getId());
+            result.add(new OrderListDto(
+                    order.getId(),
+                    order.getMember().getName(),
+                    order.getStatus(),
+                    order.getOrderDate(),
+                    orderItem == null ? null : orderItem.getItem().getName(),
+                    orderItem == null ? 0 : orderItem.getOrderPrice(),
+                    orderItem == null ? 0 : orderItem.getCount()));
+        }
+        return result;
+    }
+
+    // 주문별 대표 주문상품(가장 먼저 저장된 주문상품)을 상품과 함께 한 번에 조회
+    // 컬렉션(orderItems)을 fetch join 하지 않으므로 주문 행이 뻥튀기되지 않는다.
+    private Map<Long, OrderItem> findRepresentativeOrderItems(List<Long> orderIds) {
+        List<OrderItem> orderItems = em.createQuery(
+                "select oi from OrderItem oi" +
+                        " join fetch oi.item i" +
+                        " where oi.id in (" +
+                        "   select min(oi2.id) from OrderItem oi2" +
+                        "   where oi2.order.id in :orderIds" +
+                        "   group by oi2.order.id)", OrderItem.class)
+                .setParameter("orderIds", orderIds)
+                .getResultList();
+
+        Map<Long, OrderItem> representatives = new HashMap<>();
+        for (OrderItem orderItem : orderItems) {
+            // 주문은 이미 1번 쿼리에서 영속성 컨텍스트에 올라와 있으므로 id 조회로는 추가 쿼리가 나가지 않는다.
+            representatives.put(orderItem.getOrder().getId(), orderItem);
+        }
+        return representatives;
+    }
+
+}
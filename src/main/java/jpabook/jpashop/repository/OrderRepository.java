@@ -1,16 +1,20 @@
 package jpabook.jpashop.repository;
 
 
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.DeliveryStatus;
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderStatus;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
-import org.springframework.util.StringUtils;
 
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.*;
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 @Repository
@@ -18,6 +22,7 @@ import java.util.List;
 public class OrderRepository {
 
     private final EntityManager em;
+    private final OrderSearchPredicates orderSearchPredicates;
 
     public void save(Order order) {
         em.persist(order);
@@ -32,22 +37,7 @@ public class OrderRepository {
         // 다른 대안 => Querydsl
         // 일단 jpa criteria로 작성
 
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Order> cq = cb.createQuery(Order.class);
-        Root<Order> o = cq.from(Order.class);
-        Join<Order, Member> m = o.join("member", JoinType.INNER); //회원과 조인
-        List<Predicate> criteria = new ArrayList<>();
-        //주문 상태 검색
-        if (orderSearch.getOrderStatus() != null) {
-            Predicate status = cb.equal(o.get("status"), orderSearch.getOrderStatus());
-            criteria.add(status);
-        }
-        //회원 이름 검색
-        if (StringUtils.hasText(orderSearch.getMemberName())) {
-            Predicate name = cb.like(m.<String>get("name"), "%" + orderSearch.getMemberName() + "%");
-            criteria.add(name);
-        }
-        cq.where(cb.and(criteria.toArray(new Predicate[criteria.size()])));
+        CriteriaQuery<Order> cq = findAllCriteria(em.getCriteriaBuilder(), orderSearch);
         TypedQuery<Order> query = em.createQuery(cq).setMaxResults(1000); //최대1000건
         return query.getResultList();
 
@@ -63,4 +53,85 @@ public class OrderRepository {
 
     }
 
+    // 주문 검색 criteria 조립 (조회 없이 조립 비용만 따로 잴 수 있도록 분리, OrderRepositoryBenchmark)
+    public CriteriaQuery<Order> findAllCriteria(CriteriaBuilder cb, OrderSearch orderSearch) {
+        CriteriaQuery<Order> cq = cb.createQuery(Order.class);
+        Root<Order> o = cq.from(Order.class);
+        Join<Order, Member> m = o.join("member", JoinType.INNER); //회원과 조인
+        //주문 상태, 회원 이름 검색 (회원 이름은 이름 색인으로 회원 id를 먼저 찾는다)
+        List<Predicate> criteria = orderSearchPredicates.build(cb, o, m, orderSearch);
+        cq.where(cb.and(criteria.toArray(new Predicate[criteria.size()])));
+        return cq;
+    }
+
+    // 일괄 취소
+    // 엔티티를 하나씩 읽어서 cancel() 하면 주문마다 주문, 배송, 주문상품, 상품 조회 + update가 나간다.
+    // 일괄 취소는 취소할 수 있는 주문 id를 먼저 잠그고, 상태 변경과 재고 복구를 SQL 집합 연산으로 처리한다.
+
+    // 취소할 수 있는 주문 id (주문 상태 + 배송 완료 전), id 순서로 행 잠금(select ... for update)
+    // 잠근 뒤에는 다른 트랜잭션이 이 주문들을 취소하거나 배송 완료할 수 없으므로, 아래 update들이 같은 주문 집합을 대상으로 한다.
+    // 주문 행만 잠근다. 배송을 left join한 채로 for update 하면 PostgreSQL은 거절하고(outer join의 nullable 쪽),
+    // 다른 DB에서는 배송 행까지 잠근다. => 배송 조건은 조인 대신 not exists 서브쿼리로 (for update 대상이 아니다)
+    public List<Long> findCancelableIdsForUpdate(Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return em.createQuery("select o.id from Order o" +
+                " where o.id in :orderIds" +
+                " and o.status = :status" +
+                " and not exists (select d.id from Delivery d where d.id = o.delivery.id and d.status = :comp)" +
+                " order by o.id", Long.class)
+                .setParameter("orderIds", orderIds)
+                .setParameter("status", OrderStatus.ORDER)
+                .setParameter("comp", DeliveryStatus.COMP)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+    }
+
+    // 검색 조건(회원 이름)에 맞는 취소할 수 있는 주문 id, 최대 limit건
+    // 회원과 조인하므로 검색은 잠그지 않고 id만 찾고, 주문 행은 위의 id 조건 쿼리로 다시 확인하면서 잠근다. (회원 행은 잠그지 않는다)
+    // 찾은 뒤 잠그기 전에 다른 트랜잭션이 취소, 배송 완료한 주문은 빠지므로 limit건보다 적을 수 있다.
+    public List<Long> findCancelableIdsForUpdate(OrderSearch orderSearch, int limit) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Long> cq = cb.createQuery(Long.class);
+        Root<Order> o = cq.from(Order.class);
+        Join<Order, Member> m = o.join("member", JoinType.INNER);
+        Join<Order, Delivery> d = o.join("delivery", JoinType.LEFT);
+
+        List<Predicate> criteria = orderSearchPredicates.build(cb, o, m, orderSearch);
+        criteria.add(cb.equal(o.get("status"), OrderStatus.ORDER));
+        criteria.add(cb.or(cb.isNull(d.get("status")), cb.notEqual(d.get("status"), DeliveryStatus.COMP)));
+
+        cq.select(o.<Long>get("id"))
+                .where(cb.and(criteria.toArray(new Predicate[criteria.size()])))
+                .orderBy(cb.asc(o.get("id")));
+        List<Long> candidates = em.createQuery(cq)
+                .setMaxResults(limit)
+                .getResultList();
+        return findCancelableIdsForUpdate(candidates);
+    }
+
+    // 주문 상태 변경: update 한 번
+    public int cancelAll(Collection<Long> orderIds) {
+        return em.createQuery("update Order o set o.status = :cancel where o.id in :orderIds")
+                .setParameter("cancel", OrderStatus.CANCEL)
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+    }
+
+    // 상품별로 되돌릴 재고 수량 합계: [상품 id, 인기 상품 여부, 수량 합계], 상품 id 순서
+    public List<Object[]> sumCountsByItem(Collection<Long> orderIds) {
+        return em.createQuery("select i.id, i.hotItem, sum(oi.count) from OrderItem oi join oi.item i" +
+                " where oi.order.id in :orderIds" +
+                " group by i.id, i.hotItem" +
+                " order by i.id", Object[].class)
+                .setParameter("orderIds", orderIds)
+                .getResultList();
+    }
+
+    // 벌크 update 후 영속성 컨텍스트 비우기 (DB와 달라진 엔티티를 다시 읽도록)
+    public void clear() {
+        em.clear();
+    }
+
 }
@@ -0,0 +1,70 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.DataVersion;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+// OrderSearch => criteria 검색 조건
+// OrderRepository, OrderQueryRepository가 같은 검색 조건을 쓰도록 한 곳에 모아둔다.
+@Component
+@RequiredArgsConstructor
+class OrderSearchPredicates {
+
+    // 이름 검색 결과 회원이 이보다 많으면 in 절이 너무 커지므로 like 검색으로 대신한다.
+    private static final int MAX_MEMBER_IDS = 1000;
+
+    private final MemberNameIndex memberNameIndex;
+    private final DataVersions dataVersions;
+
+    List<Predicate> build(CriteriaBuilder cb, Root<Order> o, Join<Order, Member> m, OrderSearch orderSearch) {
+        List<Predicate> criteria = new ArrayList<>();
+        //주문 상태 검색
+        if (orderSearch.getOrderStatus() != null) {
+            criteria.add(cb.equal(o.get("status"), orderSearch.getOrderStatus()));
+        }
+        //회원 이름 검색
+        if (StringUtils.hasText(orderSearch.getMemberName())) {
+            criteria.addAll(memberName(cb, o, m, orderSearch.getMemberName()));
+        }
+        return criteria;
+    }
+
+    // like '%이름%'은 인덱스를 탈 수 없으므로, 먼저 이름 색인으로 회원 id를 찾고 주문을 회원 id(외래키)로 검색한다.
+    // 색인은 서버 메모리에 있고 다른 서버, 직접 SQL로 가입한 회원이 아직 빠져 있을 수 있다.
+    // 일부 회원만 빠져 있어도 id로 좁히면 그 회원의 주문이 결과(와 주문 검색 캐시)에서 빠진다.
+    // => 회원 목록 버전으로 색인이 DB와 같다고 확인될 때만 id로 좁히고, 아니면 like 검색 (MemberNameIndex)
+    //    버전 확인은 주 DB의 버전 행 조회 한 번 (색인에서 찾은 회원이 있을 때만)
+    private List<Predicate> memberName(CriteriaBuilder cb, Root<Order> o, Join<Order, Member> m, String memberName) {
+        List<Predicate> criteria = new ArrayList<>();
+        Predicate like = cb.like(m.<String>get("name"), "%" + memberName + "%");
+        if (!memberNameIndex.isReady()) {
+            // 색인이 아직 준비되지 않았으면 기존 방식
+            criteria.add(like);
+            return criteria;
+        }
+
+        Set<Long> memberIds = memberNameIndex.findMemberIdsIfCurrent(memberName,
+                () -> dataVersions.current(DataVersion.MEMBER_LIST));
+        if (memberIds != null && !memberIds.isEmpty() && memberIds.size() <= MAX_MEMBER_IDS) {
+            criteria.add(o.get("member").get("id").in(memberIds));
+            // 색인이 어긋난 경우(다른 서버에서 이름 수정 등)를 대비해 실제 이름으로 한 번 더 거른다.
+            // 회원 id로 이미 좁혀진 행에만 적용되므로 비용은 거의 없다.
+            criteria.add(like);
+        } else {
+            // 색인이 뒤처졌거나(다른 서버, 직접 SQL의 변경) 색인에 없는 회원일 수 있으므로 기존 방식
+            criteria.add(like);
+        }
+        return criteria;
+    }
+}
@@ -0,0 +1,101 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.OutboxEvent;
+import jpabook.jpashop.domain.OutboxOffset;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class OutboxRepository {
+
+    private final EntityManager em;
+
+    public void save(OutboxEvent event) {
+        em.persist(event);
+    }
+
+    // 위치 행을 잠그고 조회, 위치 행은 시작할 때 등록(createOffsetIfAbsent)되어 있어야 한다.
+    public OutboxOffset findOffsetForUpdate(String name) {
+        OutboxOffset offset = em.find(OutboxOffset.class, name, LockModeType.PESSIMISTIC_WRITE);
+        if (offset == null) {
+            throw new IllegalStateException("등록되지 않은 아웃박스 위치입니다. name=" + name);
+        }
+        return offset;
+    }
+
+    // 위치 행이 없으면 0부터 시작하는 행을 만든다.
+    // 여러 노드가 동시에 만들면 PK 충돌로 한 곳만 커밋된다. (DataIntegrityViolationException)
+    public void createOffsetIfAbsent(String name) {
+        if (em.find(OutboxOffset.class, name) == null) {
+            em.persist(new OutboxOffset(name));
+            em.flush();
+        }
+    }
+
+    // 릴레이 임대: 비어 있거나, 이미 내 임대거나, 만료된 임대면 가져가거나 연장한다. 가져가면 1
+    public int leaseRelay(String owner, LocalDateTime now, LocalDateTime until) {
+        return em.createQuery("update OutboxOffset o set o.leaseOwner = :owner, o.leaseUntil = :until" +
+                " where o.name = :name and (o.leaseOwner is null or o.leaseOwner = :owner or o.leaseUntil < :now)")
+                .setParameter("owner", owner)
+                .setParameter("until", until)
+                .setParameter("name", OutboxOffset.SEQUENCER)
+                .setParameter("now", now)
+                .executeUpdate();
+    }
+
+    public int releaseRelay(String owner) {
+        return em.createQuery("update OutboxOffset o set o.leaseOwner = null, o.leaseUntil = null" +
+                " where o.name = :name and o.leaseOwner = :owner")
+                .setParameter("name", OutboxOffset.SEQUENCER)
+                .setParameter("owner", owner)
+                .executeUpdate();
+    }
+
+    // 아직 순번이 없는(커밋되어 보이는) 이벤트, 먼저 기록된 순서로 최대 limit건
+    public List<OutboxEvent> findUnsequenced(int limit) {
+        return em.createQuery("select e from OutboxEvent e where e.position is null" +
+                " order by e.createdDate, e.id", OutboxEvent.class)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    // after 다음 순번부터 순번 순서대로 최대 limit건
+    public List<OutboxEvent> findAfter(long after, int limit) {
+        return em.createQuery("select e from OutboxEvent e where e.position > :after" +
+                " order by e.position", OutboxEvent.class)
+                .setParameter("after", after)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    // 주어진 싱크들이 전달한 위치 중 가장 뒤처진 곳
+    // 제거된 싱크의 행은 보지 않는다. 위치 행이 없는 싱크가 있으면 아무것도 전달하지 않은 것으로 보고 0
+    public long findMinSinkPosition(Collection<String> sinkNames) {
+        if (sinkNames.isEmpty()) {
+            return 0;
+        }
+        Object[] countAndMin = em.createQuery("select count(o), min(o.position) from OutboxOffset o" +
+                " where o.name in :names", Object[].class)
+                .setParameter("names", sinkNames)
+                .getSingleResult();
+        long count = (Long) countAndMin[0];
+        if (count < sinkNames.size() || countAndMin[1] == null) {
+            return 0;
+        }
+        return (Long) countAndMin[1];
+    }
+
+    // 모든 싱크에 전달된 이벤트 정리: delete 한 번
+    public int deleteUpTo(long position) {
+        return em.createQuery("delete from OutboxEvent e where e.position <= :position")
+                .setParameter("position", position)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,28 @@
+package jpabook.jpashop.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// 같은 프로세스 안의 구독자에게 전달: @EventListener(OutboxMessage) 메서드가 순번 순서대로 받는다.
+// 리스너가 예외를 던지면 전달 위치가 그대로이므로 다음 차례에 다시 받는다.
+@Component
+@RequiredArgsConstructor
+public class ApplicationEventOutboxSink implements OutboxSink {
+
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    @Override
+    public String name() {
+        return "application-events";
+    }
+
+    @Override
+    public void publish(List<OutboxMessage> messages) {
+        for (OutboxMessage message : messages) {
+            applicationEventPublisher.publishEvent(message);
+        }
+    }
+}
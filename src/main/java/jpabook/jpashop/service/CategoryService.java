@@ -0,0 +1,173 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Category;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.exception.InvalidRequestException;
+import jpabook.jpashop.exception.NotFoundException;
+import jpabook.jpashop.repository.CategoryRepository;
+import jpabook.jpashop.repository.CategoryTree;
+import jpabook.jpashop.repository.CategoryTreeCache;
+import jpabook.jpashop.repository.ItemPage;
+import jpabook.jpashop.repository.ItemRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class CategoryService {
+
+    // 카테고리 상품 목록 한 페이지 최대 상품 수
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final CategoryRepository categoryRepository;
+    private final ItemRepository itemRepository;
+    private final CategoryTreeCache categoryTreeCache;
+
+    // 카테고리 추가, parentId가 null이면 최상위 카테고리
+    @Transactional
+    public Long addCategory(String name, Long parentId) {
+        Category category = new Category();
+        category.setName(name);
+        Category parent = null;
+        if (parentId != null) {
+            parent = categoryRepository.findOne(parentId);
+            if (parent == null) {
+                throw new NotFoundException("존재하지 않는 상위 카테고리입니다.");
+            }
+        }
+        // persist로 id가 정해진 뒤에 부모와 연결해야 path(/상위 path/id/)를 만들 수 있다.
+        categoryRepository.save(category);
+        if (parent == null) {
+            category.updatePath();
+        } else {
+            parent.addChildCategory(category);
+        }
+        categoryTreeCache.invalidate();
+        return category.getId();
+    }
+
+    // 카테고리에 상품 연결
+    // 1. category_item insert
+    // 2. 상품 수 +1: 이 카테고리의 itemCount, 자신과 상위 카테고리들 중 이 상품이 처음 들어오는 카테고리의 subtreeItemCount
+    //    (subtreeItemCount는 서로 다른 상품 수, 하위 트리의 다른 카테고리에 이미 연결된 상품은 다시 세지 않는다)
+    // 카테고리, 상품 엔티티의 컬렉션은 건드리지 않는다.
+    // 같은 상품의 연결, 해제는 상품 행을 잠가서 한 줄로 세운다. (동시에 형제 카테고리에 연결하면 둘 다 "처음"으로 셀 수 있으므로)
+    @Transactional
+    public void addItem(Long categoryId, Long itemId) {
+        CategoryTree.Node node = findNode(categoryId);
+        if (itemRepository.findOneForUpdate(itemId) == null) {
+            throw new NotFoundException("존재하지 않는 상품입니다.");
+        }
+        if (categoryRepository.isLinked(categoryId, itemId)) {
+            return;
+        }
+        categoryRepository.linkItem(categoryId, itemId);
+        categoryRepository.addItemCount(categoryId, subtreesWithoutOtherLink(node, itemId), 1);
+        categoryTreeCache.invalidate();
+    }
+
+    // 카테고리에서 상품 연결 해제
+    // 상위 카테고리의 subtreeItemCount는 하위 트리의 다른 카테고리에도 연결되어 있지 않을 때만 -1
+    @Transactional
+    public void removeItem(Long categoryId, Long itemId) {
+        CategoryTree.Node node = findNode(categoryId);
+        if (itemRepository.findOneForUpdate(itemId) == null) {
+            return;
+        }
+        if (categoryRepository.unlinkItem(categoryId, itemId) == 0) {
+            return;
+        }
+        categoryRepository.addItemCount(categoryId, subtreesWithoutOtherLink(node, itemId), -1);
+        categoryTreeCache.invalidate();
+    }
+
+    // node와 상위 카테고리들 중, 하위 트리에 이 상품이 연결된 다른 카테고리가 없는 것
+    // path에 카테고리 id가 들어있으면 그 카테고리의 하위 트리다. (materialized path)
+    private List<Long> subtreesWithoutOtherLink(CategoryTree.Node node, Long itemId) {
+        Set<Long> covered = new HashSet<>();
+        for (String path : categoryRepository.findLinkedPaths(itemId, node.getId())) {
+            for (String id : path.split("/")) {
+                if (!id.isEmpty()) {
+                    covered.add(Long.valueOf(id));
+                }
+            }
+        }
+        List<Long> subtreeIds = new ArrayList<>();
+        for (Long id : node.pathIds()) {
+            if (!covered.contains(id)) {
+                subtreeIds.add(id);
+            }
+        }
+        return subtreeIds;
+    }
+
+    // 카테고리 트리 전체 (메모리 스냅샷, 쿼리 X)
+    public CategoryTree getTree() {
+        return categoryTreeCache.get();
+    }
+
+    // 카테고리 상품 목록 (키셋 페이징, 상품 id 순서)
+    // cursor: 이전 페이지의 nextCursor, 없으면 첫 페이지
+    // includeSubcategories: 하위 카테고리의 상품까지 포함
+    public ItemPage findItemPage(Long categoryId, String cursor, int size, boolean includeSubcategories) {
+        CategoryTree.Node node = findNode(categoryId);
+        long afterItemId = parseCursor(cursor);
+        int limit = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+
+        // 한 건 더 읽어서 다음 페이지가 있는지 확인
+        List<Item> items = includeSubcategories
+                ? categoryRepository.findSubtreeItemPage(node.getPath(), afterItemId, limit + 1)
+                : categoryRepository.findItemPage(categoryId, afterItemId, limit + 1);
+        if (items.size() <= limit) {
+            return new ItemPage(items, null);
+        }
+        List<Item> content = new ArrayList<>(items.subList(0, limit));
+        return new ItemPage(content, String.valueOf(content.get(limit - 1).getId()));
+    }
+
+    // 하위 트리 카테고리 엔티티들 (자기 자신 포함), 쿼리 한 번
+    public List<Category> findSubtree(Long categoryId) {
+        CategoryTree.Node node = categoryTreeCache.find(categoryId);
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        return categoryRepository.findSubtree(node.getPath());
+    }
+
+    // 하위 트리에 속한 모든 상품 (예: 도서 > 소설 아래 전부), 트리 깊이와 관계없이 쿼리 한 번
+    public List<Item> findItemsInSubtree(Long categoryId) {
+        CategoryTree.Node node = categoryTreeCache.find(categoryId);
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        return categoryRepository.findItemsInSubtree(node.getPath());
+    }
+
+    private CategoryTree.Node findNode(Long categoryId) {
+        CategoryTree.Node node = categoryTreeCache.find(categoryId);
+        if (node == null) {
+            throw new NotFoundException("존재하지 않는 카테고리입니다.");
+        }
+        return node;
+    }
+
+    private static long parseCursor(String cursor) {
+        if (!StringUtils.hasText(cursor)) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(cursor);
+        } catch (NumberFormatException e) {
+            throw new InvalidRequestException("잘못된 페이지 토큰입니다.", e);
+        }
+    }
+}
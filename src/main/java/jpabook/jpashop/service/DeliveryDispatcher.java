@@ -0,0 +1,80 @@
+package jpabook.jpashop.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+
+// 배송 처리: 준비(READY)된 배송을 묶음으로 가져가서 완료(COMP) 처리
+// 1. 임대 (트랜잭션 1): 후보를 skip locked로 잠그고 임대 토큰, 만료 시각을 update => 여러 노드가 같이 돌아도 같은 배송을 두 번 가져가지 않는다.
+// 2. 완료 (트랜잭션 2): 임대 토큰으로 update 한 번 => 배송 수와 관계없이 쿼리 수가 일정하다.
+//    (실제 택배사 연동이 들어가면 1과 2 사이에서 호출한다. 트랜잭션 밖이므로 외부 호출 동안 행 잠금을 잡고 있지 않는다)
+// 노드가 1과 2 사이에서 죽으면 임대가 만료된 뒤 다른 노드가 다시 가져간다.
+// 주문 취소와의 관계: 취소는 배송을 CANCEL로 바꾸고, 완료는 READY인 배송만 바꾼다. => 취소된 주문이 완료되거나, 완료된 주문이 취소되는 일은 없다.
+//
+// 어느 노드에서 돌릴지 jpashop.delivery-dispatch.enabled로 정한다.
+@Slf4j
+@Component
+public class DeliveryDispatcher {
+
+    private final DeliveryService deliveryService;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration lease;
+    // 묶음 처리 시간: /actuator/metrics/delivery.dispatch.batch, 처리량: delivery.dispatch.completed
+    private final Timer batchTimer;
+    private final Counter completedCounter;
+
+    public DeliveryDispatcher(DeliveryService deliveryService, MeterRegistry meterRegistry,
+                              @Value("${jpashop.delivery-dispatch.enabled:false}") boolean enabled,
+                              @Value("${jpashop.delivery-dispatch.batch-size:500}") int batchSize,
+                              @Value("${jpashop.delivery-dispatch.lease-seconds:60}") long leaseSeconds) {
+        this.deliveryService = deliveryService;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.lease = Duration.ofSeconds(leaseSeconds);
+        this.batchTimer = meterRegistry.timer("delivery.dispatch.batch");
+        this.completedCounter = meterRegistry.counter("delivery.dispatch.completed");
+    }
+
+    @Scheduled(fixedDelayString = "${jpashop.delivery-dispatch.interval-millis:1000}")
+    public void scheduledDispatch() {
+        if (enabled) {
+            dispatch();
+        }
+    }
+
+    // 준비된 배송이 없을 때까지 묶음 단위로 처리, 완료 처리한 배송 수를 반환
+    public int dispatch() {
+        long startNanos = System.nanoTime();
+        int total = 0;
+        while (true) {
+            long batchStartNanos = System.nanoTime();
+            // 묶음마다 새 임대 토큰
+            String token = UUID.randomUUID().toString();
+            int leased = deliveryService.leaseReady(token, batchSize, lease);
+            if (leased == 0) {
+                break;
+            }
+            // 임대와 완료 사이에 주문이 취소된 배송은 빠진다. (completed < leased)
+            int completed = deliveryService.completeLeased(token);
+            batchTimer.record(Duration.ofNanos(System.nanoTime() - batchStartNanos));
+            completedCounter.increment(completed);
+            total += completed;
+            if (leased < batchSize) {
+                break;
+            }
+        }
+        if (total > 0) {
+            long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+            log.info("delivery dispatch: completed={}, elapsed={}ms, {} deliveries/s", total, elapsedMillis, total * 1000L / elapsedMillis);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,36 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.repository.DeliveryRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class DeliveryService {
+
+    private final DeliveryRepository deliveryRepository;
+
+    // 준비된 배송을 최대 limit건 임대 (짧은 트랜잭션, 행 잠금은 커밋과 함께 풀린다)
+    // 임대 시간은 각 노드의 시계 기준이므로, 노드 간 시계 차이보다 넉넉하게 잡는다.
+    @Transactional
+    public int leaseReady(String token, int limit, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> ids = deliveryRepository.findClaimableIdsForUpdate(now, limit);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return deliveryRepository.lease(ids, token, now, now.plus(lease));
+    }
+
+    // 임대한 배송 완료 처리
+    @Transactional
+    public int completeLeased(String token) {
+        return deliveryRepository.completeLeased(token);
+    }
+}
@@ -0,0 +1,56 @@
+package jpabook.jpashop.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// 로컬 파일에 한 줄에 이벤트 하나(NDJSON)로 덧붙인다. (jpashop.outbox.file.path를 설정하면 켜진다)
+// 묶음마다 디스크에 쓴 뒤(force) 반환 => 전달 위치가 앞으로 간 이벤트는 파일에 남아있다.
+// 쓰고 나서 위치를 커밋하기 전에 죽으면 같은 이벤트가 한 번 더 적힐 수 있다. (position으로 중복 제거)
+@Component
+@ConditionalOnProperty(prefix = "jpashop.outbox.file", name = "path")
+public class FileOutboxSink implements OutboxSink {
+
+    private final Path path;
+    private final ObjectMapper objectMapper;
+
+    public FileOutboxSink(@Value("${jpashop.outbox.file.path}") String path, ObjectMapper objectMapper) throws IOException {
+        this.path = Paths.get(path);
+        this.objectMapper = objectMapper;
+        if (this.path.getParent() != null) {
+            Files.createDirectories(this.path.getParent());
+        }
+    }
+
+    @Override
+    public String name() {
+        return "file";
+    }
+
+    @Override
+    public void publish(List<OutboxMessage> messages) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (OutboxMessage message : messages) {
+            lines.append(objectMapper.writeValueAsString(message)).append('\n');
+        }
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+}
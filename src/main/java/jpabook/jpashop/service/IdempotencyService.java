@@ -0,0 +1,166 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.IdempotencyRecord;
+import jpabook.jpashop.exception.IdempotencyKeyInProgressException;
+import jpabook.jpashop.exception.IdempotencyKeyReusedException;
+import jpabook.jpashop.exception.InvalidRequestException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// 멱등 키(Idempotency-Key 헤더) 처리
+// 타임아웃 후 클라이언트가 같은 요청을 다시 보내도 주문, 회원 가입은 한 번만 실행한다.
+// 1. 서비스를 호출하기 전에 저장소에 키를 선점(PENDING)한다. 선점한 요청만 서비스를 호출한다.
+// 2. 끝나면 결과(만들어진 id)를 저장한다. 이후 같은 키는 서비스를 호출하지 않고 그 결과를 돌려준다.
+// - 처리 중인 키: 같은 서버의 요청들은 첫 요청을 기다리고, 다른 서버가 선점한 키는 끝날 때까지 저장소를 다시 본다.
+//   wait-millis 안에 끝나지 않으면 409
+// - 실패한 요청은 선점을 푼다. 기다리던 요청들은 같은 예외를 받고, 그 다음 재시도는 새로 실행된다.
+// 서비스 커밋 후 결과 저장 전에 서버가 죽으면 키는 PENDING으로 남는다. => 다시 실행하지 않고 409 (pending-timeout 후에 재선점)
+@Slf4j
+@Component
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    private static final int MAX_KEY_LENGTH = 100;
+    // 다른 서버가 처리 중인 키를 다시 확인하는 간격
+    private static final long POLL_MILLIS = 100;
+
+    private final IdempotencyStore idempotencyStore;
+    private final long waitMillis;
+    private final ConcurrentMap<String, CompletableFuture<IdempotencyRecord>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyService(IdempotencyStore idempotencyStore,
+                              @Value("${jpashop.idempotency.wait-millis:30000}") long waitMillis) {
+        this.idempotencyStore = idempotencyStore;
+        this.waitMillis = waitMillis;
+    }
+
+    // scope: 어떤 요청인지 (order, member), request: 요청 내용 (같은 키로 다른 내용이 오는지 확인)
+    // 키가 없으면 그냥 실행한다.
+    public Long execute(String scope, String idempotencyKey, String request, Supplier<Long> action) {
+        if (idempotencyKey == null) {
+            return action.get();
+        }
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new InvalidRequestException("멱등 키는 1~" + MAX_KEY_LENGTH + "자여야 합니다.");
+        }
+        String key = scope + ":" + idempotencyKey;
+        String fingerprint = DigestUtils.md5DigestAsHex(request.getBytes(StandardCharsets.UTF_8));
+
+        // 같은 서버에서는 같은 키의 첫 요청만 저장소를 보고, 나머지는 그 결과를 기다린다.
+        CompletableFuture<IdempotencyRecord> mine = new CompletableFuture<>();
+        CompletableFuture<IdempotencyRecord> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            return replay(await(running, idempotencyKey), fingerprint);
+        }
+
+        try {
+            IdempotencyRecord record = claimOrWait(key, idempotencyKey, fingerprint, action);
+            mine.complete(record);
+            return replay(record, fingerprint);
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    // 끝난 결과가 있으면 그 결과, 없으면 선점해서 실행, 다른 요청이 선점했으면 끝날 때까지 기다린다.
+    private IdempotencyRecord claimOrWait(String key, String idempotencyKey, String fingerprint, Supplier<Long> action) {
+        long deadline = System.currentTimeMillis() + waitMillis;
+        while (true) {
+            IdempotencyRecord record = idempotencyStore.find(key);
+            if (record != null && (!record.isPending() || !record.getFingerprint().equals(fingerprint))) {
+                // 끝났거나, 다른 요청에 쓰인 키 (replay에서 거절)
+                return record;
+            }
+            if (record == null && idempotencyStore.claim(key, fingerprint)) {
+                return run(key, fingerprint, action);
+            }
+            pause(deadline, idempotencyKey);
+        }
+    }
+
+    private IdempotencyRecord run(String key, String fingerprint, Supplier<Long> action) {
+        Long resultId;
+        try {
+            resultId = action.get();
+        } catch (RuntimeException | Error e) {
+            release(key);
+            throw e;
+        }
+        IdempotencyRecord record = new IdempotencyRecord(key, fingerprint, resultId);
+        complete(record);
+        return record;
+    }
+
+    // 결과 저장이 실패해도 주문, 가입은 이미 커밋되었으므로 결과는 그대로 돌려준다.
+    // 키는 PENDING으로 남으므로 재시도는 다시 실행되지 않는다. (409)
+    private void complete(IdempotencyRecord record) {
+        try {
+            idempotencyStore.complete(record);
+        } catch (RuntimeException e) {
+            log.warn("failed to store idempotency key {}", record.getKey(), e);
+        }
+    }
+
+    private void release(String key) {
+        try {
+            idempotencyStore.release(key);
+        } catch (RuntimeException e) {
+            log.warn("failed to release idempotency key {}", key, e);
+        }
+    }
+
+    private void pause(long deadline, String idempotencyKey) {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            throw new IdempotencyKeyInProgressException("같은 멱등 키의 요청이 아직 처리 중입니다. key=" + idempotencyKey);
+        }
+        try {
+            Thread.sleep(Math.min(POLL_MILLIS, remaining));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyInProgressException("같은 멱등 키의 요청을 기다리다 중단되었습니다. key=" + idempotencyKey);
+        }
+    }
+
+    private Long replay(IdempotencyRecord record, String fingerprint) {
+        if (!record.getFingerprint().equals(fingerprint)) {
+            throw new IdempotencyKeyReusedException("이미 다른 요청에 사용된 멱등 키입니다.");
+        }
+        return record.getResultId();
+    }
+
+    private IdempotencyRecord await(CompletableFuture<IdempotencyRecord> running, String idempotencyKey) {
+        try {
+            return running.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IdempotencyKeyInProgressException("같은 멱등 키의 요청이 아직 처리 중입니다. key=" + idempotencyKey);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyInProgressException("같은 멱등 키의 요청을 기다리다 중단되었습니다. key=" + idempotencyKey);
+        } catch (ExecutionException e) {
+            // 첫 요청과 같은 예외
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.IdempotencyRecord;
+
+// 멱등 키 결과 저장소
+// jpashop.idempotency.store = memory(기본, 서버별 메모리) | table(idempotency_record 테이블, 서버 간 공유, 재시작 후에도 유지)
+// 서비스를 호출하기 전에 키를 선점(claim)하고, 끝나면 결과를 저장(complete)하거나 선점을 푼다(release).
+public interface IdempotencyStore {
+
+    // 없거나 만료되었으면 null, 처리 중이면 PENDING 레코드
+    IdempotencyRecord find(String key);
+
+    // PENDING 레코드를 넣는다. 이미 있으면(다른 요청이 먼저 선점) false
+    boolean claim(String key, String fingerprint);
+
+    // 선점한 키에 결과 저장
+    void complete(IdempotencyRecord record);
+
+    // 실패한 요청의 선점을 푼다. => 다음 재시도가 새로 실행된다.
+    void release(String key);
+}
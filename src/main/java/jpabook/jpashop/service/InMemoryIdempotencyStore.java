@@ -0,0 +1,66 @@
+package jpabook.jpashop.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jpabook.jpashop.domain.IdempotencyRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 메모리 저장소: 처리 중인 키는 맵, 끝난 결과는 크기 제한 + 만료 시간이 있는 캐시
+// 서버마다 따로 들고 있으므로, 여러 대로 띄우면 다른 서버로 간 재시도는 막지 못한다. (그때는 table 저장소)
+@Component
+@ConditionalOnProperty(name = "jpashop.idempotency.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    // 처리 중(PENDING)인 키는 크기 제한 캐시에 두지 않는다. (밀려나면 같은 키의 재시도가 주문을 한 번 더 실행한다)
+    // 선점한 요청이 끝나면 complete 또는 release로 빠지므로 동시에 처리 중인 요청 수 이상으로 늘지 않는다.
+    private final Map<String, IdempotencyRecord> pending = new ConcurrentHashMap<>();
+    // 끝난 결과만 크기 제한 + 만료로 밀려난다.
+    private final Cache<String, IdempotencyRecord> completed;
+
+    public InMemoryIdempotencyStore(@Value("${jpashop.idempotency.max-entries:100000}") long maxEntries,
+                                    @Value("${jpashop.idempotency.ttl-minutes:1440}") long ttlMinutes) {
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .build();
+    }
+
+    @Override
+    public IdempotencyRecord find(String key) {
+        IdempotencyRecord record = pending.get(key);
+        return record != null ? record : completed.getIfPresent(key);
+    }
+
+    // 먼저 처리 중 맵에 넣고 끝난 결과를 확인한다. (complete는 결과를 먼저 넣고 처리 중 맵에서 빼므로, 그 사이에 선점해도 여기서 걸린다)
+    @Override
+    public boolean claim(String key, String fingerprint) {
+        IdempotencyRecord mine = IdempotencyRecord.pending(key, fingerprint);
+        if (pending.putIfAbsent(key, mine) != null) {
+            return false;
+        }
+        if (completed.getIfPresent(key) != null) {
+            pending.remove(key, mine);
+            return false;
+        }
+        return true;
+    }
+
+    // 레코드를 고치지 않고 완료된 레코드로 바꿔 끼운다. (다른 스레드가 읽는 중일 수 있다)
+    // 끝난 결과에 먼저 넣고 처리 중 맵에서 빼서 조회가 비는 순간이 없도록 한다.
+    @Override
+    public void complete(IdempotencyRecord record) {
+        completed.put(record.getKey(), record);
+        pending.remove(record.getKey());
+    }
+
+    @Override
+    public void release(String key) {
+        pending.remove(key);
+    }
+}
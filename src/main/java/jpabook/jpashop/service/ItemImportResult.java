@@ -0,0 +1,49 @@
+package jpabook.jpashop.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// 상품 일괄 등록 결과
+// 실패한 행은 줄 번호와 사유를 남기되, 최대 MAX_ERRORS개까지만 담는다. (잘못된 파일 하나로 응답이 커지지 않도록)
+@Getter
+public class ItemImportResult {
+
+    public static final int MAX_ERRORS = 1000;
+
+    private long importedRows;
+    private long failedRows;
+    private long elapsedMillis;
+    private long rowsPerSecond;
+    private final List<RowError> errors = new ArrayList<>();
+
+    public long getTotalRows() {
+        return importedRows + failedRows;
+    }
+
+    void imported(int rows) {
+        importedRows += rows;
+    }
+
+    void failed(int line, String message) {
+        failedRows++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(new RowError(line, message));
+        }
+    }
+
+    void finish(long elapsedNanos) {
+        elapsedMillis = Math.max(1, elapsedNanos / 1_000_000);
+        rowsPerSecond = getTotalRows() * 1000 / elapsedMillis;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class RowError {
+        private int line;
+        private String message;
+    }
+}
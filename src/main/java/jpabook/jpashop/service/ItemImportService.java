@@ -0,0 +1,283 @@
+package jpabook.jpashop.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jpabook.jpashop.domain.item.Album;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.domain.item.Movie;
+import jpabook.jpashop.exception.InvalidRequestException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// 상품 카탈로그 일괄 등록 (CSV, NDJSON)
+// 1. 한 줄씩 읽어서 파싱, 검증 => 파일 전체를 메모리에 올리지 않는다.
+// 2. CHUNK_SIZE 행씩 한 트랜잭션으로 저장 (ItemService.saveItems)
+//    insert는 JDBC 배치 + pooled 시퀀스(item_seq), 묶음마다 flush + clear => 영속성 컨텍스트가 커지지 않는다.
+// 3. 검증에 실패한 행, 저장에 실패한 행은 건너뛰고 결과에 줄 번호와 사유를 남긴다. (전체를 중단하지 않는다)
+//
+// CSV: 첫 줄은 헤더, 한 줄에 상품 하나 (따옴표 안의 줄바꿈은 지원하지 않는다)
+//   type,name,price,stockQuantity,author,isbn,artist,etc,director,actor
+// NDJSON: 한 줄에 JSON 객체 하나, 필드 이름은 CSV 헤더와 같다.
+// type: BOOK(B), ALBUM(A), MOVIE(M)
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ItemImportService {
+
+    // 한 트랜잭션(flush + clear)으로 저장하는 행 수
+    public static final int CHUNK_SIZE = 500;
+    private static final int LOG_EVERY_ROWS = 50_000;
+    // 문자열 컬럼 길이 (varchar(255)) => DB에서 터지기 전에 검증에서 걸러낸다.
+    private static final int MAX_TEXT_LENGTH = 255;
+
+    private final ItemService itemService;
+    private final ObjectMapper objectMapper;
+
+    public ItemImportResult importItems(Reader reader, String format) throws IOException {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            throw new InvalidRequestException("지원하지 않는 형식입니다. (csv, ndjson) format=" + format);
+        }
+
+        ItemImportResult result = new ItemImportResult();
+        List<ImportRow> chunk = new ArrayList<>(CHUNK_SIZE);
+        BufferedReader in = new BufferedReader(reader);
+        long startNanos = System.nanoTime();
+        String[] header = null;
+        int lineNo = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNo++;
+            if (!StringUtils.hasText(line)) {
+                continue;
+            }
+            if (csv && header == null) {
+                header = parseHeader(line);
+                continue;
+            }
+            try {
+                Map<String, String> fields = csv ? csvFields(header, line) : jsonFields(line);
+                chunk.add(new ImportRow(lineNo, fields, toItem(fields)));
+            } catch (IllegalArgumentException e) {
+                result.failed(lineNo, e.getMessage());
+            }
+
+            if (chunk.size() == CHUNK_SIZE) {
+                saveChunk(chunk, result);
+                chunk.clear();
+                if (result.getTotalRows() % LOG_EVERY_ROWS < CHUNK_SIZE) {
+                    log.info("item import: {} rows ({} failed), {} rows/s", result.getTotalRows(), result.getFailedRows(),
+                            result.getTotalRows() * 1_000_000_000L / Math.max(1, System.nanoTime() - startNanos));
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            saveChunk(chunk, result);
+        }
+
+        result.finish(System.nanoTime() - startNanos);
+        log.info("item import finished: imported={}, failed={}, elapsed={}ms, {} rows/s",
+                result.getImportedRows(), result.getFailedRows(), result.getElapsedMillis(), result.getRowsPerSecond());
+        return result;
+    }
+
+    // 묶음 저장에 실패하면 (배치 insert 중 어느 행 때문인지 알 수 없으므로) 한 행씩 다시 저장해서 실패한 행만 골라낸다.
+    // 실패한 트랜잭션에서 persist된 상품은 id가 채워져 있으므로, 다시 저장할 때는 새로 만든다.
+    private void saveChunk(List<ImportRow> chunk, ItemImportResult result) {
+        List<Item> items = new ArrayList<>(chunk.size());
+        for (ImportRow row : chunk) {
+            items.add(row.getItem());
+        }
+        try {
+            itemService.saveItems(items);
+            result.imported(items.size());
+            return;
+        } catch (RuntimeException e) {
+            log.warn("item import chunk failed (lines {}-{}), retrying row by row: {}",
+                    chunk.get(0).getLine(), chunk.get(chunk.size() - 1).getLine(), e.getMessage());
+        }
+        for (ImportRow row : chunk) {
+            try {
+                itemService.saveItems(Collections.singletonList(toItem(row.getFields())));
+                result.imported(1);
+            } catch (RuntimeException e) {
+                result.failed(row.getLine(), NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+            }
+        }
+    }
+
+    // 필드 => 상품 종류별 엔티티, 검증 실패 시 IllegalArgumentException
+    private Item toItem(Map<String, String> fields) {
+        String type = fields.get("type");
+        if (!StringUtils.hasText(type)) {
+            throw new IllegalArgumentException("type이 없습니다.");
+        }
+
+        Item item;
+        switch (type.trim().toUpperCase(Locale.ROOT)) {
+            case "B":
+            case "BOOK":
+                Book book = new Book();
+                book.setAuthor(optional(fields, "author"));
+                book.setIsbn(optional(fields, "isbn"));
+                item = book;
+                break;
+            case "A":
+            case "ALBUM":
+                Album album = new Album();
+                album.setArtist(optional(fields, "artist"));
+                album.setEtc(optional(fields, "etc"));
+                item = album;
+                break;
+            case "M":
+            case "MOVIE":
+                Movie movie = new Movie();
+                movie.setDirector(optional(fields, "director"));
+                movie.setActor(optional(fields, "actor"));
+                item = movie;
+                break;
+            default:
+                throw new IllegalArgumentException("알 수 없는 type입니다. type=" + type);
+        }
+
+        String name = optional(fields, "name");
+        if (name == null) {
+            throw new IllegalArgumentException("name이 없습니다.");
+        }
+        item.setName(name);
+        item.setPrice(nonNegativeInt(fields, "price"));
+        item.setStockQuantity(nonNegativeInt(fields, "stockquantity"));
+        return item;
+    }
+
+    private String optional(Map<String, String> fields, String key) {
+        String value = fields.get(key);
+        if (!StringUtils.hasText(value)) {
+            return null;
+        }
+        if (value.length() > MAX_TEXT_LENGTH) {
+            throw new IllegalArgumentException(key + "는 " + MAX_TEXT_LENGTH + "자를 넘을 수 없습니다.");
+        }
+        return value.trim();
+    }
+
+    private int nonNegativeInt(Map<String, String> fields, String key) {
+        String value = fields.get(key);
+        if (!StringUtils.hasText(value)) {
+            throw new IllegalArgumentException(key + "가 없습니다.");
+        }
+        int number;
+        try {
+            number = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + "가 숫자가 아닙니다. " + key + "=" + value);
+        }
+        if (number < 0) {
+            throw new IllegalArgumentException(key + "는 0 이상이어야 합니다. " + key + "=" + number);
+        }
+        return number;
+    }
+
+    // 필드 이름은 대소문자 구분 없이 (stockQuantity, stockquantity)
+    private String[] parseHeader(String line) {
+        List<String> columns = parseCsvLine(line);
+        String[] header = new String[columns.size()];
+        for (int i = 0; i < header.length; i++) {
+            header[i] = columns.get(i).trim().toLowerCase(Locale.ROOT);
+        }
+        return header;
+    }
+
+    private Map<String, String> csvFields(String[] header, String line) {
+        List<String> values = parseCsvLine(line);
+        if (values.size() > header.length) {
+            throw new IllegalArgumentException("컬럼 수가 헤더보다 많습니다. (" + values.size() + " > " + header.length + ")");
+        }
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < values.size(); i++) {
+            fields.put(header[i], values.get(i));
+        }
+        return fields;
+    }
+
+    private Map<String, String> jsonFields(String line) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(line);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("JSON 형식이 아닙니다. " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        if (node == null || !node.isObject()) {
+            throw new IllegalArgumentException("JSON 객체가 아닙니다.");
+        }
+        Map<String, String> fields = new HashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> it = node.fields();
+        while (it.hasNext()) {
+            Map.Entry<String, JsonNode> field = it.next();
+            if (!field.getValue().isNull()) {
+                fields.put(field.getKey().toLowerCase(Locale.ROOT), field.getValue().asText());
+            }
+        }
+        return fields;
+    }
+
+    // RFC 4180 한 줄: 쉼표로 구분, 따옴표로 감싼 값 안의 쉼표는 값의 일부, 따옴표 두 개는 따옴표 하나
+    static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    value.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else if (c != '\r') {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("따옴표가 닫히지 않았습니다.");
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class ImportRow {
+        private final int line;
+        private final Map<String, String> fields;
+        private final Item item;
+    }
+}
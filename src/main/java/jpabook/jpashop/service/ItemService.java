@@ -1,8 +1,11 @@
 package jpabook.jpashop.service;
 
 
+import jpabook.jpashop.aop.RetryOnOptimisticLock;
+import jpabook.jpashop.domain.DataVersion;
 import jpabook.jpashop.domain.item.Book;
 import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.DataVersions;
 import jpabook.jpashop.repository.ItemRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -20,10 +23,25 @@ public class ItemService {
 
 
     private final ItemRepository itemRepository;
+    private final OrderSearchCache orderSearchCache; // 주문 검색 결과에 상품 이름이 들어있다.
+    private final DataVersions dataVersions; // 상품 목록 버전 (ETag)
 
     @Transactional
     public void saveItem(Item item){
+        if (item.getId() != null) {
+            // merge로 이름이 바뀔 수 있다.
+            orderSearchCache.itemsChanged();
+        }
         itemRepository.save(item);
+        dataVersions.bump(DataVersion.ITEM_LIST);
+    }
+
+    // 상품 여러 개를 한 트랜잭션으로 등록 (카탈로그 가져오기의 한 묶음)
+    // 새 상품만 등록하므로 주문 검색 결과 캐시는 그대로 둔다.
+    @Transactional
+    public void saveItems(List<? extends Item> items) {
+        itemRepository.persistAll(items);
+        dataVersions.bump(DataVersion.ITEM_LIST);
     }
 
     // 준영속 상태 엔티티에 대한 수정을 위한 방법: 영속 상태 엔티티에 대한 jpa의 변경 감지 수정처럼 수행하기
@@ -36,6 +54,8 @@ public class ItemService {
         findItem.setName(name);
         findItem.setPrice(price);
         findItem.setStockQuantity(stockQuantity);
+        orderSearchCache.itemsChanged();
+        dataVersions.bump(DataVersion.ITEM_LIST);
         // 수정을 허용할 속성에 대해서 setter 호출
         // 하지만 setter들을 호출하지 말고, 엔티티에서 별도의 수정 메서드를 정의해서 사용하는 것이 좋다. => 응집도 강화
 
@@ -45,6 +65,32 @@ public class ItemService {
     }
     // merge 방식도 결국 위와 같은 코드를 실행하는 것과 동일하다. 하지만 차이점도 존재한다. => 변경 감지를 쓰자.
 
+    // 인기 상품 모드 켜기: 재고를 shardCount개 조각으로 나눈다.
+    // 한 row의 락에 주문이 줄 서지 않도록, 주문이 몰릴 상품(타임 세일 등)에만 켠다.
+    // 끄고 다시 켤 때는 이전 조각들이 지워진 뒤여야 하므로 같은 트랜잭션에서 연달아 호출하지 않는다.
+    @RetryOnOptimisticLock
+    @Transactional
+    public void enableHotMode(Long itemId, int shardCount) {
+        Item item = itemRepository.findOne(itemId);
+        item.enableHotMode(shardCount);
+        dataVersions.bump(DataVersion.ITEM_LIST);
+    }
+
+    // 인기 상품 모드 끄기: 조각들의 재고를 다시 한 row로 합친다.
+    @RetryOnOptimisticLock
+    @Transactional
+    public void disableHotMode(Long itemId) {
+        Item item = itemRepository.findOne(itemId);
+        item.disableHotMode();
+        dataVersions.bump(DataVersion.ITEM_LIST);
+    }
+
+    // 상품 목록이 바뀌었는지 확인하기 위한 버전 (목록 조회 없이 버전 행 조회 한 번)
+    // 상품을 바꾸는 트랜잭션이 같이 올리므로, 커밋된 변경은 다른 서버에서 바꾼 것도 바로 보인다.
+    public String findItemsVersion() {
+        return Long.toString(dataVersions.current(DataVersion.ITEM_LIST));
+    }
+
     public List<Item> findItems(){
         return itemRepository.findAll();
     }
@@ -0,0 +1,26 @@
+package jpabook.jpashop.service;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// 일괄 가입 한 건의 결과: 가입된 회원 id 또는 실패 사유
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class MemberJoinResult {
+
+    private final Long id;
+    private final String error;
+
+    static MemberJoinResult success(Long id) {
+        return new MemberJoinResult(id, null);
+    }
+
+    static MemberJoinResult failure(String error) {
+        return new MemberJoinResult(null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
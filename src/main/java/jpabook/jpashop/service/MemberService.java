@@ -1,14 +1,34 @@
 package jpabook.jpashop.service;
 
+import jpabook.jpashop.domain.DataVersion;
 import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.exception.InvalidRequestException;
+import jpabook.jpashop.repository.DataVersions;
+import jpabook.jpashop.repository.MemberExportDto;
+import jpabook.jpashop.repository.MemberNameFilter;
+import jpabook.jpashop.repository.MemberNameIndex;
 import jpabook.jpashop.repository.MemberRepository;
 import lombok.AllArgsConstructor;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 
 
@@ -43,6 +63,17 @@ public class MemberService {
     // 또한 final처리해주면, 생성자 호출시 반드시 설정해줘야 하므로, 에러 캐치 가능
     // *** final 필드 : 필드값을 필드 선언시에 초기화하거나, 클래스 생성자에서 초기화를 반드시 해야함, 또한 한번 초기화되고 나면 실행 도중 수정 불가
     // https://kephilab.tistory.com/51
+    private final MemberNameIndex memberNameIndex; // 주문 검색용 회원 이름 색인
+    private final MemberNameFilter memberNameFilter; // 중복 가입 검사용 블룸 필터
+    private final OrderSearchCache orderSearchCache; // 주문 검색 결과에 회원 이름이 들어있다.
+    private final DataVersions dataVersions; // 회원 목록 버전 (ETag)
+
+    // 일괄 가입 중복 검사 in 절 최대 크기
+    private static final int NAME_CHUNK_SIZE = 1000;
+    // 일괄 가입 한 번에 받는 최대 회원 수
+    public static final int MAX_BATCH_JOIN = 10_000;
+    // Member 엔티티의 회원 이름 유니크 제약 조건
+    private static final String MEMBER_NAME_CONSTRAINT = "uk_member_name";
 
 //    // lombok 어노테이션으로 지정하면 생성자 생략가능: RequiredArgsConstructor => final 필드 생성
 //    @Autowired // 생략 가능, autowired 어노테이션 안해줘도, 생성자가 하나만 존재하는 경우 spring이 자동으로 주입해준다.
@@ -55,24 +86,169 @@ public class MemberService {
     // 쓰기 메서드 이므로 readOnly = false가 디폴트인 트랜잭션 어노테이션 설정
     @Transactional
     public Long join(Member member){
-        validateDuplicateMember(member); // 중복 회원 검증 로직
+        validateDuplicateMember(member.getName()); // 중복 회원 검증 로직
         memberRepository.save(member);
+        saveNames();
+        dataVersions.bump(DataVersion.MEMBER_LIST);
+        memberNameIndex.memberListChanged();
+        // 주문 검색에서 바로 찾을 수 있도록 이름 색인에도 반영 (롤백되면 색인도 되돌린다)
+        memberNameIndex.put(member.getId(), member.getName());
+        memberNameFilter.put(member.getName());
         return member.getId();
         // persist 확인
     }
 
-    // 실무에서는 아래와 같은 검증 방법이 먹히지 않는다 => 동시에 멤버가 등록될 수 있으므로
-    // 즉 DB에 어트리뷰트 유니크 제약 조건을 거는 것이 확실한 방법이다.
-    private void validateDuplicateMember(Member member){
-        // 중복회원이면 예외를 발생 (exception)
-        // 같은 이름을 가진 회원 객체가 존재하는 지 찾기
-        List<Member> findMembers = memberRepository.findByName(member.getName());
-        // 검색했는데 이미 존재한다면
-        if(!findMembers.isEmpty()){
+    // 일괄 가입 (전부 아니면 전무): joinBatch와 같은 검사(최대 인원, 이름 없음, 요청 안 중복, DB 중복)에서
+    // 한 명이라도 실패하면 아무도 insert하지 않고 예외를 던진다. 모두 통과하면 joinBatch와 같은 방법으로 insert한다.
+    @Transactional
+    public List<Long> joinAll(List<Member> members) {
+        MemberJoinResult[] results = rejectInvalid(members);
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] != null) {
+                throw new IllegalStateException(results[i].getError() + " (" + i + "번째, name=" + members.get(i).getName() + ")");
+            }
+        }
+        List<Integer> all = new ArrayList<>(members.size());
+        for (int i = 0; i < members.size(); i++) {
+            all.add(i);
+        }
+        insert(members, all, results);
+
+        List<Long> ids = new ArrayList<>(results.length);
+        for (MemberJoinResult result : results) {
+            ids.add(result.getId());
+        }
+        return ids;
+    }
+
+    // 일괄 가입 (부분 성공): 회원마다 가입된 id 또는 실패 사유를 요청 순서대로 돌려준다.
+    // 1. 이름 없음, 요청 안에서 중복(두 번째부터) => 실패
+    // 2. DB 중복 검사: 모든 이름을 NAME_CHUNK_SIZE개씩 in 절 (블룸 필터를 믿지 않는다, findExistingNames)
+    // 3. 나머지는 NAME_CHUNK_SIZE명씩 insert (pooled 시퀀스 + JDBC 배치) 후 flush + clear
+    // 검사와 insert 사이에 다른 요청이 같은 이름으로 가입하면 유니크 제약 조건 위반으로 일괄 가입 전체가 롤백된다.
+    // => 다시 요청하면 그 이름만 "이미 존재하는 회원" 으로 실패한다.
+    @Transactional
+    public List<MemberJoinResult> joinBatch(List<Member> members) {
+        MemberJoinResult[] results = rejectInvalid(members);
+        List<Integer> accepted = new ArrayList<>();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                accepted.add(i);
+            }
+        }
+        insert(members, accepted, results);
+        return Arrays.asList(results);
+    }
+
+    // 일괄 가입 검사 (1, 2): 실패한 회원 자리에만 실패 결과를 채운다. 통과한 회원 자리는 null
+    private MemberJoinResult[] rejectInvalid(List<Member> members) {
+        if (members.size() > MAX_BATCH_JOIN) {
+            throw new InvalidRequestException("한 번에 가입할 수 있는 회원은 " + MAX_BATCH_JOIN + "명까지입니다.");
+        }
+        MemberJoinResult[] results = new MemberJoinResult[members.size()];
+        Map<String, Integer> firstIndexes = new HashMap<>();
+        for (int i = 0; i < members.size(); i++) {
+            String name = members.get(i).getName();
+            if (!StringUtils.hasText(name)) {
+                results[i] = MemberJoinResult.failure("이름은 필수입니다.");
+                continue;
+            }
+            Integer firstIndex = firstIndexes.putIfAbsent(name, i);
+            if (firstIndex != null) {
+                results[i] = MemberJoinResult.failure("요청 안에서 중복된 이름입니다. (" + firstIndex + "번째와 같음)");
+            }
+        }
+
+        Set<String> existing = findExistingNames(firstIndexes.keySet());
+        for (int i = 0; i < members.size(); i++) {
+            if (results[i] == null && existing.contains(members.get(i).getName())) {
+                results[i] = MemberJoinResult.failure("이미 존재하는 회원입니다.");
+            }
+        }
+        return results;
+    }
+
+    // 일괄 가입 insert (3): accepted 자리의 회원을 가입시키고 그 자리에 가입된 id를 채운다.
+    private void insert(List<Member> members, List<Integer> accepted, MemberJoinResult[] results) {
+        for (int from = 0; from < accepted.size(); from += NAME_CHUNK_SIZE) {
+            List<Integer> chunk = accepted.subList(from, Math.min(from + NAME_CHUNK_SIZE, accepted.size()));
+            for (int i : chunk) {
+                memberRepository.save(members.get(i));
+            }
+            saveNames();
+            for (int i : chunk) {
+                Member member = members.get(i);
+                memberNameIndex.put(member.getId(), member.getName());
+                memberNameFilter.put(member.getName());
+                results[i] = MemberJoinResult.success(member.getId());
+            }
+            // 가입한 회원은 더 쓰지 않으므로 영속성 컨텍스트를 비운다. (수천 명이 쌓이면 flush마다 변경 감지 비용이 커진다)
+            memberRepository.clear();
+        }
+        if (!accepted.isEmpty()) {
+            dataVersions.bump(DataVersion.MEMBER_LIST);
+            memberNameIndex.memberListChanged();
+        }
+    }
+
+    // 이미 가입된 이름들, NAME_CHUNK_SIZE개씩 in 절로 확인한다.
+    // 일괄 가입은 블룸 필터로 건너뛰지 않는다. 필터는 서버마다 따로 있어서 다른 서버, 직접 SQL로 가입한 이름이 빠져 있을 수 있고
+    // (회원이 늘면 다시 만들기 전까지 정확도도 떨어진다) 한 이름이라도 놓치면 유니크 제약 조건 위반으로 일괄 가입 전체가 롤백된다.
+    // 같은 요청을 다시 보내도 같은 이름을 또 놓치므로 계속 실패한다.
+    private Set<String> findExistingNames(Collection<String> names) {
+        List<String> candidates = new ArrayList<>();
+        for (String name : names) {
+            if (name != null) {
+                candidates.add(name);
+            }
+        }
+        Set<String> existing = new HashSet<>();
+        for (int from = 0; from < candidates.size(); from += NAME_CHUNK_SIZE) {
+            existing.addAll(memberRepository.findExistingNames(
+                    candidates.subList(from, Math.min(from + NAME_CHUNK_SIZE, candidates.size()))));
+        }
+        return existing;
+    }
+
+    // 1. 블룸 필터에 없는 이름 => 확실히 없는 이름이므로 DB 조회 생략 (대부분의 신규 가입)
+    // 2. 있을 수도 있는 이름 => 유니크 인덱스로 확인
+    // 그래도 검사와 insert 사이에 같은 이름으로 동시에 가입할 수 있으므로, 최종적으로는 유니크 제약 조건이 막는다. (saveNames)
+    private void validateDuplicateMember(String name){
+        if (name == null || !memberNameFilter.mightContain(name)) {
+            return;
+        }
+        if (memberRepository.existsByName(name)) {
             throw new IllegalStateException("이미 존재하는 회원입니다.");
         }
     }
 
+    // 커밋까지 미루지 않고 여기서 insert, update를 보내서 유니크 제약 조건 위반을 같은 예외로 알려준다.
+    // 회원 이름 유니크 제약 조건(uk_member_name) 위반만 중복 회원으로 바꾼다. 다른 무결성 위반(not null, 길이 등)은 그대로 던진다.
+    private void saveNames() {
+        try {
+            memberRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            if (isMemberNameViolation(e)) {
+                throw new IllegalStateException("이미 존재하는 회원입니다.", e);
+            }
+            throw e;
+        }
+    }
+
+    // 하이버네이트가 알아낸 제약 조건 이름, 모르면 DB 메시지로 확인한다. (H2는 UK_MEMBER_NAME_INDEX_8 처럼 뒤에 붙는다)
+    private static boolean isMemberNameViolation(DataIntegrityViolationException e) {
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException) {
+                String constraintName = ((ConstraintViolationException) cause).getConstraintName();
+                if (constraintName != null) {
+                    return constraintName.toLowerCase().contains(MEMBER_NAME_CONSTRAINT);
+                }
+            }
+        }
+        String message = e.getMostSpecificCause().getMessage();
+        return message != null && message.toLowerCase().contains(MEMBER_NAME_CONSTRAINT);
+    }
+
     //회원 전체 조회
     //조회의 경우 옵션으로 readOnly를 주면 성능을 최적화할 수 있음
     // @Transactional(readOnly = true)
@@ -80,6 +256,18 @@ public class MemberService {
         return memberRepository.findAll();
     }
 
+    // 회원 전체 내보내기: 리스트로 모으지 않고 한 행씩 action에 넘긴다.
+    // readOnly 트랜잭션 안에서 커서를 열고, 다 읽으면 닫는다.
+    public void exportMembers(Consumer<MemberExportDto> action) {
+        memberRepository.forEachForExport(action);
+    }
+
+    // 회원 목록이 바뀌었는지 확인하기 위한 버전 (목록 조회 없이 버전 행 조회 한 번)
+    // 가입, 수정 트랜잭션이 같이 올리므로, 다른 서버에서 커밋된 변경도 바로 보인다.
+    public String findMembersVersion() {
+        return Long.toString(dataVersions.current(DataVersion.MEMBER_LIST));
+    }
+
     // 단건 조회
     public Member findOne(Long memberId){
         return memberRepository.findOne(memberId);
@@ -91,7 +279,37 @@ public class MemberService {
     @Transactional
     public void update(Long id, String name) {
         Member member = memberRepository.findOne(id);
+        if (name != null && !name.equals(member.getName())) {
+            validateDuplicateMember(name);
+        }
         // 트랜잭션 내에서 수행되므로 영속 상태 엔티티로 받음 => 변경 감지
         member.setName(name);
+        saveNames();
+        dataVersions.bump(DataVersion.MEMBER_LIST);
+        memberNameIndex.memberListChanged();
+        memberNameIndex.put(id, name);
+        memberNameFilter.put(name);
+        orderSearchCache.membersChanged();
+    }
+
+    // 어플리케이션이 뜨면 전체 회원으로 이름 색인, 중복 검사용 블룸 필터를 만든다.
+    // 다른 서버, 직접 SQL로 바뀐 회원도 반영되도록 주기적으로 다시 만든다. (jpashop.member-name-index.rebuild-interval-millis)
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${jpashop.member-name-index.rebuild-interval-millis:600000}",
+            fixedDelayString = "${jpashop.member-name-index.rebuild-interval-millis:600000}")
+    public void buildMemberNameIndex() {
+        List<Object[]> idAndNames = new ArrayList<>();
+        // 색인이 DB와 같은지 확인할 기준 버전 (회원보다 먼저 읽는다)
+        memberNameIndex.rebuild(() -> dataVersions.current(DataVersion.MEMBER_LIST), () -> {
+            idAndNames.addAll(memberRepository.findAllIdAndNames());
+            return idAndNames;
+        });
+        List<String> names = new ArrayList<>(idAndNames.size());
+        for (Object[] row : idAndNames) {
+            if (row[1] != null) {
+                names.add((String) row[1]);
+            }
+        }
+        memberNameFilter.rebuild(names);
     }
 }
@@ -0,0 +1,134 @@
+package jpabook.jpashop.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jpabook.jpashop.exception.OrderAdmissionRejectedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// 주문 요청 입장 제한 (동기 주문: POST /order, POST /api/v1/orders)
+// 클라이언트 하나가 주문을 쏟아내면 커넥션 풀을 다 차지해서 다른 회원들의 주문, 조회까지 느려진다.
+// 1. 회원별 속도 제한: 회원마다 토큰 버킷, 토큰이 없으면 바로 429
+// 2. 전체 동시 주문 수 제한: 커넥션 풀보다 작게 잡고, 자리가 없으면 잠깐(queue-timeout)만 기다리다 429
+//    => 커넥션 풀 대기(기본 30초)에 줄 서지 않으므로, 과부하에서도 통과한 주문의 응답 시간이 늘어나지 않는다.
+//
+// 회원별 버킷은 크기 제한 + 미사용 만료가 있는 캐시에 둔다. (회원 수만큼 쌓이지 않도록)
+// 동시 주문 수 제한에 걸려 거절된 요청은 꺼낸 토큰을 되돌린다. => 서버가 바빠서 거절된 재시도가 회원의 토큰을 깎지 않는다.
+//
+// 버킷, 동시 주문 수는 서버마다 따로 센다. (공유 저장소를 거치면 주문마다 왕복이 한 번 더 생긴다)
+// 로드 밸런서가 요청을 고르게 나누면 회원 한 명이 실제로 할 수 있는 주문 수는 member-rate-per-second x 서버 수까지 늘어난다.
+// => 회원 단위로 정확히 제한하려면 설정값을 서버 수로 나누거나, 회원 id 기준으로 같은 서버에 보낸다. (sticky)
+// 지표: /actuator/metrics/order.admission.admitted, order.admission.rejected(reason), order.admission.queued
+@Component
+public class OrderAdmission {
+
+    private static final int MAX_MEMBER_BUCKETS = 100_000;
+    private static final Duration BUCKET_IDLE_EXPIRE = Duration.ofMinutes(10);
+
+    private final Cache<Long, TokenBucket> buckets = Caffeine.newBuilder()
+            .maximumSize(MAX_MEMBER_BUCKETS)
+            .expireAfterAccess(BUCKET_IDLE_EXPIRE)
+            .build();
+
+    private final double memberRatePerSecond;
+    private final int memberBurst;
+    private final Semaphore permits;
+    private final int maxQueued;
+    private final long queueTimeoutMillis;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final Counter admitted;
+    private final Counter rejectedByRate;
+    private final Counter rejectedByConcurrency;
+    private final Counter queuedTotal;
+
+    public OrderAdmission(MeterRegistry meterRegistry,
+                          @Value("${jpashop.order-admission.member-rate-per-second:5}") double memberRatePerSecond,
+                          @Value("${jpashop.order-admission.member-burst:10}") int memberBurst,
+                          @Value("${jpashop.order-admission.max-concurrent:8}") int maxConcurrent,
+                          @Value("${jpashop.order-admission.max-queued:16}") int maxQueued,
+                          @Value("${jpashop.order-admission.queue-timeout-millis:50}") long queueTimeoutMillis) {
+        this.memberRatePerSecond = memberRatePerSecond;
+        this.memberBurst = memberBurst;
+        this.permits = new Semaphore(maxConcurrent);
+        this.maxQueued = maxQueued;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+
+        this.admitted = meterRegistry.counter("order.admission.admitted");
+        this.rejectedByRate = meterRegistry.counter("order.admission.rejected", "reason", "rate");
+        this.rejectedByConcurrency = meterRegistry.counter("order.admission.rejected", "reason", "concurrency");
+        this.queuedTotal = meterRegistry.counter("order.admission.queued");
+        meterRegistry.gauge("order.admission.waiting", queued);
+        meterRegistry.gauge("order.admission.in.flight", permits, p -> maxConcurrent - p.availablePermits());
+    }
+
+    // 입장이 허락되면 action 실행, 아니면 OrderAdmissionRejectedException(429)
+    public <T> T admit(Long memberId, Supplier<T> action) {
+        TokenBucket bucket = checkMemberRate(memberId);
+        try {
+            acquirePermit();
+        } catch (OrderAdmissionRejectedException e) {
+            if (bucket != null) {
+                bucket.refund();
+            }
+            throw e;
+        }
+        try {
+            admitted.increment();
+            return action.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    // 토큰을 꺼낸 버킷, 회원이 없으면 null
+    private TokenBucket checkMemberRate(Long memberId) {
+        if (memberId == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        TokenBucket bucket = buckets.get(memberId, id -> new TokenBucket(memberRatePerSecond, memberBurst, now));
+        long waitNanos = bucket.tryAcquire(now);
+        if (waitNanos > 0) {
+            rejectedByRate.increment();
+            throw new OrderAdmissionRejectedException("주문 요청이 너무 많습니다. 잠시 후 다시 시도해 주세요.",
+                    Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L)));
+        }
+        return bucket;
+    }
+
+    // 빈 자리가 있으면 바로, 없으면 대기 자리(maxQueued)가 있을 때만 잠깐 기다린다.
+    private void acquirePermit() {
+        if (permits.tryAcquire()) {
+            return;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            throw rejectByConcurrency();
+        }
+        queuedTotal.increment();
+        try {
+            if (!permits.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw rejectByConcurrency();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw rejectByConcurrency();
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    private OrderAdmissionRejectedException rejectByConcurrency() {
+        rejectedByConcurrency.increment();
+        return new OrderAdmissionRejectedException("주문이 몰리고 있습니다. 잠시 후 다시 시도해 주세요.", 1);
+    }
+}
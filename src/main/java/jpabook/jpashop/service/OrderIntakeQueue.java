@@ -0,0 +1,186 @@
+package jpabook.jpashop.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jpabook.jpashop.exception.OrderIntakeFullException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// 비동기 주문 접수 (선택 사항: POST /api/v1/orders/async)
+// 주문 요청을 크기가 정해진 대기열에 넣고 번호표(OrderTicket)를 바로 돌려준다.
+// 작업 스레드들이 대기열에 쌓인 요청을 최대 batchSize개씩 꺼내서 한 트랜잭션으로 커밋한다. (묶음 커밋, OrderService.orderBatch)
+// => 주문마다 커밋(로그 기록), 커넥션 획득을 하지 않으므로 몰릴수록 묶음이 커지고 처리량이 늘어난다.
+// 대기열이 가득 차면 접수를 거절한다(503) => 처리할 수 있는 것보다 많이 받아서 메모리, 응답 시간이 끝없이 늘어나지 않는다.
+//
+// 서버 메모리에 있는 대기열이므로, 서버가 죽으면 접수만 되고 처리되지 않은 주문은 사라진다. (종료 시에는 남은 주문을 처리하고 내려간다)
+@Slf4j
+@Component
+public class OrderIntakeQueue {
+
+    private static final long POLL_MILLIS = 100;
+    private static final long SHUTDOWN_WAIT_SECONDS = 30;
+    // 끝난 번호표 보관 (결과 조회용)
+    private static final int MAX_COMPLETED_TICKETS = 100_000;
+    private static final Duration COMPLETED_TICKET_EXPIRE = Duration.ofMinutes(10);
+
+    private final OrderService orderService;
+    private final BlockingQueue<OrderTicket> queue;
+    // 처리 중인 번호표는 크기 제한 캐시에 두지 않는다. (밀려나면 접수된 주문의 결과를 조회할 수 없다)
+    // 대기열에 들어간 것만 넣으므로 대기열 크기 + 작업 스레드들이 꺼내간 묶음 이상으로 늘지 않는다.
+    private final Map<String, OrderTicket> pendingTickets = new ConcurrentHashMap<>();
+    // 끝난 번호표만 크기 제한 + 만료로 밀려난다.
+    private final Cache<String, OrderTicket> completedTickets = Caffeine.newBuilder()
+            .maximumSize(MAX_COMPLETED_TICKETS)
+            .expireAfterWrite(COMPLETED_TICKET_EXPIRE)
+            .build();
+    private final int workerCount;
+    private final int batchSize;
+    private final ExecutorService workers;
+    // 묶음 크기 분포: /actuator/metrics/order.intake.batch
+    private final DistributionSummary batchSizes;
+
+    private volatile boolean running = true;
+
+    public OrderIntakeQueue(OrderService orderService, MeterRegistry meterRegistry,
+                            @Value("${jpashop.order-intake.capacity:10000}") int capacity,
+                            @Value("${jpashop.order-intake.workers:4}") int workerCount,
+                            @Value("${jpashop.order-intake.batch-size:100}") int batchSize) {
+        this.orderService = orderService;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.workerCount = workerCount;
+        this.batchSize = batchSize;
+        this.workers = Executors.newFixedThreadPool(workerCount, new CustomizableThreadFactory("order-intake-"));
+        this.batchSizes = meterRegistry.summary("order.intake.batch");
+        meterRegistry.gauge("order.intake.queue", queue, BlockingQueue::size);
+        meterRegistry.gauge("order.intake.pending", pendingTickets, Map::size);
+    }
+
+    @PostConstruct
+    public void start() {
+        for (int i = 0; i < workerCount; i++) {
+            workers.submit(this::drain);
+        }
+    }
+
+    // 접수: 대기열이 가득 차면 OrderIntakeFullException
+    public OrderTicket submit(Long memberId, Long itemId, int count) {
+        if (!running) {
+            throw new OrderIntakeFullException("주문 접수를 종료하는 중입니다.");
+        }
+        OrderTicket ticket = new OrderTicket(UUID.randomUUID().toString(), new OrderIntakeRequest(memberId, itemId, count));
+        pendingTickets.put(ticket.getId(), ticket);
+        if (!queue.offer(ticket)) {
+            pendingTickets.remove(ticket.getId());
+            throw new OrderIntakeFullException("주문 접수 대기열이 가득 찼습니다. 잠시 후 다시 시도해 주세요.");
+        }
+        return ticket;
+    }
+
+    // 번호표 조회, 없거나 보관 기간이 지났으면 null
+    public OrderTicket findTicket(String ticketId) {
+        OrderTicket ticket = pendingTickets.get(ticketId);
+        return ticket != null ? ticket : completedTickets.getIfPresent(ticketId);
+    }
+
+    // 끝난 번호표는 처리 중 목록에서 끝난 번호표 캐시로 옮긴다. (먼저 넣고 빼서 조회가 비는 순간이 없도록)
+    private void complete(OrderTicket ticket, OrderIntakeResult result) {
+        ticket.complete(result);
+        completedTickets.put(ticket.getId(), ticket);
+        pendingTickets.remove(ticket.getId());
+    }
+
+    // 하나가 들어올 때까지 기다렸다가, 그 사이 쌓인 것들을 batchSize까지 한꺼번에 꺼낸다.
+    // 한가할 때는 한 건씩 바로 처리하고(지연 없음), 몰릴 때는 묶음이 저절로 커진다.
+    private void drain() {
+        List<OrderTicket> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                OrderTicket first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("order intake worker failed", e);
+                for (OrderTicket ticket : batch) {
+                    if (ticket.getStatus() == OrderTicket.Status.PENDING) {
+                        complete(ticket, OrderIntakeResult.failure("주문을 처리하지 못했습니다."));
+                    }
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // 묶음 전체가 실패하면 (재시도를 다 써도 재고 version 충돌 등) 한 건씩 따로 주문해서 실패한 주문만 골라낸다.
+    // 번호표는 커밋이 끝난 뒤에 채운다. => ORDERED를 본 클라이언트는 주문을 바로 조회할 수 있다.
+    private void process(List<OrderTicket> batch) {
+        batchSizes.record(batch.size());
+        List<OrderIntakeRequest> requests = new ArrayList<>(batch.size());
+        for (OrderTicket ticket : batch) {
+            requests.add(ticket.getRequest());
+        }
+
+        List<OrderIntakeResult> results;
+        try {
+            results = orderService.orderBatch(requests);
+        } catch (RuntimeException e) {
+            log.warn("order intake batch of {} failed, ordering one by one: {}", batch.size(), e.toString());
+            results = new ArrayList<>(requests.size());
+            for (OrderIntakeRequest request : requests) {
+                results.add(orderOne(request));
+            }
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            complete(batch.get(i), results.get(i));
+        }
+    }
+
+    private OrderIntakeResult orderOne(OrderIntakeRequest request) {
+        try {
+            return OrderIntakeResult.success(orderService.order(request.getMemberId(), request.getItemId(), request.getCount()));
+        } catch (RuntimeException e) {
+            Throwable cause = NestedExceptionUtils.getMostSpecificCause(e);
+            return OrderIntakeResult.failure(cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName());
+        }
+    }
+
+    // 새 접수는 막고, 이미 받은 주문은 처리한 뒤에 내려간다.
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        workers.shutdown();
+        if (!workers.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+            workers.shutdownNow();
+        }
+        OrderTicket ticket;
+        while ((ticket = queue.poll()) != null) {
+            complete(ticket, OrderIntakeResult.failure("서버 종료로 처리되지 않았습니다."));
+        }
+    }
+}
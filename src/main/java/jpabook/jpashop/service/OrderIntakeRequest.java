@@ -0,0 +1,14 @@
+package jpabook.jpashop.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// 비동기 주문 접수 한 건 (회원, 상품, 수량)
+@Getter
+@AllArgsConstructor
+public class OrderIntakeRequest {
+
+    private final Long memberId;
+    private final Long itemId;
+    private final int count;
+}
@@ -0,0 +1,26 @@
+package jpabook.jpashop.service;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// 묶음 주문 한 건의 결과: 주문 id 또는 실패 사유
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class OrderIntakeResult {
+
+    private final Long orderId;
+    private final String error;
+
+    static OrderIntakeResult success(Long orderId) {
+        return new OrderIntakeResult(orderId, null);
+    }
+
+    static OrderIntakeResult failure(String error) {
+        return new OrderIntakeResult(null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
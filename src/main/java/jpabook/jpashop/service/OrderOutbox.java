@@ -0,0 +1,67 @@
+package jpabook.jpashop.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OutboxEvent;
+import jpabook.jpashop.repository.OutboxRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// 주문 이벤트를 아웃박스에 기록 (주문과 같은 트랜잭션에서 호출)
+// 하위 시스템(분석, 메일, 물류)은 orders 테이블을 조회하지 않고 이 이벤트를 받는다.
+@Component
+@RequiredArgsConstructor
+public class OrderOutbox {
+
+    public static final String AGGREGATE_TYPE = "Order";
+    public static final String ORDER_PLACED = "ORDER_PLACED";
+    public static final String ORDER_CANCELLED = "ORDER_CANCELLED";
+
+    private final OutboxRepository outboxRepository;
+    private final ObjectMapper objectMapper;
+
+    // 주문: { orderId, memberId, orderDate, totalPrice, orderItems: [ { itemId, orderPrice, count } ] }
+    public void orderPlaced(Order order) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("orderId", order.getId());
+        payload.put("memberId", order.getMember().getId());
+        payload.put("orderDate", order.getOrderDate().toString());
+        payload.put("totalPrice", order.getTotalPrice());
+        List<Map<String, Object>> orderItems = new ArrayList<>();
+        for (OrderItem orderItem : order.getOrderItems()) {
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("itemId", orderItem.getItem().getId());
+            line.put("orderPrice", orderItem.getOrderPrice());
+            line.put("count", orderItem.getCount());
+            orderItems.add(line);
+        }
+        payload.put("orderItems", orderItems);
+        record(order.getId(), ORDER_PLACED, payload);
+    }
+
+    // 주문 취소: { orderId }
+    // 일괄 취소도 주문마다 하나씩 (같은 insert문이므로 JDBC 배치로 한 번에 나간다)
+    public void ordersCancelled(Collection<Long> orderIds) {
+        for (Long orderId : orderIds) {
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("orderId", orderId);
+            record(orderId, ORDER_CANCELLED, payload);
+        }
+    }
+
+    private void record(Long orderId, String eventType, Map<String, Object> payload) {
+        try {
+            outboxRepository.save(new OutboxEvent(AGGREGATE_TYPE, orderId, eventType, objectMapper.writeValueAsString(payload)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("주문 이벤트를 만들 수 없습니다. orderId=" + orderId, e);
+        }
+    }
+}
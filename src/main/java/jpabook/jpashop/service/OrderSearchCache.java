@@ -0,0 +1,147 @@
+package jpabook.jpashop.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jpabook.jpashop.datasource.ReplicaReads;
+import jpabook.jpashop.domain.DataVersion;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.DataVersions;
+import jpabook.jpashop.repository.OrderListDto;
+import jpabook.jpashop.repository.OrderPage;
+import jpabook.jpashop.repository.OrderQueryRepository;
+import jpabook.jpashop.repository.OrderSearch;
+import lombok.EqualsAndHashCode;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// 주문 목록 검색 결과 캐시
+// 관리 화면은 같은 검색 조건(주문 상태, 회원 이름)으로 목록을 계속 새로고침한다.
+// 검색 조건 + 페이지를 키로 결과(DTO 페이지)를 보관하고, 데이터가 바뀌면 세대(generation) 번호를 올려서 무효화한다.
+// - 주문 상태별 세대: 주문(ORDER +1), 취소(ORDER, CANCEL +1) => 취소된 주문 검색 결과는 새 주문이 들어와도 그대로 쓴다.
+// - 회원 세대, 상품 세대: 결과에 회원 이름, 상품 이름이 들어있으므로 이름이 바뀌면 +1
+// 키에 현재 세대 번호가 들어가므로, 세대가 바뀌면 예전 결과는 다시 조회되지 않고 크기 제한, 만료로 밀려난다.
+//
+// 세대는 서버마다 따로 두지 않고 DB(DataVersion)에 둔다. => 다른 서버에서 들어온 주문, 바뀐 이름도 바로 무효화된다.
+// - 데이터를 바꾸는 트랜잭션이 커밋 직전에 같은 트랜잭션에서 세대를 올린다. (데이터와 세대가 함께 커밋된다)
+// - 조회할 때마다 지금 세대들을 주 DB에서 쿼리 한 번(기본키 in 절)으로 읽고, 그 다음에 결과를 조회한다.
+//   세대를 먼저 읽으므로 보관되는 결과는 항상 그 세대 이후의 데이터다. 캐시에 있어도 세대 확인 쿼리 한 번은 나간다.
+@Component
+public class OrderSearchCache {
+
+    private static final int MAX_ENTRIES = 1000;
+    private static final Duration EXPIRE = Duration.ofMinutes(5);
+
+    private final Cache<Key, OrderPage<OrderListDto>> cache = Caffeine.newBuilder()
+            .maximumSize(MAX_ENTRIES)
+            .expireAfterWrite(EXPIRE)
+            .recordStats()
+            .build();
+
+    private final DataVersions dataVersions;
+    private final List<String> versionNames = new ArrayList<>();
+
+    // 적중률: /actuator/metrics/cache.gets?tag=cache:orderSearch&tag=result:hit
+    public OrderSearchCache(MeterRegistry meterRegistry, DataVersions dataVersions) {
+        this.dataVersions = dataVersions;
+        for (OrderStatus status : OrderStatus.values()) {
+            versionNames.add(DataVersion.orders(status));
+        }
+        versionNames.add(DataVersion.MEMBER);
+        versionNames.add(DataVersion.ITEM);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "orderSearch");
+    }
+
+    // 캐시에 있으면 그대로, 없으면 loader로 조회해서 보관
+    // 쓰기 트랜잭션 안에서의 조회는 커밋 전(롤백될 수도 있는) 데이터를 볼 수 있으므로 캐시를 거치지 않는다.
+    // 캐시를 채우는 조회는 주 DB에서 읽는다. 이미 복제본에서 읽던 트랜잭션이면 결과를 보관하지 않는다. (ReplicaReads)
+    public OrderPage<OrderListDto> get(OrderSearch orderSearch, String cursor, int size, Supplier<OrderPage<OrderListDto>> loader) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return loader.get();
+        }
+        Key key = key(orderSearch, cursor, size, dataVersions.current(versionNames));
+        OrderPage<OrderListDto> cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        OrderPage<OrderListDto> loaded = ReplicaReads.fromPrimary(loader);
+        if (!ReplicaReads.isCurrentTransactionOnReplica()) {
+            cache.put(key, loaded);
+        }
+        return loaded;
+    }
+
+    // 주문 생성, 취소 시 호출 (해당 상태의 검색 결과만 무효화), 쓰기 트랜잭션 안에서 호출해야 한다.
+    public void ordersChanged(OrderStatus... statuses) {
+        for (OrderStatus status : statuses) {
+            dataVersions.bump(DataVersion.orders(status));
+        }
+    }
+
+    // 회원 이름이 바뀌면 (결과의 회원 이름, 회원 이름 검색 결과)
+    public void membersChanged() {
+        dataVersions.bump(DataVersion.MEMBER);
+    }
+
+    // 상품 이름이 바뀌면 (결과의 대표 상품 이름)
+    public void itemsChanged() {
+        dataVersions.bump(DataVersion.ITEM);
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    // 검색 조건 정규화: 빈 회원 이름은 조건 없음과 같다. 페이지 크기는 실제 조회 크기로 맞춘다.
+    private Key key(OrderSearch orderSearch, String cursor, int size, Map<String, Long> versions) {
+        OrderStatus status = orderSearch.getOrderStatus();
+        String memberName = StringUtils.hasText(orderSearch.getMemberName()) ? orderSearch.getMemberName() : null;
+        return new Key(status, memberName,
+                StringUtils.hasText(cursor) ? cursor : null,
+                Math.min(Math.max(size, 1), OrderQueryRepository.MAX_PAGE_SIZE),
+                statusGeneration(status, versions), versions.get(DataVersion.MEMBER), versions.get(DataVersion.ITEM));
+    }
+
+    // 상태 조건이 없으면 모든 상태의 주문이 결과에 들어가므로, 어느 상태가 바뀌어도 무효화되도록 합친다.
+    private long statusGeneration(OrderStatus status, Map<String, Long> versions) {
+        if (status != null) {
+            return versions.get(DataVersion.orders(status));
+        }
+        long sum = 0;
+        for (OrderStatus each : OrderStatus.values()) {
+            sum += versions.get(DataVersion.orders(each));
+        }
+        return sum;
+    }
+
+    @EqualsAndHashCode
+    private static final class Key {
+        private final OrderStatus status;
+        private final String memberName;
+        private final String cursor;
+        private final int size;
+        private final long statusGeneration;
+        private final long memberGeneration;
+        private final long itemGeneration;
+
+        Key(OrderStatus status, String memberName, String cursor, int size,
+            long statusGeneration, long memberGeneration, long itemGeneration) {
+            this.status = status;
+            this.memberName = memberName;
+            this.cursor = cursor;
+            this.size = size;
+            this.statusGeneration = statusGeneration;
+            this.memberGeneration = memberGeneration;
+            this.itemGeneration = itemGeneration;
+        }
+    }
+}
@@ -1,19 +1,42 @@
 package jpabook.jpashop.service;
 
+import jpabook.jpashop.aop.RetryOnOptimisticLock;
+import jpabook.jpashop.domain.DataVersion;
 import jpabook.jpashop.domain.Delivery;
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderStatus;
 import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.exception.InvalidRequestException;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.repository.DataVersions;
+import jpabook.jpashop.repository.DeliveryRepository;
 import jpabook.jpashop.repository.ItemRepository;
 import jpabook.jpashop.repository.MemberRepository;
+import jpabook.jpashop.repository.OrderCursor;
+import jpabook.jpashop.repository.OrderPage;
+import jpabook.jpashop.repository.OrderQueryRepository;
 import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.OrderSearch;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 @Service
 @Transactional(readOnly = true)
@@ -23,11 +46,21 @@ public class OrderService {
     // 엔티티에서 이미 설계된 비즈니스 로직들을 서비스에서 사용한다
     // 서비스는 단순히 레포지토리를 통해 엔티티 가져오고, 엔티티의 비즈니스 로직을 호출하는 역할만 한다.
 
+    // 일괄 취소 한 번에 처리하는 최대 주문 수 (in 절 크기, 잠그는 행 수 제한)
+    public static final int MAX_BULK_CANCEL = 1000;
+
     private final OrderRepository orderRepository;
     private final MemberRepository memberRepository;
     private final ItemRepository itemRepository;
+    private final DeliveryRepository deliveryRepository;
+    private final OrderQueryRepository orderQueryRepository;
+    private final OrderSearchCache orderSearchCache;
+    private final OrderOutbox orderOutbox;
+    private final DataVersions dataVersions; // 재고가 바뀌면 상품 목록 버전 (ETag)
 
     // 주문하기
+    // 같은 상품을 동시에 주문해서 재고 version이 충돌하면 새 트랜잭션으로 재시도
+    @RetryOnOptimisticLock
     @Transactional
     public Long order(Long memberId, Long itemId, int count){
 
@@ -53,6 +86,11 @@ public class OrderService {
 
         // 주문 저장
         orderRepository.save(order);
+        // 주문 이벤트도 같은 트랜잭션으로 기록 (아웃박스)
+        orderOutbox.orderPlaced(order);
+        // 커밋되면 주문 상태(ORDER) 검색 결과 캐시 무효화
+        orderSearchCache.ordersChanged(OrderStatus.ORDER);
+        dataVersions.bump(DataVersion.ITEM_LIST);
         // 이때, delivery, orderItem 객체는 따로 persist(save) 해줘야 하는 거 아닌가?
         // deliveryRepository, orderItemRepository는 필요없는건가?
         // 왜 order 객체만 persist 하는가?
@@ -63,20 +101,208 @@ public class OrderService {
         return order.getId();
     }
 
+    // 장바구니 주문하기: 여러 상품을 한 주문, 한 트랜잭션으로
+    // itemCounts: 상품 id => 주문 수량
+    // 1. 회원 조회, 상품들은 in 절 한 번으로 조회
+    // 2. 재고 차감은 상품 id 순서로 => 동시에 같은 상품들을 주문해도 항상 같은 순서로 row lock을 잡으므로 데드락이 생기지 않는다.
+    //    (hibernate.order_updates 설정으로 flush 시 update 문도 id 순서로 나간다.)
+    // 3. 주문, 배송, 주문상품 insert는 pooled 시퀀스 + JDBC 배치 (hibernate.jdbc.batch_size)
+    // => 장바구니 크기와 관계없이 DB 왕복 횟수가 거의 일정하다.
+    // 빈 장바구니, 없는 회원, 없는 상품은 요청이 잘못된 것이므로 InvalidRequestException (400)
+    @RetryOnOptimisticLock
+    @Transactional
+    public Long checkout(Long memberId, Map<Long, Integer> itemCounts) {
+        if (itemCounts.isEmpty()) {
+            throw new InvalidRequestException("주문할 상품이 없습니다.");
+        }
+        Member member = memberRepository.findOne(memberId);
+        if (member == null) {
+            throw new InvalidRequestException("존재하지 않는 회원입니다. memberId=" + memberId);
+        }
+
+        // 상품 id 순서로 정렬
+        SortedMap<Long, Integer> sortedCounts = new TreeMap<>(itemCounts);
+        List<Item> items = itemRepository.findAllById(sortedCounts.keySet());
+        if (items.size() != sortedCounts.size()) {
+            throw new InvalidRequestException("존재하지 않는 상품이 있습니다.");
+        }
+
+        // 배송정보 생성
+        Delivery delivery = new Delivery();
+        delivery.setAddress(member.getAddress());
+
+        // 주문 상품 생성 (상품 id 순서로 재고 차감)
+        OrderItem[] orderItems = new OrderItem[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            orderItems[i] = OrderItem.createOrderItem(item, item.getPrice(), sortedCounts.get(item.getId()));
+        }
+
+        // 주문 생성, 저장 (cascade로 배송, 주문상품도 함께 저장)
+        Order order = Order.createOrder(member, delivery, orderItems);
+        orderRepository.save(order);
+        orderOutbox.orderPlaced(order);
+        orderSearchCache.ordersChanged(OrderStatus.ORDER);
+        dataVersions.bump(DataVersion.ITEM_LIST);
+        return order.getId();
+    }
+
+    // 묶음 주문: 여러 주문을 한 트랜잭션으로 (비동기 주문 접수의 묶음 커밋, OrderIntakeQueue)
+    // 요청마다 주문 id 또는 실패 사유를 요청 순서대로 돌려준다. => 재고 부족 등 한 건의 실패가 묶음 전체를 롤백시키지 않는다.
+    // 1. 회원, 상품은 in 절로 한 번씩 조회
+    // 2. 재고 차감은 접수 순서대로 메모리에서 => 같은 상품 주문이 여러 건이어도 상품 row update는 flush 때 한 번
+    //    flush 시 update는 상품 id 순서로 나간다. (hibernate.order_updates) => 동시에 커밋하는 묶음끼리 데드락이 생기지 않는다.
+    // 3. 주문, 배송, 주문상품 insert는 pooled 시퀀스 + JDBC 배치
+    // 다른 트랜잭션과 상품 version이 충돌하면 묶음 전체를 새 트랜잭션에서 다시 실행한다.
+    @RetryOnOptimisticLock
+    @Transactional
+    public List<OrderIntakeResult> orderBatch(List<OrderIntakeRequest> requests) {
+        Set<Long> memberIds = new HashSet<>();
+        SortedSet<Long> itemIds = new TreeSet<>();
+        for (OrderIntakeRequest request : requests) {
+            memberIds.add(request.getMemberId());
+            itemIds.add(request.getItemId());
+        }
+        Map<Long, Member> members = new HashMap<>();
+        for (Member member : memberRepository.findAllById(memberIds)) {
+            members.put(member.getId(), member);
+        }
+        Map<Long, Item> items = new HashMap<>();
+        for (Item item : itemRepository.findAllById(itemIds)) {
+            items.put(item.getId(), item);
+        }
+
+        List<OrderIntakeResult> results = new ArrayList<>(requests.size());
+        boolean ordered = false;
+        for (OrderIntakeRequest request : requests) {
+            Member member = members.get(request.getMemberId());
+            Item item = items.get(request.getItemId());
+            if (member == null) {
+                results.add(OrderIntakeResult.failure("존재하지 않는 회원입니다."));
+                continue;
+            }
+            if (item == null) {
+                results.add(OrderIntakeResult.failure("존재하지 않는 상품입니다."));
+                continue;
+            }
+            if (request.getCount() < 1) {
+                results.add(OrderIntakeResult.failure("주문 수량은 1개 이상이어야 합니다."));
+                continue;
+            }
+            try {
+                // 재고가 모자라면 재고를 건드리지 않고 예외 => 이 주문만 실패
+                OrderItem orderItem = OrderItem.createOrderItem(item, item.getPrice(), request.getCount());
+                Delivery delivery = new Delivery();
+                delivery.setAddress(member.getAddress());
+                Order order = Order.createOrder(member, delivery, orderItem);
+                orderRepository.save(order);
+                orderOutbox.orderPlaced(order);
+                results.add(OrderIntakeResult.success(order.getId()));
+                ordered = true;
+            } catch (NotEnoughStockException e) {
+                results.add(OrderIntakeResult.failure("재고가 부족합니다."));
+            }
+        }
+        if (ordered) {
+            orderSearchCache.ordersChanged(OrderStatus.ORDER);
+            dataVersions.bump(DataVersion.ITEM_LIST);
+        }
+        return results;
+    }
+
     // 주문 취소하기
+    // 재고를 되돌리므로 주문과 마찬가지로 version 충돌 시 재시도
+    @RetryOnOptimisticLock
     @Transactional
     public void cancelOrder(Long orderId) {
         // 주문 엔티티 가져오기
         Order order = orderRepository.findOne(orderId);
         // 주문 취소
         order.cancel();
+        orderOutbox.ordersCancelled(Collections.singletonList(orderId));
+        // ORDER => CANCEL 이므로 두 상태의 검색 결과 캐시 무효화
+        orderSearchCache.ordersChanged(OrderStatus.ORDER, OrderStatus.CANCEL);
+        dataVersions.bump(DataVersion.ITEM_LIST);
         // jpa의 강점: update 쿼리를 따로 날릴 필요없이 jpa가 비즈니스 로직에 따라서 데이터베이스를 다 업데이트 해준다.
     }
 
+    // 일괄 주문 취소 (주문 id 목록)
+    // 배송 완료 등으로 취소할 수 없는 주문은 건너뛰고, 실제로 취소된 주문 id 목록을 반환한다.
+    @RetryOnOptimisticLock
+    @Transactional
+    public List<Long> cancelOrders(Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (orderIds.size() > MAX_BULK_CANCEL) {
+            throw new InvalidRequestException("한 번에 취소할 수 있는 주문은 " + MAX_BULK_CANCEL + "건까지입니다.");
+        }
+        return cancelLocked(orderRepository.findCancelableIdsForUpdate(orderIds));
+    }
+
+    // 일괄 주문 취소 (검색 조건), 한 번에 최대 MAX_BULK_CANCEL건
+    // 더 남아있으면 같은 조건으로 다시 호출하면 된다. (이미 취소된 주문은 대상에서 빠진다)
+    @RetryOnOptimisticLock
+    @Transactional
+    public List<Long> cancelOrders(OrderSearch orderSearch) {
+        return cancelLocked(orderRepository.findCancelableIdsForUpdate(orderSearch, MAX_BULK_CANCEL));
+    }
+
+    // 주문마다 cancel()을 호출하지 않고 집합 연산으로 처리
+    // 1. 취소할 주문 id 잠금 (select ... for update) - 위에서
+    // 2. 주문 상태 변경, 배송 취소: update 한 번씩
+    // 3. 상품별 수량 합계: select 한 번 (group by)
+    // 4. 재고 복구: 상품마다 update 한 번 (상품 id 순서 => 주문과 같은 순서로 row lock)
+    // => 쿼리 수는 주문 수가 아니라 상품 종류 수에 비례한다.
+    private List<Long> cancelLocked(List<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return orderIds;
+        }
+        orderRepository.cancelAll(orderIds);
+        // 배송도 취소: 잠근 뒤에 배송 처리가 완료한 배송이 있으면 전체 롤백 후 재시도 (다시 잠글 때 빠진다)
+        if (deliveryRepository.cancelByOrderIds(orderIds) != orderIds.size()) {
+            throw new OptimisticLockingFailureException("배송 처리가 완료된 주문이 있습니다.");
+        }
+        orderSearchCache.ordersChanged(OrderStatus.ORDER, OrderStatus.CANCEL);
+        dataVersions.bump(DataVersion.ITEM_LIST);
+        for (Object[] row : orderRepository.sumCountsByItem(orderIds)) {
+            Long itemId = (Long) row[0];
+            boolean hotItem = (Boolean) row[1];
+            int quantity = ((Long) row[2]).intValue();
+            int updated = hotItem ? itemRepository.addShardStock(itemId, quantity) : itemRepository.addStock(itemId, quantity);
+            if (updated != 1) {
+                // 집계 후 복구 전에 인기 상품 모드가 바뀐 경우 => 전체 롤백 후 재시도
+                throw new OptimisticLockingFailureException("재고 모드가 바뀐 상품이 있습니다. itemId=" + itemId);
+            }
+        }
+        // 벌크 update는 영속성 컨텍스트를 거치지 않으므로, 이미 읽어둔 주문, 상품이 있다면 버린다.
+        orderRepository.clear();
+        // 아웃박스 기록은 clear 뒤에 (flush 전에 clear하면 persist한 이벤트가 버려진다)
+        orderOutbox.ordersCancelled(orderIds);
+        return orderIds;
+    }
+
     // 주문 검색하기
     // 동적 쿼리
     public List<Order> findOrders(OrderSearch orderSearch) {
         return orderRepository.findAll(orderSearch);
     }
 
+    // 주문 목록 화면 조회 (키셋 페이징)
+    // 엔티티를 화면에 넘기면 행마다 회원, 주문상품, 상품 지연 로딩이 발생하므로 DTO로 조회한다.
+    // cursor: 이전 페이지에서 받은 불투명 토큰, 없으면 첫 페이지
+    // 같은 검색 조건의 반복 조회는 검색 결과 캐시에서 (주문, 취소, 이름 변경 시 무효화)
+    public OrderPage<OrderListDto> findOrderListPage(OrderSearch orderSearch, String cursor, int size) {
+        OrderCursor orderCursor = StringUtils.hasText(cursor) ? OrderCursor.decode(cursor) : null;
+        return orderSearchCache.get(orderSearch, cursor, size,
+                () -> orderQueryRepository.findOrderListPage(orderSearch, orderCursor, size));
+    }
+
+    // 주문 엔티티 페이지 조회 (키셋 페이징)
+    // 회원, 배송은 fetch join, 주문상품과 상품은 지연 로딩 시점에 in 절 배치로 조회된다.
+    public OrderPage<Order> findOrderPage(OrderSearch orderSearch, String cursor, int size) {
+        OrderCursor orderCursor = StringUtils.hasText(cursor) ? OrderCursor.decode(cursor) : null;
+        return orderQueryRepository.findOrderPage(orderSearch, orderCursor, size);
+    }
+
 }
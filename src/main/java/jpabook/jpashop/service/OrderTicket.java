@@ -0,0 +1,37 @@
+package jpabook.jpashop.service;
+
+import lombok.Getter;
+
+import java.util.concurrent.CompletableFuture;
+
+// 비동기 주문 접수 번호표
+// 접수하면 PENDING, 묶음이 커밋된 뒤에 ORDERED(주문 id) 또는 FAILED(사유)로 바뀐다.
+// 결과는 조회(폴링)하거나 completion으로 기다릴 수 있다.
+@Getter
+public class OrderTicket {
+
+    public enum Status {
+        PENDING, ORDERED, FAILED
+    }
+
+    private final String id;
+    private final OrderIntakeRequest request;
+    private final CompletableFuture<OrderTicket> completion = new CompletableFuture<>();
+
+    // 작업 스레드가 쓰고 요청 스레드가 읽는다. status를 마지막에 쓰므로 status를 보고 나면 orderId, error도 보인다.
+    private volatile Long orderId;
+    private volatile String error;
+    private volatile Status status = Status.PENDING;
+
+    OrderTicket(String id, OrderIntakeRequest request) {
+        this.id = id;
+        this.request = request;
+    }
+
+    void complete(OrderIntakeResult result) {
+        this.orderId = result.getOrderId();
+        this.error = result.getError();
+        this.status = result.isSuccess() ? Status.ORDERED : Status.FAILED;
+        completion.complete(this);
+    }
+}
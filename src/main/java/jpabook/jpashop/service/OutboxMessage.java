@@ -0,0 +1,26 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.OutboxEvent;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// 싱크에 전달하는 이벤트 (엔티티를 트랜잭션 밖으로 넘기지 않는다)
+// position: 아웃박스 순번, 같은 순번이 두 번 올 수 있으므로(at-least-once) 받는 쪽은 순번으로 중복을 거른다.
+@Data
+@AllArgsConstructor
+public class OutboxMessage {
+
+    private long position;
+    private String aggregateType;
+    private Long aggregateId;
+    private String eventType;
+    private String payload;
+    private LocalDateTime createdDate;
+
+    public OutboxMessage(OutboxEvent event) {
+        this(event.getPosition(), event.getAggregateType(), event.getAggregateId(), event.getEventType(),
+                event.getPayload(), event.getCreatedDate());
+    }
+}
@@ -0,0 +1,136 @@
+package jpabook.jpashop.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jpabook.jpashop.domain.OutboxOffset;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// 아웃박스 릴레이: 주문과 같은 트랜잭션으로 기록된 이벤트를 묶음으로 꺼내서 싱크들에 전달한다.
+// 1. 순번 매기기 (OutboxService.sequence)
+// 2. 싱크마다 전달 위치 다음부터 순번 순서대로 전달 (OutboxService.publish)
+// 3. 모든 싱크에 전달된 이벤트 삭제
+// 릴레이는 임대(순번 발급기 행의 leaseOwner)를 가진 노드 한 곳에서만 돈다.
+// 여러 노드에서 켜 두면 한 곳이 임대를 가져가고, 그 노드가 멈추면 임대가 만료(lease-seconds)된 뒤 다른 노드가 이어받는다.
+// 파일, 애플리케이션 이벤트 싱크는 노드 로컬이다. => 이벤트는 그때 임대를 가진 노드의 파일, 리스너로 간다.
+//    노드마다 돌리면 묶음마다 행 잠금을 먼저 잡은 노드로 흩어지므로, 한 노드의 파일, 리스너만 보면 빠진 이벤트가 생긴다.
+//    노드마다 모든 이벤트를 받아야 하는 구독자는 노드 로컬 싱크가 아니라 공유 싱크(메시지 브로커 등)로 받는다.
+// 한 싱크가 실패해도 다른 싱크는 계속 받는다. (실패한 싱크는 다음 차례에 같은 위치부터 다시)
+// 시작할 때 순번 발급기, 싱크 빈마다 위치 행을 등록하고, 등록이 끝나야 전달을 시작한다.
+@Slf4j
+@Component
+public class OutboxRelay {
+
+    private final OutboxService outboxService;
+    private final List<OutboxSink> sinks;
+    private final List<String> sinkNames = new ArrayList<>();
+    private final boolean enabled;
+    private final int batchSize;
+    private final MeterRegistry meterRegistry;
+    private final Duration lease;
+    // 이 노드의 임대 이름
+    private final String owner = UUID.randomUUID().toString();
+    private volatile boolean registered;
+
+    public OutboxRelay(OutboxService outboxService, List<OutboxSink> sinks, MeterRegistry meterRegistry,
+                       @Value("${jpashop.outbox.relay.enabled:true}") boolean enabled,
+                       @Value("${jpashop.outbox.relay.batch-size:500}") int batchSize,
+                       @Value("${jpashop.outbox.relay.lease-seconds:30}") long leaseSeconds) {
+        this.outboxService = outboxService;
+        this.sinks = sinks;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.lease = Duration.ofSeconds(leaseSeconds);
+        for (OutboxSink sink : sinks) {
+            sinkNames.add(sink.name());
+        }
+    }
+
+    // 위치 행 등록, 스케줄러가 먼저 돌 수 있으므로 relay에서도 확인한다.
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void registerOffsets() {
+        if (registered) {
+            return;
+        }
+        List<String> names = new ArrayList<>(sinkNames);
+        names.add(OutboxOffset.SEQUENCER);
+        for (String name : names) {
+            try {
+                outboxService.registerOffset(name);
+            } catch (DataIntegrityViolationException e) {
+                // 다른 노드가 먼저 만들었다.
+            } catch (RuntimeException e) {
+                log.warn("failed to register outbox offset '{}', will retry: {}", name, e.toString());
+                return;
+            }
+        }
+        registered = true;
+    }
+
+    @Scheduled(fixedDelayString = "${jpashop.outbox.relay.interval-millis:500}")
+    public void scheduledRelay() {
+        if (enabled) {
+            relay();
+        }
+    }
+
+    // 쌓인 이벤트가 없을 때까지 전달, 싱크들에 전달한 이벤트 수(싱크별 합)를 반환
+    public int relay() {
+        registerOffsets();
+        if (!registered) {
+            return 0;
+        }
+        // 돌 때마다 임대를 연장한다. 다른 노드가 임대 중이면 돌지 않는다.
+        if (!outboxService.leaseRelay(owner, lease)) {
+            return 0;
+        }
+        // 밀려 있으면 한 번에 다 매긴다.
+        int sequenced;
+        do {
+            sequenced = outboxService.sequence(batchSize);
+        } while (sequenced == batchSize);
+        int published = 0;
+        for (OutboxSink sink : sinks) {
+            published += publishAll(sink);
+        }
+        outboxService.deletePublished(sinkNames);
+        return published;
+    }
+
+    // 종료할 때 임대를 내놓는다. => 다른 노드가 임대 만료를 기다리지 않고 이어받는다.
+    @PreDestroy
+    public void releaseLease() {
+        try {
+            outboxService.releaseRelay(owner);
+        } catch (RuntimeException e) {
+            log.warn("failed to release outbox relay lease, another node takes over after it expires: {}", e.toString());
+        }
+    }
+
+    private int publishAll(OutboxSink sink) {
+        int total = 0;
+        try {
+            int count;
+            do {
+                count = outboxService.publish(sink, batchSize);
+                total += count;
+            } while (count == batchSize);
+        } catch (Exception e) {
+            log.warn("outbox sink '{}' failed, will retry from the last committed position: {}", sink.name(), e.toString());
+        }
+        // 싱크별 전달 수: /actuator/metrics/outbox.published?tag=sink:file
+        meterRegistry.counter("outbox.published", "sink", sink.name()).increment(total);
+        return total;
+    }
+}
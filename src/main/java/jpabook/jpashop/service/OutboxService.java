@@ -0,0 +1,84 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.OutboxEvent;
+import jpabook.jpashop.domain.OutboxOffset;
+import jpabook.jpashop.repository.OutboxRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class OutboxService {
+
+    private final OutboxRepository outboxRepository;
+
+    // 싱크(또는 순번 발급기)의 위치 행 등록, 싱크마다 따로 커밋한다.
+    // 전달 전에 미리 만들어 두어야, 첫 전달이 실패해서 롤백되어도 정리(deletePublished)가 이 싱크를 기다린다.
+    @Transactional
+    public void registerOffset(String name) {
+        outboxRepository.createOffsetIfAbsent(name);
+    }
+
+    // 릴레이 임대를 가져가거나 연장한다. 다른 노드가 임대 중이면 false
+    @Transactional
+    public boolean leaseRelay(String owner, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        return outboxRepository.leaseRelay(owner, now, now.plus(lease)) == 1;
+    }
+
+    @Transactional
+    public void releaseRelay(String owner) {
+        outboxRepository.releaseRelay(owner);
+    }
+
+    // 순번 매기기: 순번 발급기 행을 잠그고, 커밋되어 보이는 이벤트에 이어지는 순번을 매긴다.
+    // 한 번에 한 노드만 매기므로 순번에 빈 곳이 없고, 먼저 커밋된(보인) 이벤트가 앞 순번을 받는다.
+    // update는 변경 감지 + JDBC 배치로 나간다.
+    @Transactional
+    public int sequence(int limit) {
+        OutboxOffset sequencer = outboxRepository.findOffsetForUpdate(OutboxOffset.SEQUENCER);
+        List<OutboxEvent> events = outboxRepository.findUnsequenced(limit);
+        long position = sequencer.getPosition();
+        for (OutboxEvent event : events) {
+            event.assignPosition(++position);
+        }
+        sequencer.moveTo(position);
+        return events.size();
+    }
+
+    // 싱크 하나에 전달 위치 다음부터 최대 limit건 전달
+    // 싱크 행을 잠근 채로 전달하고 위치를 커밋한다. => 같은 싱크에 두 노드가 동시에 전달하지 않는다.
+    // 전달이 실패하면(예외) 위치는 그대로 롤백된다.
+    @Transactional(rollbackFor = Exception.class)
+    public int publish(OutboxSink sink, int limit) throws Exception {
+        OutboxOffset offset = outboxRepository.findOffsetForUpdate(sink.name());
+        List<OutboxEvent> events = outboxRepository.findAfter(offset.getPosition(), limit);
+        if (events.isEmpty()) {
+            return 0;
+        }
+        List<OutboxMessage> messages = new ArrayList<>(events.size());
+        for (OutboxEvent event : events) {
+            messages.add(new OutboxMessage(event));
+        }
+        sink.publish(messages);
+        offset.moveTo(events.get(events.size() - 1).getPosition());
+        return events.size();
+    }
+
+    // 지금 등록된 싱크들에 모두 전달된 이벤트 삭제
+    // 싱크를 새로 추가하면 그 싱크는 0부터 시작하므로, 그 전에 지워진 이벤트는 받지 못한다.
+    // 제거된 싱크의 위치 행은 남아 있어도 보지 않는다.
+    @Transactional
+    public int deletePublished(Collection<String> sinkNames) {
+        long position = outboxRepository.findMinSinkPosition(sinkNames);
+        return position > 0 ? outboxRepository.deleteUpTo(position) : 0;
+    }
+}
@@ -0,0 +1,14 @@
+package jpabook.jpashop.service;
+
+import java.util.List;
+
+// 아웃박스 이벤트를 받아가는 곳 (스프링 빈으로 등록하면 릴레이가 찾아서 전달한다)
+// 순번 순서대로, 한 싱크에는 한 번에 한 노드만 전달한다.
+// publish가 예외 없이 끝나야 전달 위치가 앞으로 간다. => 실패하면 같은 이벤트가 다시 온다. (at-least-once)
+public interface OutboxSink {
+
+    // 전달 위치를 기록하는 이름, 싱크마다 달라야 한다.
+    String name();
+
+    void publish(List<OutboxMessage> messages) throws Exception;
+}
@@ -0,0 +1,111 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.IdempotencyRecord;
+import jpabook.jpashop.repository.IdempotencyRecordRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+// 테이블 저장소: idempotency_record 테이블, 모든 서버가 같이 본다.
+// 키 선점은 기본키 insert로 한다. => 여러 서버에 동시에 온 재시도 중 하나만 선점하고, 나머지는 기본키 위반으로 선점 실패
+// 조회도 readOnly가 아닌 트랜잭션으로 한다. (읽기/쓰기 분리를 켜면 readOnly는 복제 지연이 있는 복제본에서 읽는다)
+// 만료된 키는 주기적으로 벌크 delete 한다.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "jpashop.idempotency.store", havingValue = "table")
+@Transactional
+public class TableIdempotencyStore implements IdempotencyStore {
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final TransactionTemplate claimTransaction;
+    private final Duration ttl;
+    private final Duration pendingTimeout;
+
+    public TableIdempotencyStore(IdempotencyRecordRepository idempotencyRecordRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${jpashop.idempotency.ttl-minutes:1440}") long ttlMinutes,
+                                 @Value("${jpashop.idempotency.pending-timeout-minutes:5}") long pendingTimeoutMinutes) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.claimTransaction = new TransactionTemplate(transactionManager);
+        this.claimTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        this.pendingTimeout = Duration.ofMinutes(pendingTimeoutMinutes);
+    }
+
+    @Override
+    public IdempotencyRecord find(String key) {
+        IdempotencyRecord record = idempotencyRecordRepository.findOne(key);
+        if (record == null || isExpired(record)) {
+            return null;
+        }
+        return record;
+    }
+
+    // 선점 insert는 따로 커밋해야 다른 서버에 보인다.
+    // 기본키 위반은 트랜잭션 밖에서 받아야 하므로 (트랜잭션은 롤백된다) 트랜잭션 템플릿을 쓴다.
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public boolean claim(String key, String fingerprint) {
+        try {
+            return claimTransaction.execute(status -> {
+                IdempotencyRecord existing = idempotencyRecordRepository.findOne(key);
+                if (existing != null) {
+                    if (!isExpired(existing)) {
+                        return false;
+                    }
+                    idempotencyRecordRepository.delete(existing);
+                }
+                idempotencyRecordRepository.insert(IdempotencyRecord.pending(key, fingerprint));
+                return true;
+            });
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    // 서비스 트랜잭션은 이미 커밋되었다. 결과 저장은 따로 커밋한다.
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void complete(IdempotencyRecord record) {
+        IdempotencyRecord pending = idempotencyRecordRepository.findOne(record.getKey());
+        if (pending == null) {
+            idempotencyRecordRepository.insert(record);
+            return;
+        }
+        pending.complete(record.getResultId());
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void release(String key) {
+        IdempotencyRecord record = idempotencyRecordRepository.findOne(key);
+        if (record != null && record.isPending()) {
+            idempotencyRecordRepository.delete(record);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jpashop.idempotency.purge-interval-millis:600000}")
+    public void purgeExpired() {
+        int deleted = idempotencyRecordRepository.deleteCreatedBefore(LocalDateTime.now().minus(ttl));
+        if (deleted > 0) {
+            log.debug("purged {} expired idempotency keys", deleted);
+        }
+    }
+
+    // 처리 중(PENDING)인 채로 pending-timeout이 지났으면 선점한 서버가 죽은 것으로 보고 다시 선점할 수 있게 한다.
+    private boolean isExpired(IdempotencyRecord record) {
+        Duration limit = record.isPending() ? pendingTimeout : ttl;
+        return record.getCreatedDate().isBefore(LocalDateTime.now().minus(limit));
+    }
+}
@@ -0,0 +1,43 @@
+package jpabook.jpashop.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// 회원별 주문 속도 제한용 토큰 버킷
+// 초당 ratePerSecond개씩 토큰이 차고, 최대 burst개까지 모인다.
+// 토큰 수, 마지막 충전 시각을 따로 들고 있는 대신 "다음 토큰이 나오는 이론적 시각"(GCRA) 하나만 AtomicLong으로 들고 CAS로 바꾼다.
+// => 락 없이 여러 스레드가 동시에 꺼내도 된다. 결과는 토큰 버킷과 같다.
+public class TokenBucket {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong theoreticalArrival;
+
+    public TokenBucket(double ratePerSecond, int burst, long nowNanos) {
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("rate, burst는 0보다 커야 합니다.");
+        }
+        this.intervalNanos = (long) (1_000_000_000L / ratePerSecond);
+        this.burstNanos = intervalNanos * burst;
+        this.theoreticalArrival = new AtomicLong(nowNanos);
+    }
+
+    // 토큰을 하나 꺼낸다. 꺼냈으면 0, 없으면 다음 토큰까지 기다려야 하는 시간(nanos)
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long arrival = theoreticalArrival.get();
+            long next = Math.max(arrival, nowNanos) + intervalNanos;
+            long wait = next - nowNanos - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(arrival, next)) {
+                return 0;
+            }
+        }
+    }
+
+    // 꺼낸 토큰을 되돌린다. (토큰을 꺼낸 뒤 다른 이유로 요청이 거절된 경우)
+    public void refund() {
+        theoreticalArrival.addAndGet(-intervalNanos);
+    }
+}
@@ -0,0 +1,73 @@
+package jpabook.jpashop.sql;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+// 요청 하나에서 실행된 SQL 문 수, 모양(shape)별 횟수
+// 모양: 바인딩 값, 리터럴, in 절 길이를 지운 SQL => 같은 모양이 여러 번 나오면 N + 1 의심
+public class RequestSqlStats {
+
+    // 한 요청에서 모양을 기록하는 최대 개수 (모양 수는 보통 수십 개, 메모리 상한)
+    private static final int MAX_SHAPES = 1000;
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+\\b");
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final String handler;
+    private int statementCount;
+    private final Map<String, Integer> shapeCounts = new LinkedHashMap<>();
+
+    public RequestSqlStats(String handler) {
+        this.handler = handler;
+    }
+
+    void record(String sql) {
+        statementCount++;
+        String shape = shape(sql);
+        if (shapeCounts.containsKey(shape) || shapeCounts.size() < MAX_SHAPES) {
+            shapeCounts.merge(shape, 1, Integer::sum);
+        }
+    }
+
+    // 컨트롤러 핸들러 (예: OrderController.orderList)
+    public String getHandler() {
+        return handler;
+    }
+
+    public int getStatementCount() {
+        return statementCount;
+    }
+
+    public Map<String, Integer> getShapeCounts() {
+        return Collections.unmodifiableMap(shapeCounts);
+    }
+
+    // threshold번 이상 반복된 모양들 (N + 1 의심)
+    public Map<String, Integer> getRepeatedShapes(int threshold) {
+        Map<String, Integer> repeated = new LinkedHashMap<>();
+        shapeCounts.forEach((shape, count) -> {
+            if (count >= threshold) {
+                repeated.put(shape, count);
+            }
+        });
+        return repeated;
+    }
+
+    static String shape(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = IN_LIST.matcher(shape).replaceAll("(?)");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(handler).append(": ").append(statementCount).append(" statements");
+        shapeCounts.forEach((shape, count) -> sb.append("\n  ").append(count).append(" x ").append(shape));
+        return sb.toString();
+    }
+}
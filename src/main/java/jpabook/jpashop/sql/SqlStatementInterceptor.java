@@ -0,0 +1,52 @@
+package jpabook.jpashop.sql;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+// 컨트롤러 메서드 요청마다 SQL 집계를 연다. 이름: 컨트롤러 클래스.메서드 (예: MemberApiController.memberV2)
+// 화면 렌더링(OSIV 지연 로딩) 중의 쿼리까지 세도록 afterCompletion에서 닫는다.
+// 비동기 요청(DeferredResult)은 디스패치가 두 번(REQUEST, ASYNC)이고 preHandle도 두 번 불린다.
+// => 첫 디스패치가 끝나면 집계를 요청 속성에 맡겨두고, ASYNC 디스패치에서 이어서 센 뒤 한 번만 닫는다. (요청 하나에 지표 한 번)
+@RequiredArgsConstructor
+public class SqlStatementInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String SUSPENDED_STATS = SqlStatementInterceptor.class.getName() + ".stats";
+
+    private final SqlStatementRecorder sqlStatementRecorder;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            RequestSqlStats stats = (RequestSqlStats) request.getAttribute(SUSPENDED_STATS);
+            if (stats != null) {
+                request.removeAttribute(SUSPENDED_STATS);
+                sqlStatementRecorder.resume(stats);
+            }
+            return true;
+        }
+        if (handler instanceof HandlerMethod) {
+            HandlerMethod handlerMethod = (HandlerMethod) handler;
+            sqlStatementRecorder.begin(handlerMethod.getBeanType().getSimpleName() + "." + handlerMethod.getMethod().getName());
+        }
+        return true;
+    }
+
+    // 비동기 요청(DeferredResult)은 이 스레드에서의 처리가 여기서 끝난다. 닫지 않고 ASYNC 디스패치로 넘긴다.
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        RequestSqlStats stats = sqlStatementRecorder.suspend();
+        if (stats != null) {
+            request.setAttribute(SUSPENDED_STATS, stats);
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        sqlStatementRecorder.end();
+    }
+}
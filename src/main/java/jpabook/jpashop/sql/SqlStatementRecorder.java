@@ -0,0 +1,102 @@
+package jpabook.jpashop.sql;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 요청별 SQL 문 수 세기 + N + 1 감지
+// p6spy-spring-boot-starter는 JdbcEventListener 빈을 찾아서 모든 JDBC 실행 이벤트를 넘겨준다.
+// SqlStatementInterceptor가 요청 시작 시 컨트롤러 핸들러 이름으로 집계를 열고(begin), 끝나면 닫는다(end).
+// - 지표: sql.statements.per.request{handler} 히스토그램 => /actuator/metrics/sql.statements.per.request?tag=handler:OrderController.orderList
+// - 같은 모양의 쿼리가 n-plus-one-threshold번 이상 나오면 경고 로그 + sql.n_plus_one{handler} 카운터
+// - 핸들러별 마지막 요청의 집계를 남겨둔다. => 테스트에서 쿼리 수를 검증할 수 있다. (lastRequest)
+// 요청 밖(배경 작업, 서비스를 직접 부르는 테스트)의 쿼리는 세지 않는다.
+@Slf4j
+@Component
+public class SqlStatementRecorder extends SimpleJdbcEventListener {
+
+    // 히스토그램 구간 (요청당 쿼리 수)
+    private static final long[] STATEMENT_COUNT_BUCKETS = {1, 2, 3, 5, 10, 20, 50, 100};
+
+    private static final ThreadLocal<RequestSqlStats> CURRENT = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+    private final int nPlusOneThreshold;
+    private final Map<String, RequestSqlStats> lastRequests = new ConcurrentHashMap<>();
+
+    public SqlStatementRecorder(MeterRegistry meterRegistry,
+                                @Value("${jpashop.sql.n-plus-one-threshold:5}") int nPlusOneThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.nPlusOneThreshold = nPlusOneThreshold;
+    }
+
+    // 실행된 문마다 (executeBatch는 배치 한 번이 한 문)
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        record(statementInformation.getSql());
+    }
+
+    void record(String sql) {
+        RequestSqlStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.record(sql);
+        }
+    }
+
+    void begin(String handler) {
+        CURRENT.set(new RequestSqlStats(handler));
+    }
+
+    // 비동기 요청: 요청 스레드에서 집계를 떼어내고, 결과를 보내는 디스패치(ASYNC)에서 다시 붙인다.
+    RequestSqlStats suspend() {
+        RequestSqlStats stats = CURRENT.get();
+        CURRENT.remove();
+        return stats;
+    }
+
+    void resume(RequestSqlStats stats) {
+        CURRENT.set(stats);
+    }
+
+    void end() {
+        RequestSqlStats stats = CURRENT.get();
+        CURRENT.remove();
+        if (stats == null) {
+            return;
+        }
+
+        String handler = stats.getHandler();
+        DistributionSummary.builder("sql.statements.per.request")
+                .tag("handler", handler)
+                .sla(STATEMENT_COUNT_BUCKETS)
+                .register(meterRegistry)
+                .record(stats.getStatementCount());
+
+        Map<String, Integer> repeated = stats.getRepeatedShapes(nPlusOneThreshold);
+        if (!repeated.isEmpty()) {
+            Counter.builder("sql.n_plus_one").tag("handler", handler).register(meterRegistry).increment();
+            repeated.forEach((shape, count) ->
+                    log.warn("possible N+1 in {}: {} x {}", handler, count, shape));
+        }
+
+        lastRequests.put(handler, stats);
+    }
+
+    // 핸들러의 마지막 요청 집계, 없으면 null
+    public RequestSqlStats lastRequest(String handler) {
+        return lastRequests.get(handler);
+    }
+
+    public int getNPlusOneThreshold() {
+        return nPlusOneThreshold;
+    }
+}
@@ -0,0 +1,18 @@
+package jpabook.jpashop.sql;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@RequiredArgsConstructor
+public class SqlStatementWebConfig implements WebMvcConfigurer {
+
+    private final SqlStatementRecorder sqlStatementRecorder;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new SqlStatementInterceptor(sqlStatementRecorder));
+    }
+}
@@ -0,0 +1,29 @@
+package jpabook.jpashop.api;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ItemApiControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    public void 상품_가져오기_지원하지_않는_형식은_400() throws Exception {
+        mockMvc.perform(post("/api/v1/items/import").param("format", "xml").content("name,price"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(startsWith("지원하지 않는 형식입니다.")));
+    }
+}
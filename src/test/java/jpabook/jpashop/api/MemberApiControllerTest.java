@@ -0,0 +1,191 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.service.IdempotencyService;
+import jpabook.jpashop.service.MemberService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+public class MemberApiControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    MemberService memberService;
+
+    @Test
+    public void 회원목록_ETag_304() throws Exception {
+        // given
+        join("etag-member-1");
+        String etag = mockMvc.perform(get("/api/v2/members"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // when, then: 바뀐 게 없으면 본문 없이 304
+        mockMvc.perform(get("/api/v2/members").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        // 회원이 추가되면 새 ETag로 200
+        join("etag-member-2");
+        String newEtag = mockMvc.perform(get("/api/v2/members").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, newEtag);
+    }
+
+    @Test
+    public void 회원목록_이름수정_ETag_변경() throws Exception {
+        // given
+        Long id = join("etag-member-3");
+        String etag = mockMvc.perform(get("/api/v2/members"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // when
+        memberService.update(id, "etag-member-3-renamed");
+
+        // then
+        mockMvc.perform(get("/api/v2/members").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void 응답형식이_다르면_ETag도_다름() throws Exception {
+        join("etag-member-4");
+
+        String v1 = mockMvc.perform(get("/api/v1/members")).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String v2 = mockMvc.perform(get("/api/v2/members")).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        assertNotEquals(v1, v2);
+    }
+
+    @Test
+    public void 회원목록_v1_응답에_생성_수정_시각은_없다() throws Exception {
+        join("json-member-1");
+
+        mockMvc.perform(get("/api/v1/members"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").exists())
+                .andExpect(jsonPath("$[0].createdDate").doesNotExist())
+                .andExpect(jsonPath("$[0].lastModifiedDate").doesNotExist());
+    }
+
+    @Test
+    public void 회원_내보내기_NDJSON() throws Exception {
+        // given
+        Long id = join("export-member-1");
+
+        // when
+        String body = mockMvc.perform(get("/api/v1/members/export").param("format", "ndjson"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, startsWith("application/x-ndjson")))
+                .andReturn().getResponse().getContentAsString();
+
+        // then: 한 줄에 회원 하나
+        String line = Arrays.stream(body.split("\n"))
+                .filter(l -> l.contains("\"id\":" + id + ","))
+                .findFirst().orElseThrow(AssertionError::new);
+        assertTrue(line.startsWith("{") && line.endsWith("}"));
+        assertTrue(line.contains("\"name\":\"export-member-1\""));
+    }
+
+    @Test
+    public void 회원_내보내기_CSV() throws Exception {
+        // given: 쉼표, 따옴표가 들어간 값
+        Member member = new Member();
+        member.setName("export-member-2");
+        member.setAddress(new Address("서울", "강남대로 1, \"A\"동", "123-123"));
+        Long id = memberService.join(member);
+
+        // when
+        String body = mockMvc.perform(get("/api/v1/members/export").param("format", "csv"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, startsWith("text/csv")))
+                .andReturn().getResponse().getContentAsString();
+
+        // then
+        List<String> lines = Arrays.asList(body.split("\r\n"));
+        assertEquals("id,name,city,street,zipcode", lines.get(0));
+        assertThat(lines, hasItem(id + ",export-member-2,서울,\"강남대로 1, \"\"A\"\"동\",123-123"));
+    }
+
+    @Test
+    public void 회원_내보내기_지원하지_않는_형식() throws Exception {
+        mockMvc.perform(get("/api/v1/members/export").param("format", "xml"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(startsWith("지원하지 않는 형식입니다.")));
+    }
+
+    @Test
+    public void 회원가입_잘못된_멱등_키() throws Exception {
+        mockMvc.perform(post("/api/v2/members")
+                        .header(IdempotencyService.HEADER, String.join("", Collections.nCopies(101, "k")))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"bad-key-member\"}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void 회원가입_멱등_키_재시도() throws Exception {
+        // given
+        String body = "{\"name\": \"idempotent-member\"}";
+        String first = mockMvc.perform(post("/api/v2/members")
+                        .header(IdempotencyService.HEADER, "member-retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // when: 같은 키로 재시도 => 중복 회원 예외 없이 처음과 같은 응답
+        String retry = mockMvc.perform(post("/api/v2/members")
+                        .header(IdempotencyService.HEADER, "member-retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // then
+        assertEquals(first, retry);
+        assertEquals(1, memberService.findMembers().stream()
+                .filter(m -> "idempotent-member".equals(m.getName()))
+                .count());
+
+        // 같은 키로 다른 내용 => 422
+        mockMvc.perform(post("/api/v2/members")
+                        .header(IdempotencyService.HEADER, "member-retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"other-member\"}"))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
+    private Long join(String name) {
+        Member member = new Member();
+        member.setName(name);
+        return memberService.join(member);
+    }
+}
@@ -0,0 +1,49 @@
+package jpabook.jpashop.api;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+public class OrderApiControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    public void 주문목록_잘못된_페이지_토큰은_400() throws Exception {
+        mockMvc.perform(get("/api/v2/orders").param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("잘못된 페이지 토큰입니다."));
+    }
+
+    @Test
+    public void 장바구니_주문_없는_회원은_400() throws Exception {
+        mockMvc.perform(post("/api/v1/orders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"memberId\": -1, \"orderItems\": [{\"itemId\": -1, \"count\": 1}]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(startsWith("존재하지 않는 회원입니다.")));
+    }
+
+    @Test
+    public void 없는_번호표는_404() throws Exception {
+        mockMvc.perform(get("/api/v1/orders/tickets/no-such-ticket"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().string(startsWith("없거나 보관 기간이 지난 번호표입니다.")));
+    }
+}
@@ -0,0 +1,112 @@
+package jpabook.jpashop.datasource;
+
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+// 읽기/쓰기 분리를 켠 전체 설정(DataSourceRoutingConfig)으로 JPA 트랜잭션이 어디서 읽는지 확인
+// 주 DB, 복제본이 같은 H2 메모리 DB를 본다. (스키마, 데이터 공유)
+// 복제본 커넥션은 열릴 때 세션 변수 @ROUTE를 'replica'로 설정하므로, 어느 쪽 커넥션인지 구분할 수 있다.
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-it;DB_CLOSE_DELAY=-1",
+        "jpashop.datasource.routing.enabled=true",
+        "jpashop.datasource.routing.replica-urls=jdbc:h2:mem:routing-it;DB_CLOSE_DELAY=-1;INIT=SET @ROUTE='replica'",
+        "jpashop.datasource.routing.read-your-writes-millis=0"})
+public class DataSourceRoutingIntegrationTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    EntityManagerFactory emf;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    public void 읽기_전용_트랜잭션은_복제본_쓰기는_주_DB() throws Exception {
+        assertEquals("replica", inTransaction(true, this::currentRoute));
+        assertEquals("primary", inTransaction(false, this::currentRoute));
+    }
+
+    @Test
+    public void 캐시를_채우는_조회는_주_DB() throws Exception {
+        // 읽기 전용 트랜잭션이라도 주 DB로
+        assertEquals("primary", inTransaction(true, () -> ReplicaReads.fromPrimary(this::currentRoute)));
+
+        // 이미 복제본 커넥션을 잡은 트랜잭션은 표시된다. => 캐시에 넣지 않는다.
+        assertTrue(inTransaction(true, () -> {
+            currentRoute();
+            return ReplicaReads.fromPrimary(this::currentRoute).equals("replica")
+                    && ReplicaReads.isCurrentTransactionOnReplica();
+        }));
+        assertFalse(inTransaction(false, () -> {
+            currentRoute();
+            return ReplicaReads.isCurrentTransactionOnReplica();
+        }));
+    }
+
+    @Test
+    public void 복제본에서_읽은_엔티티는_2차_캐시에_넣지_않는다() throws Exception {
+        // given
+        Long itemId = inTransaction(false, () -> {
+            Book book = new Book();
+            book.setName("routing book");
+            book.setPrice(10000);
+            book.setStockQuantity(10);
+            em.persist(book);
+            return book.getId();
+        });
+        emf.getCache().evict(Item.class);
+
+        // when: 복제본에서 읽기
+        inTransaction(true, () -> em.find(Item.class, itemId));
+
+        // then
+        assertFalse(emf.getCache().contains(Item.class, itemId));
+
+        // 주 DB에서 읽으면 캐시에 들어간다.
+        inTransaction(false, () -> em.find(Item.class, itemId));
+        assertTrue(emf.getCache().contains(Item.class, itemId));
+    }
+
+    @Test
+    public void OSIV_세션에서도_트랜잭션마다_커넥션을_다시_고른다() throws Exception {
+        // given: OSIV처럼 요청 내내 열려 있는 EntityManager
+        EntityManager requestEntityManager = emf.createEntityManager();
+        TransactionSynchronizationManager.bindResource(emf, new EntityManagerHolder(requestEntityManager));
+        try {
+            // then: 트랜잭션이 끝날 때마다 커넥션을 반납하므로, 다음 트랜잭션은 다시 고른다.
+            assertEquals("replica", inTransaction(true, this::currentRoute));
+            assertEquals("primary", inTransaction(false, this::currentRoute));
+            assertEquals("replica", inTransaction(true, this::currentRoute));
+        } finally {
+            TransactionSynchronizationManager.unbindResource(emf);
+            requestEntityManager.close();
+        }
+    }
+
+    private <T> T inTransaction(boolean readOnly, Supplier<T> action) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate.execute(status -> action.get());
+    }
+
+    private String currentRoute() {
+        Object route = em.createNativeQuery("select @ROUTE").getSingleResult();
+        return route == null ? "primary" : route.toString();
+    }
+}
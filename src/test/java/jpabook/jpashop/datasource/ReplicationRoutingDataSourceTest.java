@@ -0,0 +1,109 @@
+package jpabook.jpashop.datasource;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+// H2 메모리 DB 두 개를 주 DB, 복제본으로 두고 어느 쪽 커넥션을 받는지 확인
+// (운영과 같이 LazyConnectionDataSourceProxy + 트랜잭션 매니저를 거친다.)
+public class ReplicationRoutingDataSourceTest {
+
+    private final DataSource primary = new DriverManagerDataSource("jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1", "sa", "");
+    private final FlakyDataSource replica = new FlakyDataSource(
+            new DriverManagerDataSource("jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1", "sa", ""));
+
+    @After
+    public void tearDown() {
+        ReadYourWrites.clear();
+    }
+
+    @Test
+    public void 읽기_전용_트랜잭션은_복제본으로() throws Exception {
+        // given
+        ReplicationRoutingDataSource routing = routing(0);
+
+        // then
+        assertTrue(urlOf(routing, true).contains("routing-replica"));
+        assertTrue(urlOf(routing, false).contains("routing-primary"));
+    }
+
+    @Test
+    public void 복제본이_죽으면_주_DB로_읽고_살아나면_다시_복제본으로() throws Exception {
+        // given
+        ReplicationRoutingDataSource routing = routing(0);
+        replica.down = true;
+
+        // when: 연결 실패 => 복제본을 내리고 주 DB로
+        assertTrue(urlOf(routing, true).contains("routing-primary"));
+        assertEquals("primary", routing.currentRoute());
+
+        // health check: 아직 죽어 있으면 그대로
+        routing.checkReplicas();
+        assertTrue(urlOf(routing, true).contains("routing-primary"));
+
+        // then: 살아나면 다음 health check부터 복제본으로
+        replica.down = false;
+        routing.checkReplicas();
+        assertTrue(urlOf(routing, true).contains("routing-replica"));
+    }
+
+    @Test
+    public void 쓰기_후에는_잠시_주_DB에서_읽는다() throws Exception {
+        // given
+        ReplicationRoutingDataSource routing = routing(300);
+
+        // when: 쓰기 트랜잭션 커밋
+        urlOf(routing, false);
+
+        // then: 읽기 전용이라도 잠시 주 DB로, 시간이 지나면 복제본으로
+        assertTrue(urlOf(routing, true).contains("routing-primary"));
+        Thread.sleep(400);
+        assertTrue(urlOf(routing, true).contains("routing-replica"));
+    }
+
+    private ReplicationRoutingDataSource routing(long readYourWritesMillis) {
+        return new ReplicationRoutingDataSource(primary, Collections.singletonMap("replica-0", replica), readYourWritesMillis);
+    }
+
+    // 트랜잭션 안에서 쿼리를 실행하고, 그 커넥션의 DB URL을 반환
+    private String urlOf(ReplicationRoutingDataSource routing, boolean readOnly) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routing);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transactionTemplate.setReadOnly(readOnly);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.queryForObject("select 1", Integer.class);
+            return jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getURL());
+        });
+    }
+
+    // 장애를 흉내내는 데이터소스
+    private static class FlakyDataSource extends DelegatingDataSource {
+        volatile boolean down;
+
+        FlakyDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (down) {
+                throw new SQLException("replica is down");
+            }
+            return super.getConnection();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package jpabook.jpashop.domain.item;
+
+import jpabook.jpashop.exception.NotEnoughStockException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ItemHotModeTest {
+
+    @Test
+    public void 인기상품_모드_재고_분배() throws Exception {
+        // given
+        Book book = createBook(10);
+
+        // when
+        book.enableHotMode(4);
+
+        // then
+        assertTrue(book.isHotItem());
+        assertEquals(4, book.getStockShards().size());
+        assertEquals("조각들의 합이 재고 수량이다.", 10, book.getStockQuantity());
+        assertEquals(3, book.getStockShards().get(0).getQuantity());
+        assertEquals(2, book.getStockShards().get(3).getQuantity());
+    }
+
+    @Test
+    public void 인기상품_재고_차감_복구() throws Exception {
+        // given
+        Book book = createBook(10);
+        book.enableHotMode(4);
+
+        // when: 한 조각(최대 3개)보다 많이 주문해도 여러 조각에서 나눠서 차감
+        book.removeStock(5);
+        book.removeStock(1);
+        book.addStock(2);
+
+        // then
+        assertEquals(6, book.getStockQuantity());
+        for (ItemStockShard shard : book.getStockShards()) {
+            assertTrue(shard.getQuantity() >= 0);
+        }
+    }
+
+    @Test(expected = NotEnoughStockException.class)
+    public void 인기상품_재고수량초과() throws Exception {
+        // given
+        Book book = createBook(10);
+        book.enableHotMode(4);
+
+        // when
+        book.removeStock(11);
+
+        // then
+        fail("재고 수량 부족 예외가 발생해야 한다.");
+    }
+
+    @Test
+    public void 인기상품_모드_끄기() throws Exception {
+        // given
+        Book book = createBook(10);
+        book.enableHotMode(4);
+        book.removeStock(3);
+
+        // when
+        book.disableHotMode();
+
+        // then
+        assertFalse(book.isHotItem());
+        assertTrue(book.getStockShards().isEmpty());
+        assertEquals(7, book.getStockQuantity());
+    }
+
+    private Book createBook(int stockQuantity) {
+        Book book = new Book();
+        book.setName("hot book");
+        book.setPrice(10000);
+        book.setStockQuantity(stockQuantity);
+        return book;
+    }
+}
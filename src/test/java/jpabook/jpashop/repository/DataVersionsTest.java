@@ -0,0 +1,58 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.DataVersion;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class DataVersionsTest {
+
+    @Autowired
+    DataVersions dataVersions;
+    @Autowired
+    DataVersionRepository dataVersionRepository;
+
+    @Test
+    public void 시작할_때_모든_조각_행을_만든다() throws Exception {
+        // when: 다른 노드가 다시 등록해도
+        dataVersions.register();
+
+        // then: 버전마다 조각 행이 모두 한 번씩 있다. => 올릴 때는 update만 한다.
+        for (String name : DataVersion.names()) {
+            List<String> shardNames = new ArrayList<>();
+            for (int shard = 0; shard < DataVersions.SHARDS; shard++) {
+                shardNames.add(name + "#" + shard);
+            }
+            assertEquals(name, DataVersions.SHARDS, dataVersionRepository.findVersions(shardNames).size());
+        }
+    }
+
+    @Test
+    public void 버전_올리기() throws Exception {
+        // given
+        long before = dataVersions.current(DataVersion.ITEM_LIST);
+
+        // when
+        dataVersions.bumpNow(DataVersion.ITEM_LIST);
+        dataVersions.bumpNow(DataVersion.ITEM_LIST);
+
+        // then
+        assertEquals(before + 2, dataVersions.current(DataVersion.ITEM_LIST));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void 등록되지_않은_버전은_올릴_수_없다() throws Exception {
+        dataVersions.bumpNow("no-such-version");
+    }
+}
@@ -0,0 +1,76 @@
+package jpabook.jpashop.repository;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MemberNameFilterTest {
+
+    @Test
+    public void 있는_이름은_항상_true() throws Exception {
+        // given
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            names.add("회원" + i);
+        }
+        MemberNameFilter filter = new MemberNameFilter();
+        filter.rebuild(names);
+
+        // then: 블룸 필터는 있는 이름을 없다고 하지 않는다.
+        for (String name : names) {
+            assertTrue(name, filter.mightContain(name));
+        }
+    }
+
+    @Test
+    public void 없는_이름_오탐률() throws Exception {
+        // given
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            names.add("member-" + i);
+        }
+        MemberNameFilter filter = new MemberNameFilter();
+        filter.rebuild(names);
+
+        // when
+        int falsePositives = 0;
+        int tries = 100_000;
+        for (int i = 0; i < tries; i++) {
+            if (filter.mightContain("new-member-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        // then: 2배 크기로 만들었으므로 1%보다 훨씬 낮아야 한다.
+        assertTrue("오탐률: " + falsePositives + "/" + tries, falsePositives < tries / 100);
+    }
+
+    @Test
+    public void 가입한_이름_추가() throws Exception {
+        // given
+        MemberNameFilter filter = new MemberNameFilter();
+        filter.rebuild(Arrays.asList("kim", "lee"));
+
+        // when
+        filter.put("park");
+
+        // then
+        assertTrue(filter.mightContain("park"));
+        assertTrue(filter.mightContain("kim"));
+    }
+
+    @Test
+    public void 준비_전에는_모두_있을수도_있음() throws Exception {
+        MemberNameFilter filter = new MemberNameFilter();
+        assertFalse(filter.isReady());
+        assertTrue("만들기 전에는 DB 확인을 건너뛰면 안된다.", filter.mightContain("kim"));
+
+        filter.rebuild(Collections.emptyList());
+        assertTrue(filter.isReady());
+    }
+}
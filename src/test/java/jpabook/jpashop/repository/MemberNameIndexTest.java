@@ -0,0 +1,109 @@
+package jpabook.jpashop.repository;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class MemberNameIndexTest {
+
+    @Test
+    public void 부분_이름_검색() throws Exception {
+        // given
+        MemberNameIndex index = new MemberNameIndex();
+        index.rebuild(Arrays.asList(
+                new Object[]{1L, "김영한"},
+                new Object[]{2L, "김영희"},
+                new Object[]{3L, "박영한"},
+                new Object[]{4L, "kim"}));
+
+        // then
+        assertTrue(index.isReady());
+        assertEquals(new HashSet<>(Arrays.asList(1L, 3L)), index.findMemberIds("영한"));
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), index.findMemberIds("김영"));
+        assertEquals(Collections.singleton(2L), index.findMemberIds("김영희"));
+        assertEquals("한 글자 검색", new HashSet<>(Arrays.asList(1L, 2L)), index.findMemberIds("김"));
+        assertEquals("like 검색처럼 대소문자를 구분한다.", Collections.emptySet(), index.findMemberIds("KIM"));
+        assertEquals(Collections.emptySet(), index.findMemberIds("이순신"));
+    }
+
+    @Test
+    public void 조각이_모두_있어도_순서가_다르면_제외() throws Exception {
+        // given: "abc"의 조각 ab, bc를 모두 가졌지만 abc를 포함하지 않는 이름
+        MemberNameIndex index = new MemberNameIndex();
+        index.rebuild(Collections.singletonList(new Object[]{1L, "bcab"}));
+
+        // then
+        assertEquals(Collections.emptySet(), index.findMemberIds("abc"));
+    }
+
+    @Test
+    public void 이름_수정() throws Exception {
+        // given
+        MemberNameIndex index = new MemberNameIndex();
+        index.rebuild(Collections.singletonList(new Object[]{1L, "김영한"}));
+
+        // when
+        index.put(1L, "박지성");
+
+        // then
+        assertEquals("이전 이름으로는 찾을 수 없다.", Collections.emptySet(), index.findMemberIds("영한"));
+        assertEquals(Collections.singleton(1L), index.findMemberIds("지성"));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void 회원_목록_버전이_맞을_때만_색인으로_검색() throws Exception {
+        // given: 회원 목록 버전 5일 때 만든 색인
+        MemberNameIndex index = new MemberNameIndex();
+        index.rebuild(() -> 5L, () -> Collections.singletonList(new Object[]{1L, "김영한"}));
+
+        // then
+        assertEquals(Collections.singleton(1L), index.findMemberIdsIfCurrent("영한", () -> 5L));
+        assertNull("다른 서버가 회원을 바꿨으면 빠진 회원이 있을 수 있다.", index.findMemberIdsIfCurrent("영한", () -> 6L));
+
+        // when: 이 서버에서 가입 (버전도 같이 올라간다)
+        index.put(2L, "박영한");
+        index.memberListChanged();
+
+        // then
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), index.findMemberIdsIfCurrent("영한", () -> 6L));
+        assertNull(index.findMemberIdsIfCurrent("영한", () -> 7L));
+    }
+
+    @Test
+    public void 버전_없이_만든_색인은_확인할_수_없다() throws Exception {
+        // given
+        MemberNameIndex index = new MemberNameIndex();
+        index.rebuild(Collections.singletonList(new Object[]{1L, "김영한"}));
+
+        // then
+        assertNull(index.findMemberIdsIfCurrent("영한", () -> 0L));
+        assertEquals("찾은 회원이 없으면 버전을 읽지 않는다.", Collections.emptySet(),
+                index.findMemberIdsIfCurrent("이순신", () -> {
+                    throw new AssertionError();
+                }));
+    }
+
+    @Test
+    public void 다시_만드는_중에_들어온_가입도_반영() throws Exception {
+        // given
+        MemberNameIndex index = new MemberNameIndex();
+        index.rebuild(Collections.singletonList(new Object[]{1L, "김영한"}));
+
+        // when: 전체 회원을 읽는 사이에 가입
+        index.rebuild(() -> {
+            index.put(2L, "박지성");
+            // 다시 만드는 중에도 검색은 이전 색인으로
+            assertEquals(Collections.singleton(1L), index.findMemberIds("영한"));
+            return Collections.singletonList(new Object[]{1L, "김영한"});
+        });
+
+        // then
+        assertEquals(Collections.singleton(2L), index.findMemberIds("지성"));
+        assertEquals(2, index.size());
+    }
+}
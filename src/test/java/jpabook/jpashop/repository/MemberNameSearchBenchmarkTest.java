@@ -0,0 +1,100 @@
+package jpabook.jpashop.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+// 회원 100만 명에서 like '%이름%' 검색과 이름 색인 검색 비교
+// 오래 걸리므로 평소에는 건너뛰고, -Dbenchmark=true 를 주었을 때만 실행한다.
+// ./gradlew test --tests '*MemberNameSearchBenchmarkTest' -Dbenchmark=true
+@Slf4j
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional // 넣은 회원들은 끝나면 롤백
+public class MemberNameSearchBenchmarkTest {
+
+    private static final int MEMBER_COUNT = 1_000_000;
+    private static final int ROUNDS = 20;
+    // 시퀀스로 발급되는 id와 겹치지 않도록
+    private static final long ID_OFFSET = 100_000_000L;
+
+    private static final String[] FAMILY = {"김", "이", "박", "최", "정", "강", "조", "윤", "장", "임"};
+    private static final String[] GIVEN = {"민준", "서연", "도윤", "지우", "하준", "서윤", "시우", "하은", "지호", "민서"};
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Before
+    public void checkEnabled() {
+        Assume.assumeTrue("-Dbenchmark=true 일 때만 실행", Boolean.getBoolean("benchmark"));
+    }
+
+    @Test
+    public void 회원_이름_검색_like_vs_색인() throws Exception {
+        // given: 회원 100만 명
+        insertMembers();
+
+        long buildStart = System.nanoTime();
+        MemberNameIndex index = new MemberNameIndex();
+        index.rebuild(memberRepository.findAllIdAndNames());
+        long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+
+        String[] keywords = {"윤12345", "서연99", "박하준7777"};
+        for (String keyword : keywords) {
+            // when
+            List<Long> likeIds = new ArrayList<>();
+            long likeNanos = 0;
+            for (int i = 0; i < ROUNDS; i++) {
+                long start = System.nanoTime();
+                likeIds = jdbcTemplate.queryForList(
+                        "select member_id from member where name like ?", Long.class, "%" + keyword + "%");
+                likeNanos += System.nanoTime() - start;
+            }
+
+            Set<Long> indexIds = null;
+            long indexNanos = 0;
+            for (int i = 0; i < ROUNDS; i++) {
+                long start = System.nanoTime();
+                indexIds = index.findMemberIds(keyword);
+                indexNanos += System.nanoTime() - start;
+            }
+
+            // then
+            assertEquals("like 검색과 결과가 같아야 한다.", likeIds.size(), indexIds.size());
+            assertTrue(indexIds.containsAll(likeIds));
+            log.info("[member name search] members={}, keyword={}, matches={}, like avg={}us, index avg={}us, index build={}ms",
+                    MEMBER_COUNT, keyword, likeIds.size(),
+                    likeNanos / ROUNDS / 1000, indexNanos / ROUNDS / 1000, buildMillis);
+        }
+    }
+
+    private void insertMembers() {
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 0; i < MEMBER_COUNT; i++) {
+            String name = FAMILY[i % FAMILY.length] + GIVEN[(i / FAMILY.length) % GIVEN.length] + i;
+            batch.add(new Object[]{ID_OFFSET + i, name});
+            if (batch.size() == 10_000) {
+                jdbcTemplate.batchUpdate("insert into member (member_id, name) values (?, ?)", batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate("insert into member (member_id, name) values (?, ?)", batch);
+        }
+    }
+}
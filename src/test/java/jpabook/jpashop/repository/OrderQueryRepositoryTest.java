@@ -0,0 +1,269 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.DataVersion;
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.exception.InvalidRequestException;
+import jpabook.jpashop.service.MemberService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class OrderQueryRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    OrderQueryRepository orderQueryRepository;
+    @Autowired
+    MemberService memberService;
+    @Autowired
+    DataVersions dataVersions;
+
+    @Test
+    public void 주문목록_조회_쿼리수는_주문수와_무관() throws Exception {
+        // given
+        createOrders("small", 3);
+        createOrders("large", 30);
+        em.flush();
+        em.clear();
+
+        // when
+        long smallCount = countStatements("small", 3);
+        long largeCount = countStatements("large", 30);
+
+        // then
+        assertEquals("주문 + 대표 주문상품, 쿼리는 2번이어야 한다.", 2, smallCount);
+        assertEquals("주문 수가 늘어나도 쿼리 수는 그대로여야 한다.", smallCount, largeCount);
+    }
+
+    @Test
+    public void 주문목록_대표상품() throws Exception {
+        // given
+        Member member = createMember("rep-member");
+        Book first = createBook("first book", 10000);
+        Book second = createBook("second book", 20000);
+        Order order = Order.createOrder(member, new Delivery(),
+                OrderItem.createOrderItem(first, first.getPrice(), 2),
+                OrderItem.createOrderItem(second, second.getPrice(), 1));
+        em.persist(order);
+        em.flush();
+        em.clear();
+
+        // when
+        List<OrderListDto> orders = orderQueryRepository.findOrderListPage(search("rep-member"), null, 10).getContent();
+
+        // then
+        assertEquals(1, orders.size());
+        OrderListDto dto = orders.get(0);
+        assertEquals(order.getId(), dto.getOrderId());
+        assertEquals("rep-member", dto.getMemberName());
+        assertEquals("첫 번째 주문상품이 대표 상품이다.", "first book", dto.getItemName());
+        assertEquals(10000, dto.getOrderPrice());
+        assertEquals(2, dto.getCount());
+    }
+
+    @Test
+    public void 주문목록_키셋_페이징() throws Exception {
+        // given
+        createOrders("page", 5);
+        em.flush();
+        em.clear();
+
+        // when
+        OrderPage<OrderListDto> first = orderQueryRepository.findOrderListPage(search("page"), null, 2);
+        OrderPage<OrderListDto> second = orderQueryRepository.findOrderListPage(search("page"), OrderCursor.decode(first.getNextCursor()), 2);
+        OrderPage<OrderListDto> third = orderQueryRepository.findOrderListPage(search("page"), OrderCursor.decode(second.getNextCursor()), 2);
+
+        // then
+        assertEquals(2, first.getContent().size());
+        assertEquals(2, second.getContent().size());
+        assertEquals(1, third.getContent().size());
+        assertFalse("마지막 페이지에는 다음 토큰이 없다.", third.hasNext());
+
+        List<Long> ids = new ArrayList<>();
+        for (OrderPage<OrderListDto> page : Arrays.asList(first, second, third)) {
+            for (OrderListDto dto : page.getContent()) {
+                ids.add(dto.getOrderId());
+            }
+        }
+        assertEquals("페이지 간 중복, 누락이 없어야 한다.", 5, new HashSet<>(ids).size());
+        for (int i = 1; i < ids.size(); i++) {
+            // 같은 시각에 생성된 주문은 id 역순
+            assertTrue("주문은 (주문시간, id) 역순이다.", ids.get(i - 1) > ids.get(i));
+        }
+    }
+
+    @Test
+    public void 키셋_깊은_페이지도_쿼리수_동일() throws Exception {
+        // given
+        createOrders("deep", 12);
+        em.flush();
+        em.clear();
+
+        // when
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        OrderPage<OrderListDto> page = orderQueryRepository.findOrderListPage(search("deep"), null, 3);
+        while (page.hasNext()) {
+            em.clear();
+            statistics.clear();
+            page = orderQueryRepository.findOrderListPage(search("deep"), OrderCursor.decode(page.getNextCursor()), 3);
+            assertEquals("몇 번째 페이지든 이름 색인 확인(회원 목록 버전) + 쿼리 2번이다.", 3, statistics.getPrepareStatementCount());
+        }
+        statistics.setStatisticsEnabled(false);
+    }
+
+    @Test
+    public void 주문_주문상품_페이지는_쿼리3번() throws Exception {
+        // given: 주문마다 주문상품 2개, 상품도 모두 다르게
+        for (int i = 0; i < 10; i++) {
+            Member member = createMember("batch-" + i);
+            Book first = createBook("batch book A" + i, 10000);
+            Book second = createBook("batch book B" + i, 20000);
+            em.persist(Order.createOrder(member, new Delivery(),
+                    OrderItem.createOrderItem(first, first.getPrice(), 1),
+                    OrderItem.createOrderItem(second, second.getPrice(), 1)));
+        }
+        em.flush();
+        em.clear();
+
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        // when: 주문상품, 상품까지 모두 접근
+        OrderPage<Order> page = orderQueryRepository.findOrderPage(search("batch"), null, 10);
+        int lines = 0;
+        for (Order order : page.getContent()) {
+            for (OrderItem orderItem : order.getOrderItems()) {
+                assertNotNull(orderItem.getItem().getName());
+                lines++;
+            }
+        }
+
+        // then
+        long count = statistics.getPrepareStatementCount();
+        statistics.setStatisticsEnabled(false);
+        assertEquals(10, page.getContent().size());
+        assertEquals(20, lines);
+        assertEquals("이름 색인 확인(회원 목록 버전), 주문(+회원, 배송), 주문상품, 상품 => 쿼리 4번", 4, count);
+    }
+
+    @Test
+    public void 이름_색인에_없는_회원도_검색() throws Exception {
+        // given: 다른 서버, 직접 SQL로 가입해서 이 서버의 이름 색인에 없는 회원
+        Member member = new Member();
+        member.setName("index-missing-member");
+        em.persist(member);
+        Book book = createBook("missing book", 10000);
+        em.persist(Order.createOrder(member, new Delivery(), OrderItem.createOrderItem(book, book.getPrice(), 1)));
+        em.flush();
+        em.clear();
+
+        // when
+        List<OrderListDto> orders = orderQueryRepository.findOrderListPage(search("index-missing"), null, 10).getContent();
+
+        // then: 색인에서 못 찾으면 like 검색으로 찾는다.
+        assertEquals(1, orders.size());
+        assertEquals("index-missing-member", orders.get(0).getMemberName());
+    }
+
+    @Test
+    public void 이름_색인에_일부_회원만_있어도_모두_검색() throws Exception {
+        // given: 이 서버에서 가입한 회원(색인에 있음) + 다른 서버에서 가입한 회원(색인에 없음, 회원 목록 버전만 올림)
+        Member local = createMember("partial-index-local");
+        Member remote = new Member();
+        remote.setName("partial-index-remote");
+        em.persist(remote);
+        dataVersions.bump(DataVersion.MEMBER_LIST);
+        for (Member member : Arrays.asList(local, remote)) {
+            Book book = createBook("partial book", 10000);
+            em.persist(Order.createOrder(member, new Delivery(), OrderItem.createOrderItem(book, book.getPrice(), 1)));
+        }
+        em.flush();
+        em.clear();
+
+        // when
+        List<OrderListDto> orders = orderQueryRepository.findOrderListPage(search("partial-index"), null, 10).getContent();
+
+        // then: 색인이 뒤처졌으므로 색인의 회원 id로 좁히지 않고 like 검색으로 둘 다 찾는다.
+        assertEquals(2, orders.size());
+        assertEquals(new HashSet<>(Arrays.asList("partial-index-local", "partial-index-remote")),
+                orders.stream().map(OrderListDto::getMemberName).collect(Collectors.toSet()));
+    }
+
+    @Test(expected = InvalidRequestException.class)
+    public void 잘못된_페이지_토큰() throws Exception {
+        OrderCursor.decode("not-a-cursor");
+    }
+
+    private long countStatements(String memberName, int expectedRows) {
+        em.clear();
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        List<OrderListDto> orders = orderQueryRepository.findOrderListPage(search(memberName), null, 100).getContent();
+
+        long count = statistics.getPrepareStatementCount();
+        statistics.setStatisticsEnabled(false);
+        assertEquals(expectedRows, orders.size());
+        return count;
+    }
+
+    private OrderSearch search(String memberName) {
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberName(memberName);
+        return orderSearch;
+    }
+
+    // 주문마다 회원, 상품을 따로 만들어서 지연 로딩이었다면 주문 수만큼 쿼리가 나가도록 한다.
+    private void createOrders(String prefix, int size) {
+        for (int i = 0; i < size; i++) {
+            Member member = createMember(prefix + "-" + i);
+            Book book = createBook(prefix + " book " + i, 10000);
+            OrderItem orderItem = OrderItem.createOrderItem(book, book.getPrice(), 1);
+            em.persist(Order.createOrder(member, new Delivery(), orderItem));
+        }
+    }
+
+    private Member createMember(String name) {
+        Member member = new Member();
+        member.setName(name);
+        member.setAddress(new Address("서울", "경기", "123-123"));
+        // 서비스를 통해 가입하면 이름 색인에도 바로 반영되어 회원 id 검색(in 절)을 탄다.
+        memberService.join(member);
+        return member;
+    }
+
+    private Book createBook(String name, int price) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(price);
+        book.setStockQuantity(100);
+        em.persist(book);
+        return book;
+    }
+}
@@ -0,0 +1,253 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Category;
+import jpabook.jpashop.domain.DataVersion;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.exception.InvalidRequestException;
+import jpabook.jpashop.exception.NotFoundException;
+import jpabook.jpashop.repository.CategoryTree;
+import jpabook.jpashop.repository.DataVersions;
+import jpabook.jpashop.repository.ItemPage;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class CategoryServiceTest {
+
+    @Autowired
+    CategoryService categoryService;
+    @Autowired
+    DataVersions dataVersions;
+    @Autowired
+    EntityManager em;
+
+    @Test
+    public void 카테고리_경로() throws Exception {
+        // given
+        Long books = categoryService.addCategory("도서", null);
+        Long fiction = categoryService.addCategory("소설", books);
+        Long mystery = categoryService.addCategory("추리", fiction);
+
+        // then
+        assertEquals("/" + books + "/", em.find(Category.class, books).getPath());
+        assertEquals("/" + books + "/" + fiction + "/" + mystery + "/", em.find(Category.class, mystery).getPath());
+    }
+
+    @Test
+    public void 카테고리_트리_스냅샷() throws Exception {
+        // given
+        Long books = categoryService.addCategory("도서", null);
+        Long fiction = categoryService.addCategory("소설", books);
+        Long mystery = categoryService.addCategory("추리", fiction);
+        Long essay = categoryService.addCategory("에세이", books);
+        Long music = categoryService.addCategory("음반", null);
+
+        // when
+        CategoryTree tree = categoryService.getTree();
+
+        // then
+        assertEquals(2, tree.getRoots().size());
+        assertEquals(new HashSet<>(Arrays.asList(books, fiction, mystery, essay)), new HashSet<>(tree.subtreeIds(books)));
+        assertEquals(2, tree.find(mystery).getDepth());
+        assertEquals(Arrays.asList("도서", "소설", "추리"),
+                tree.ancestorsAndSelf(mystery).stream().map(CategoryTree.Node::getName).collect(Collectors.toList()));
+        assertTrue(tree.find(music).getChildren().isEmpty());
+
+        // 카테고리가 추가되면 스냅샷을 다시 만든다.
+        Long poem = categoryService.addCategory("시", books);
+        assertNotSame(tree, categoryService.getTree());
+        assertNotNull(categoryService.getTree().find(poem));
+    }
+
+    @Test
+    public void 하위_카테고리_상품은_쿼리한번() throws Exception {
+        // given: 도서 > 소설 > 추리 > 고전추리, 단계마다 상품
+        Long books = categoryService.addCategory("도서", null);
+        Long fiction = categoryService.addCategory("소설", books);
+        Long mystery = categoryService.addCategory("추리", fiction);
+        Long classic = categoryService.addCategory("고전추리", mystery);
+        Long music = categoryService.addCategory("음반", null);
+        Book fictionBook = addBook("소설책", fiction);
+        Book mysteryBook = addBook("추리소설", mystery);
+        Book classicBook = addBook("셜록 홈즈", classic);
+        // 두 카테고리에 걸친 상품은 한 번만
+        categoryService.addItem(mystery, classicBook.getId());
+        addBook("음반 부록 책", music);
+        em.flush();
+        em.clear();
+
+        categoryService.getTree(); // 스냅샷은 미리 만들어 둔다.
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        // when
+        List<Item> items = categoryService.findItemsInSubtree(fiction);
+
+        // then
+        assertEquals("트리 깊이와 관계없이 쿼리 한 번", 1, statistics.getPrepareStatementCount());
+        assertEquals(new HashSet<>(Arrays.asList(fictionBook.getId(), mysteryBook.getId(), classicBook.getId())),
+                items.stream().map(Item::getId).collect(Collectors.toSet()));
+        assertEquals(3, items.size());
+        assertEquals(3, categoryService.findSubtree(fiction).size());
+    }
+
+    @Test
+    public void 상품수_증분_갱신() throws Exception {
+        // given
+        Long books = categoryService.addCategory("도서", null);
+        Long fiction = categoryService.addCategory("소설", books);
+        Long mystery = categoryService.addCategory("추리", fiction);
+        Long essay = categoryService.addCategory("에세이", books);
+
+        // when
+        Book mysteryBook = addBook("추리소설", mystery);
+        addBook("셜록 홈즈", mystery);
+        addBook("에세이집", essay);
+        categoryService.addItem(fiction, mysteryBook.getId());
+        categoryService.addItem(mystery, mysteryBook.getId()); // 이미 연결된 상품은 다시 세지 않는다.
+
+        // then: 하위 트리 상품 수는 서로 다른 상품 수 (추리소설은 소설, 추리 둘 다에 연결되어 있어도 한 번)
+        CategoryTree tree = categoryService.getTree();
+        assertEquals(2, tree.find(mystery).getItemCount());
+        assertEquals(2, tree.find(mystery).getSubtreeItemCount());
+        assertEquals(1, tree.find(fiction).getItemCount());
+        assertEquals(2, tree.find(fiction).getSubtreeItemCount());
+        assertEquals(0, tree.find(books).getItemCount());
+        assertEquals(3, tree.find(books).getSubtreeItemCount());
+
+        // 연결 해제: 소설에는 아직 연결되어 있으므로 소설, 도서의 하위 트리 상품 수는 그대로
+        categoryService.removeItem(mystery, mysteryBook.getId());
+        tree = categoryService.getTree();
+        assertEquals(1, tree.find(mystery).getItemCount());
+        assertEquals(1, tree.find(mystery).getSubtreeItemCount());
+        assertEquals(2, tree.find(fiction).getSubtreeItemCount());
+        assertEquals(3, tree.find(books).getSubtreeItemCount());
+
+        // 마지막 연결까지 해제하면 상위 카테고리에서도 빠진다.
+        categoryService.removeItem(fiction, mysteryBook.getId());
+        tree = categoryService.getTree();
+        assertEquals(0, tree.find(fiction).getItemCount());
+        assertEquals(1, tree.find(fiction).getSubtreeItemCount());
+        assertEquals(2, tree.find(books).getSubtreeItemCount());
+    }
+
+    @Test
+    public void 카테고리_상품_키셋_페이징() throws Exception {
+        // given
+        Long books = categoryService.addCategory("도서", null);
+        Long fiction = categoryService.addCategory("소설", books);
+        for (int i = 0; i < 3; i++) {
+            addBook("도서 " + i, books);
+        }
+        for (int i = 0; i < 2; i++) {
+            addBook("소설 " + i, fiction);
+        }
+        em.flush();
+        em.clear();
+
+        // when
+        ItemPage first = categoryService.findItemPage(books, null, 2, false);
+        ItemPage second = categoryService.findItemPage(books, first.getNextCursor(), 2, false);
+
+        // then
+        assertEquals(2, first.getContent().size());
+        assertEquals(1, second.getContent().size());
+        assertFalse(second.hasNext());
+        assertTrue(first.getContent().get(1).getId() < second.getContent().get(0).getId());
+
+        // 하위 카테고리까지 포함
+        List<Long> ids = new ArrayList<>();
+        ItemPage page = categoryService.findItemPage(books, null, 2, true);
+        ids.addAll(page.getContent().stream().map(Item::getId).collect(Collectors.toList()));
+        while (page.hasNext()) {
+            page = categoryService.findItemPage(books, page.getNextCursor(), 2, true);
+            ids.addAll(page.getContent().stream().map(Item::getId).collect(Collectors.toList()));
+        }
+        assertEquals("페이지 간 중복, 누락이 없어야 한다.", 5, new HashSet<>(ids).size());
+        assertEquals(5, ids.size());
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void 없는_카테고리_상품_목록() throws Exception {
+        // when
+        categoryService.findItemPage(-1L, null, 10, false);
+
+        // then
+        fail("없는 카테고리는 NotFoundException (404)");
+    }
+
+    @Test(expected = InvalidRequestException.class)
+    public void 잘못된_페이지_토큰() throws Exception {
+        // given
+        Long books = categoryService.addCategory("도서", null);
+
+        // when
+        categoryService.findItemPage(books, "not-a-cursor", 10, false);
+
+        // then
+        fail("숫자가 아닌 페이지 토큰은 InvalidRequestException (400)");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void 다른_부모로_이동_불가() throws Exception {
+        // given
+        Long books = categoryService.addCategory("도서", null);
+        Long music = categoryService.addCategory("음반", null);
+        Long fiction = categoryService.addCategory("소설", books);
+
+        // when
+        em.find(Category.class, music).addChildCategory(em.find(Category.class, fiction));
+
+        // then
+        fail("다른 상위 카테고리로 옮길 수 없다.");
+    }
+
+    @Test
+    public void 다른_서버에서_만든_카테고리() throws Exception {
+        // given: 이 서버의 스냅샷을 만든 뒤에, 다른 서버가 카테고리를 추가하고 DB 버전을 올렸다.
+        categoryService.addCategory("도서", null);
+        categoryService.getTree();
+        Category other = new Category();
+        other.setName("다른 서버의 카테고리");
+        em.persist(other);
+        other.updatePath();
+        dataVersions.bumpNow(DataVersion.CATEGORY);
+        em.flush();
+
+        // when: 이 서버의 스냅샷에는 없는 카테고리
+        ItemPage page = categoryService.findItemPage(other.getId(), null, 10, false);
+
+        // then: "존재하지 않는 카테고리" 대신 DB 버전을 확인하고 다시 만든 트리에서 찾는다.
+        assertTrue(page.getContent().isEmpty());
+        assertNotNull(categoryService.getTree().find(other.getId()));
+    }
+
+    private Book addBook(String name, Long categoryId) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(10000);
+        book.setStockQuantity(10);
+        em.persist(book);
+        categoryService.addItem(categoryId, book.getId());
+        return book;
+    }
+}
@@ -0,0 +1,84 @@
+package jpabook.jpashop.service;
+
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+// @Transactional(롤백)을 쓰지 않는 테스트가 커밋한 회원, 상품과 그 주문을 지운다. (@After에서 deleteAll)
+// 테스트 DB는 컨텍스트를 같이 쓰는 모든 테스트가 공유하므로, 남겨두면 다른 테스트의 목록, 개수 검증이 흔들린다.
+// 지우는 순서는 외래 키 순서: 주문 이벤트 => 주문 상품 => 주문 => 배송 => 재고 조각 => 상품 => 회원
+class CommittedRows {
+
+    private final EntityManager em;
+    private final TransactionTemplate transactionTemplate;
+    private final List<Long> memberIds = new ArrayList<>();
+    private final List<Long> itemIds = new ArrayList<>();
+
+    CommittedRows(EntityManager em, TransactionTemplate transactionTemplate) {
+        this.em = em;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    Long member(Long memberId) {
+        memberIds.add(memberId);
+        return memberId;
+    }
+
+    Long item(Long itemId) {
+        itemIds.add(itemId);
+        return itemId;
+    }
+
+    // 회원의 주문과 상품이 들어간 주문도 같이 지운다.
+    void deleteAll() {
+        if (memberIds.isEmpty() && itemIds.isEmpty()) {
+            return;
+        }
+        transactionTemplate.execute(status -> {
+            List<Long> orderIds = new ArrayList<>();
+            if (!memberIds.isEmpty()) {
+                orderIds.addAll(ids("select o.id from Order o where o.member.id in :ids", memberIds));
+            }
+            if (!itemIds.isEmpty()) {
+                orderIds.addAll(ids("select oi.order.id from OrderItem oi where oi.item.id in :ids", itemIds));
+            }
+            if (!orderIds.isEmpty()) {
+                List<Long> deliveryIds = ids("select o.delivery.id from Order o where o.id in :ids", orderIds);
+                em.createQuery("delete from OutboxEvent e where e.aggregateType = :type and e.aggregateId in :ids")
+                        .setParameter("type", OrderOutbox.AGGREGATE_TYPE)
+                        .setParameter("ids", orderIds)
+                        .executeUpdate();
+                delete("delete from OrderItem oi where oi.order.id in :ids", orderIds);
+                delete("delete from Order o where o.id in :ids", orderIds);
+                if (!deliveryIds.isEmpty()) {
+                    delete("delete from Delivery d where d.id in :ids", deliveryIds);
+                }
+            }
+            if (!itemIds.isEmpty()) {
+                delete("delete from ItemStockShard s where s.item.id in :ids", itemIds);
+                delete("delete from Item i where i.id in :ids", itemIds);
+            }
+            if (!memberIds.isEmpty()) {
+                delete("delete from Member m where m.id in :ids", memberIds);
+            }
+            return null;
+        });
+        memberIds.clear();
+        itemIds.clear();
+    }
+
+    private List<Long> ids(String jpql, Collection<Long> ids) {
+        return em.createQuery(jpql, Long.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+    private void delete(String jpql, Collection<Long> ids) {
+        em.createQuery(jpql)
+                .setParameter("ids", ids)
+                .executeUpdate();
+    }
+}
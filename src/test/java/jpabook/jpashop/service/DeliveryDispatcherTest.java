@@ -0,0 +1,119 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.repository.OrderRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class DeliveryDispatcherTest {
+
+    @Autowired
+    DeliveryDispatcher deliveryDispatcher;
+    @Autowired
+    DeliveryService deliveryService;
+    @Autowired
+    OrderService orderService;
+    @Autowired
+    OrderRepository orderRepository;
+    @Autowired
+    EntityManager em;
+
+    @Test
+    public void 준비된_배송_완료처리_취소된_주문은_제외() throws Exception {
+        // given
+        Member member = createTestMember();
+        Book book = createTestBook();
+        Long orderId1 = orderService.order(member.getId(), book.getId(), 1);
+        Long orderId2 = orderService.order(member.getId(), book.getId(), 1);
+        Long cancelledId = orderService.order(member.getId(), book.getId(), 1);
+        assertEquals("주문하면 배송 준비", DeliveryStatus.READY, orderRepository.findOne(orderId1).getDelivery().getStatus());
+        orderService.cancelOrder(cancelledId);
+        em.flush();
+        em.clear();
+
+        // when
+        int completed = deliveryDispatcher.dispatch();
+
+        // then
+        assertTrue(completed >= 2);
+        assertEquals(DeliveryStatus.COMP, findDelivery(orderId1).getStatus());
+        assertEquals(DeliveryStatus.COMP, findDelivery(orderId2).getStatus());
+        assertNull("완료하면 임대를 푼다.", findDelivery(orderId1).getLeaseOwner());
+        assertEquals("취소된 주문의 배송은 완료하지 않는다.", DeliveryStatus.CANCEL, findDelivery(cancelledId).getStatus());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void 배송_완료된_주문은_취소불가() throws Exception {
+        // given
+        Member member = createTestMember();
+        Book book = createTestBook();
+        Long orderId = orderService.order(member.getId(), book.getId(), 1);
+        em.flush();
+        em.clear();
+        deliveryDispatcher.dispatch();
+
+        // when
+        orderService.cancelOrder(orderId);
+
+        // then
+        fail("배송 완료된 주문은 취소할 수 없다.");
+    }
+
+    @Test
+    public void 임대중인_배송은_다른_묶음이_가져가지_않음() throws Exception {
+        // given
+        Member member = createTestMember();
+        Book book = createTestBook();
+        Long orderId = orderService.order(member.getId(), book.getId(), 1);
+        em.flush();
+        em.clear();
+        deliveryService.leaseReady("node-a", Integer.MAX_VALUE, Duration.ofMinutes(1));
+
+        // when: 다른 노드의 묶음
+        deliveryDispatcher.dispatch();
+
+        // then: 임대가 만료되기 전에는 그대로, 임대한 쪽만 완료할 수 있다.
+        assertEquals(DeliveryStatus.READY, findDelivery(orderId).getStatus());
+        assertEquals("node-a", findDelivery(orderId).getLeaseOwner());
+        assertTrue(deliveryService.completeLeased("node-a") >= 1);
+        assertEquals(DeliveryStatus.COMP, findDelivery(orderId).getStatus());
+    }
+
+    private Delivery findDelivery(Long orderId) {
+        em.clear();
+        return orderRepository.findOne(orderId).getDelivery();
+    }
+
+    private Book createTestBook() {
+        Book book = new Book();
+        book.setName("delivery book");
+        book.setPrice(10000);
+        book.setStockQuantity(10);
+        em.persist(book);
+        return book;
+    }
+
+    private Member createTestMember() {
+        Member member = new Member();
+        member.setName("delivery-member-" + System.nanoTime());
+        member.setAddress(new Address("서울", "경기", "123-123"));
+        em.persist(member);
+        return member;
+    }
+}
@@ -0,0 +1,165 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.exception.IdempotencyKeyInProgressException;
+import jpabook.jpashop.exception.IdempotencyKeyReusedException;
+import org.junit.Test;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class IdempotencyServiceTest {
+
+    private final IdempotencyService idempotencyService =
+            new IdempotencyService(new InMemoryIdempotencyStore(1000, 60), 5000);
+
+    @Test
+    public void 같은_키는_한_번만_실행() throws Exception {
+        // given
+        AtomicLong calls = new AtomicLong();
+
+        // when
+        Long first = idempotencyService.execute("order", "key-1", "1:2:3", () -> calls.incrementAndGet() * 100);
+        Long second = idempotencyService.execute("order", "key-1", "1:2:3", () -> calls.incrementAndGet() * 100);
+
+        // then: 두 번째는 서비스를 부르지 않고 처음 결과
+        assertEquals(Long.valueOf(100), first);
+        assertEquals(first, second);
+        assertEquals(1, calls.get());
+
+        // 키가 없거나, 범위가 다르면 따로 실행
+        idempotencyService.execute("order", null, "1:2:3", calls::incrementAndGet);
+        idempotencyService.execute("member", "key-1", "1:2:3", calls::incrementAndGet);
+        assertEquals(3, calls.get());
+    }
+
+    @Test(expected = IdempotencyKeyReusedException.class)
+    public void 같은_키로_다른_요청() throws Exception {
+        idempotencyService.execute("order", "key-2", "1:2:3", () -> 1L);
+        idempotencyService.execute("order", "key-2", "1:2:4", () -> 2L);
+        fail("내용이 다르면 예외가 발생해야 한다.");
+    }
+
+    @Test
+    public void 실패한_요청은_다시_실행() throws Exception {
+        // given
+        try {
+            idempotencyService.execute("order", "key-3", "1:2:3", () -> {
+                throw new IllegalStateException("일시적 실패");
+            });
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+
+        // when, then
+        assertEquals(Long.valueOf(7), idempotencyService.execute("order", "key-3", "1:2:3", () -> 7L));
+    }
+
+    @Test
+    public void 동시에_온_같은_키는_첫_요청을_기다린다() throws Exception {
+        // given: 첫 요청이 끝나지 않은 상태에서 같은 키로 여러 요청
+        int threads = 8;
+        AtomicLong calls = new AtomicLong();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        // when
+        List<Future<Long>> results = new ArrayList<>();
+        results.add(executor.submit(() -> idempotencyService.execute("member", "key-4", "name", () -> {
+            started.countDown();
+            await(release);
+            return calls.incrementAndGet();
+        })));
+        started.await();
+        for (int i = 1; i < threads; i++) {
+            results.add(executor.submit(() -> idempotencyService.execute("member", "key-4", "name", calls::incrementAndGet)));
+        }
+        Thread.sleep(200);
+        release.countDown();
+
+        // then: 한 번만 실행, 모두 같은 결과
+        for (Future<Long> result : results) {
+            assertEquals(Long.valueOf(1), result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, calls.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void 다른_서버에_동시에_온_같은_키도_한_번만_실행() throws Exception {
+        // given: 저장소를 같이 쓰는 서버 두 대
+        InMemoryIdempotencyStore sharedStore = new InMemoryIdempotencyStore(1000, 60);
+        IdempotencyService node1 = new IdempotencyService(sharedStore, 5000);
+        IdempotencyService node2 = new IdempotencyService(sharedStore, 5000);
+        AtomicLong calls = new AtomicLong();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        // when: node1이 키를 선점하고 실행 중일 때 node2로 재시도
+        Future<Long> first = executor.submit(() -> node1.execute("order", "key-5", "1:2:3", () -> {
+            started.countDown();
+            await(release);
+            return calls.incrementAndGet();
+        }));
+        started.await();
+        Future<Long> retry = executor.submit(() -> node2.execute("order", "key-5", "1:2:3", calls::incrementAndGet));
+        Thread.sleep(200);
+        release.countDown();
+
+        // then: node2는 실행하지 않고 node1의 결과
+        assertEquals(Long.valueOf(1), first.get(5, TimeUnit.SECONDS));
+        assertEquals(Long.valueOf(1), retry.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        executor.shutdown();
+    }
+
+    @Test(expected = IdempotencyKeyInProgressException.class)
+    public void 다른_서버가_처리_중인_키는_기다리다_409() throws Exception {
+        // given: 다른 서버가 선점하고 아직 끝나지 않은 키
+        InMemoryIdempotencyStore sharedStore = new InMemoryIdempotencyStore(1000, 60);
+        assertTrue(sharedStore.claim("order:key-6", DigestUtils.md5DigestAsHex("1:2:3".getBytes(StandardCharsets.UTF_8))));
+        IdempotencyService node2 = new IdempotencyService(sharedStore, 300);
+
+        // when
+        node2.execute("order", "key-6", "1:2:3", () -> {
+            fail("다른 서버가 선점한 키는 실행하면 안된다.");
+            return 1L;
+        });
+    }
+
+    @Test
+    public void 처리_중인_키는_크기_제한으로_밀려나지_않는다() throws Exception {
+        // given: 끝난 결과는 하나만 보관하는 저장소에 처리 중인 키
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(1, 60);
+        assertTrue(store.claim("order:slow", "fingerprint"));
+
+        // when: 다른 키들이 끝나서 결과가 계속 들어온다.
+        IdempotencyService service = new IdempotencyService(store, 5000);
+        for (int i = 0; i < 100; i++) {
+            service.execute("order", "key-" + i, "1:2:3", () -> 1L);
+        }
+
+        // then: 처리 중인 키는 그대로 선점되어 있다. => 재시도가 다시 실행되지 않는다.
+        assertTrue(store.find("order:slow").isPending());
+        assertFalse(store.claim("order:slow", "fingerprint"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
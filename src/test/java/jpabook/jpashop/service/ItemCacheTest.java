@@ -0,0 +1,146 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+// 상품 2차 캐시
+// 2차 캐시는 커밋 후에 채워지고 갱신되므로, 테스트 전체를 한 트랜잭션(@Transactional 롤백)으로 묶지 않는다.
+// => 만든 데이터는 @After에서 지운다.
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ItemCacheTest {
+
+    @Autowired
+    ItemService itemService;
+    @Autowired
+    OrderService orderService;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    EntityManagerFactory emf;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    Statistics statistics;
+    CommittedRows committed;
+
+    @Before
+    public void setUp() {
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        committed = new CommittedRows(em, transactionTemplate);
+    }
+
+    @After
+    public void tearDown() {
+        committed.deleteAll();
+    }
+
+    @Test
+    public void 상품_조회는_캐시에서() throws Exception {
+        // given
+        Long itemId = createBook("cache book", 10000, 10);
+        itemService.findOne(itemId);
+
+        // when
+        statistics.clear();
+        Item item = itemService.findOne(itemId);
+
+        // then
+        assertEquals("cache book", item.getName());
+        assertEquals("캐시에 있으면 쿼리가 나가지 않는다.", 0, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getDomainDataRegionStatistics("item").getHitCount());
+    }
+
+    @Test
+    public void 상품_수정_후_최신값() throws Exception {
+        // given
+        Long itemId = createBook("cache book", 10000, 10);
+        itemService.findOne(itemId);
+
+        // when
+        itemService.updateItem(itemId, "cache book v2", 12000, 7);
+
+        // then
+        statistics.clear();
+        Item item = itemService.findOne(itemId);
+        assertEquals("cache book v2", item.getName());
+        assertEquals("수정한 가격이 보여야 한다.", 12000, item.getPrice());
+        assertEquals(7, item.getStockQuantity());
+        assertEquals("수정 커밋 시 캐시도 새 값으로 바뀐다.", 0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void 주문_취소_후_재고_최신값() throws Exception {
+        // given
+        Long memberId = createMember();
+        Long itemId = createBook("cache book", 10000, 10);
+        itemService.findOne(itemId);
+
+        // when
+        Long orderId = orderService.order(memberId, itemId, 3);
+
+        // then
+        assertEquals("주문 후 캐시된 재고도 줄어야 한다.", 7, itemService.findOne(itemId).getStockQuantity());
+
+        // 일괄 취소(벌크 update)는 item 리전 전체를 비운다.
+        orderService.cancelOrders(Collections.singletonList(orderId));
+        assertEquals("취소 후 재고가 복구되어 보여야 한다.", 10, itemService.findOne(itemId).getStockQuantity());
+    }
+
+    @Test
+    public void 상품_목록_쿼리캐시() throws Exception {
+        // given
+        createBook("list book", 10000, 10);
+        itemService.findItems();
+
+        // when
+        statistics.clear();
+        int before = itemService.findItems().size();
+
+        // then
+        assertEquals("쿼리 캐시 + 엔티티 캐시 => 쿼리가 나가지 않는다.", 0, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getQueryCacheHitCount());
+
+        // 상품이 추가되면 목록 캐시는 무효화된다.
+        createBook("new book", 10000, 10);
+        assertEquals(before + 1, itemService.findItems().size());
+    }
+
+    private Long createBook(String name, int price, int stockQuantity) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(price);
+        book.setStockQuantity(stockQuantity);
+        itemService.saveItem(book);
+        return committed.item(book.getId());
+    }
+
+    private Long createMember() {
+        return transactionTemplate.execute(status -> {
+            Member member = new Member();
+            member.setName("cache-member-" + System.nanoTime());
+            member.setAddress(new Address("서울", "경기", "123-123"));
+            em.persist(member);
+            return committed.member(member.getId());
+        });
+    }
+}
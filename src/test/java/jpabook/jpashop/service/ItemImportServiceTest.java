@@ -0,0 +1,113 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.item.Album;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.domain.item.Movie;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+// 상품 일괄 등록
+// 묶음(CHUNK_SIZE)마다 트랜잭션을 커밋하므로 테스트 전체를 한 트랜잭션(@Transactional 롤백)으로 묶지 않는다.
+// => 다른 테스트와 섞이지 않도록 상품 이름에 실행마다 다른 접두어를 붙이고, 가져온 상품은 @After에서 그 접두어로 찾아 지운다.
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ItemImportServiceTest {
+
+    @Autowired
+    ItemImportService itemImportService;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    String prefix;
+
+    @After
+    public void tearDown() {
+        if (prefix == null) {
+            return;
+        }
+        CommittedRows committed = new CommittedRows(em, transactionTemplate);
+        findItems(prefix).forEach(item -> committed.item(item.getId()));
+        committed.deleteAll();
+    }
+
+    @Test
+    public void CSV_가져오기_잘못된_행은_건너뜀() throws Exception {
+        // given
+        prefix = "import-csv-" + System.nanoTime() + "-";
+        String csv = "type,name,price,stockQuantity,author,isbn,artist,etc,director,actor\n" +
+                "BOOK," + prefix + "book,10000,10,\"Kim, Younghan\",978-1\n" +
+                "A," + prefix + "album,20000,5,,,IU,\"\"\"live\"\"\"\n" +
+                "movie," + prefix + "movie,30000,3,,,,,Bong,Song\n" +
+                "TOY," + prefix + "toy,1000,1\n" +
+                "BOOK," + prefix + "negative,-1,1\n" +
+                "BOOK,,1000,1\n" +
+                "BOOK," + prefix + "unclosed,\"1000,1\n";
+
+        // when
+        ItemImportResult result = itemImportService.importItems(new StringReader(csv), "csv");
+
+        // then
+        assertEquals(3, result.getImportedRows());
+        assertEquals(4, result.getFailedRows());
+        assertEquals(7, result.getTotalRows());
+        List<Integer> failedLines = result.getErrors().stream()
+                .map(ItemImportResult.RowError::getLine)
+                .collect(Collectors.toList());
+        assertEquals("헤더가 1번 줄", Arrays.asList(5, 6, 7, 8), failedLines);
+
+        List<Item> items = findItems(prefix);
+        assertEquals(3, items.size());
+        Book book = (Book) items.get(0);
+        assertEquals("Kim, Younghan", book.getAuthor());
+        assertEquals(10, book.getStockQuantity());
+        Album album = (Album) items.get(1);
+        assertEquals("\"live\"", album.getEtc());
+        Movie movie = (Movie) items.get(2);
+        assertEquals("Song", movie.getActor());
+    }
+
+    @Test
+    public void NDJSON_가져오기_여러_묶음() throws Exception {
+        // given: 묶음 크기보다 많은 행 + 중간에 잘못된 JSON
+        prefix = "import-ndjson-" + System.nanoTime() + "-";
+        int rows = ItemImportService.CHUNK_SIZE * 2 + 1;
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            ndjson.append("{\"type\":\"MOVIE\",\"name\":\"").append(prefix).append(i)
+                    .append("\",\"price\":1000,\"stockQuantity\":1,\"director\":\"d\"}\n");
+        }
+        ndjson.append("{not json}\n");
+
+        // when
+        ItemImportResult result = itemImportService.importItems(new StringReader(ndjson.toString()), "ndjson");
+
+        // then
+        assertEquals(rows, result.getImportedRows());
+        assertEquals(1, result.getFailedRows());
+        assertEquals(rows + 1, result.getErrors().get(0).getLine());
+        assertEquals(rows, findItems(prefix).size());
+    }
+
+    private List<Item> findItems(String prefix) {
+        return transactionTemplate.execute(status -> em.createQuery(
+                "select i from Item i where i.name like :prefix order by i.id", Item.class)
+                .setParameter("prefix", prefix + "%")
+                .getResultList());
+    }
+}
@@ -6,11 +6,16 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -45,9 +50,182 @@ public class MemberServiceTest {
 
     }
 
-    @Test
+    @Test(expected = IllegalStateException.class)
     public void 중복_회원_예외() throws Exception{
+        // given
+        Member member1 = new Member();
+        member1.setName("kim");
+
+        Member member2 = new Member();
+        member2.setName("kim");
+
+        // when
+        memberService.join(member1);
+        memberService.join(member2); // 예외가 발생해야 한다.
+
+        // then
+        fail("예외가 발생해야 한다.");
+    }
+
+    @Test
+    public void 일괄_회원가입() throws Exception {
+        // given
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Member member = new Member();
+            member.setName("bulk-" + i);
+            members.add(member);
+        }
+
+        // when
+        List<Long> ids = memberService.joinAll(members);
+
+        // then
+        assertEquals(10, ids.size());
+        // 일괄 가입은 영속성 컨텍스트를 비우므로 같은 인스턴스가 아니라 이름으로 확인한다.
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(members.get(i).getName(), memberRepository.findOne(ids.get(i)).getName());
+        }
+        assertTrue(memberRepository.existsByName("bulk-9"));
+    }
+
+    @Test
+    public void 일괄_회원가입_중복이면_전체실패() throws Exception {
+        // given
+        Member existing = new Member();
+        existing.setName("lee");
+        memberService.join(existing);
+
+        Member member1 = new Member();
+        member1.setName("park");
+        Member member2 = new Member();
+        member2.setName("lee");
+
+        // when
+        try {
+            memberService.joinAll(Arrays.asList(member1, member2));
+            fail("이미 있는 이름이 있으면 예외가 발생해야 한다.");
+        } catch (IllegalStateException e) {
+            // then
+            assertFalse("한 명이라도 중복이면 아무도 가입되지 않는다.", memberRepository.existsByName("park"));
+        }
+    }
+
+    @Test
+    public void 일괄_회원가입_이름없으면_전체실패() throws Exception {
+        // given
+        Member member1 = new Member();
+        member1.setName("yoon");
+        Member member2 = new Member();
+        member2.setName(" ");
+
+        // when
+        try {
+            memberService.joinAll(Arrays.asList(member1, member2));
+            fail("이름이 없는 회원이 있으면 예외가 발생해야 한다.");
+        } catch (IllegalStateException e) {
+            // then
+            assertFalse(memberRepository.existsByName("yoon"));
+        }
+    }
+
+    @Test
+    public void 일괄_회원가입_부분성공() throws Exception {
+        // given
+        Member existing = new Member();
+        existing.setName("han");
+        memberService.join(existing);
+
+        List<Member> members = new ArrayList<>();
+        for (String name : new String[]{"batch-1", "han", "batch-2", "batch-1", "", "batch-3"}) {
+            Member member = new Member();
+            member.setName(name);
+            members.add(member);
+        }
 
+        // when
+        List<MemberJoinResult> results = memberService.joinBatch(members);
+
+        // then: 요청 순서대로 결과
+        assertEquals(6, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertEquals("이미 존재하는 회원입니다.", results.get(1).getError());
+        assertTrue(results.get(2).isSuccess());
+        assertFalse("요청 안에서 두 번째로 나온 이름은 실패", results.get(3).isSuccess());
+        assertFalse("이름 없음", results.get(4).isSuccess());
+        assertTrue(results.get(5).isSuccess());
+
+        assertEquals("batch-2", memberRepository.findOne(results.get(2).getId()).getName());
+        assertEquals(1, memberRepository.findByName("batch-1").size());
+    }
+
+    @Test
+    public void 일괄_회원가입_블룸_필터에_없는_기존_회원() throws Exception {
+        // given: 다른 서버, 직접 SQL로 가입해서 이 서버의 블룸 필터에 없는 회원
+        Member existing = new Member();
+        existing.setName("filter-missing");
+        em.persist(existing);
+        em.flush();
+
+        Member member = new Member();
+        member.setName("filter-missing");
+
+        // when
+        List<MemberJoinResult> results = memberService.joinBatch(Arrays.asList(member));
+
+        // then: 유니크 제약 조건 위반(전체 롤백)이 아니라 그 회원만 실패
+        assertEquals("이미 존재하는 회원입니다.", results.get(0).getError());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void 이름_수정_중복_예외() throws Exception {
+        // given
+        Member member1 = new Member();
+        member1.setName("choi");
+        Member member2 = new Member();
+        member2.setName("jung");
+        memberService.join(member1);
+        Long id = memberService.join(member2);
+
+        // when
+        memberService.update(id, "choi");
+
+        // then
+        fail("예외가 발생해야 한다.");
+    }
+
+    @Test
+    public void 블룸_필터에_없는_기존_회원_이름_유니크_제약_조건() throws Exception {
+        // given: 이 서버의 블룸 필터에 없는 회원 => 중복 검사를 건너뛰고 유니크 제약 조건에서 걸린다.
+        Member existing = new Member();
+        existing.setName("constraint-member");
+        em.persist(existing);
+        em.flush();
+
+        Member member = new Member();
+        member.setName("constraint-member");
+
+        // when
+        try {
+            memberService.join(member);
+            fail("예외가 발생해야 한다.");
+        } catch (IllegalStateException e) {
+            // then
+            assertEquals("이미 존재하는 회원입니다.", e.getMessage());
+        }
+    }
+
+    @Test(expected = DataIntegrityViolationException.class)
+    public void 이름_외의_무결성_위반은_중복_회원이_아니다() throws Exception {
+        // given: 컬럼 길이(255)를 넘는 이름
+        Member member = new Member();
+        member.setName(String.join("", Collections.nCopies(300, "a")));
+
+        // when
+        memberService.join(member);
+
+        // then
+        fail("DataIntegrityViolationException이 그대로 나와야 한다.");
     }
 
-}
\ No newline at end of file
+}
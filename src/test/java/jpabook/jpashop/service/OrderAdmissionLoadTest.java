@@ -0,0 +1,153 @@
+package jpabook.jpashop.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.exception.OrderAdmissionRejectedException;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+// 과부하에서 입장 제한이 있을 때와 없을 때, 통과한 주문의 p99 응답 시간 비교
+// 실제 주문 경로(admit => orderService.order)를 H2에 대고, 히카리 풀을 커넥션 POOL_SIZE개로 줄여서 돌린다.
+// 클라이언트마다 회원, 상품을 따로 두어 행 잠금 경합 없이 커넥션 풀에서만 줄을 서게 한다.
+// 클라이언트 스레드 수를 16 => 128로 늘리면
+// - 입장 제한 없음: 모두 히카리 풀 대기열에 줄을 서므로 p99가 클라이언트 수에 비례해서 늘어난다.
+// - 입장 제한 있음(동시 주문 POOL_SIZE - 1개): 넘치는 요청은 바로 429, 통과한 주문의 p99는 거의 그대로다.
+// 오래 걸리므로 평소에는 건너뛰고, -Dbenchmark=true 를 주었을 때만 실행한다.
+// ./gradlew test --tests '*OrderAdmissionLoadTest' -Dbenchmark=true
+@Slf4j
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.hikari.maximum-pool-size=" + OrderAdmissionLoadTest.POOL_SIZE,
+        "spring.datasource.hikari.minimum-idle=" + OrderAdmissionLoadTest.POOL_SIZE
+})
+public class OrderAdmissionLoadTest {
+
+    static final int POOL_SIZE = 4;
+    private static final int MAX_CLIENTS = 128;
+    private static final long RUN_MILLIS = 2000;
+
+    @Autowired
+    OrderService orderService;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    CommittedRows committed;
+    List<Long> memberIds = new ArrayList<>();
+    List<Long> itemIds = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue("-Dbenchmark=true 일 때만 실행", Boolean.getBoolean("benchmark"));
+        committed = new CommittedRows(em, transactionTemplate);
+        transactionTemplate.execute(status -> {
+            for (int i = 0; i < MAX_CLIENTS; i++) {
+                Member member = new Member();
+                member.setName("admission-member-" + i + "-" + System.nanoTime());
+                member.setAddress(new Address("서울", "경기", "123-123"));
+                em.persist(member);
+                memberIds.add(committed.member(member.getId()));
+
+                Book book = new Book();
+                book.setName("admission book " + i);
+                book.setPrice(10000);
+                book.setStockQuantity(1_000_000);
+                em.persist(book);
+                itemIds.add(committed.item(book.getId()));
+            }
+            return null;
+        });
+    }
+
+    @After
+    public void tearDown() {
+        if (committed != null) {
+            committed.deleteAll();
+        }
+    }
+
+    @Test
+    public void 과부하에서_p99_유지() throws Exception {
+        run(16, false); // 워밍업 (JIT, 커넥션 생성)
+        long unlimitedNormal = run(16, false);
+        long unlimitedOverload = run(MAX_CLIENTS, false);
+        long admittedNormal = run(16, true);
+        long admittedOverload = run(MAX_CLIENTS, true);
+
+        log.info("[order admission] p99 unlimited: 16 clients={}ms, {} clients={}ms / admission: 16 clients={}ms, {} clients={}ms",
+                unlimitedNormal, MAX_CLIENTS, unlimitedOverload, admittedNormal, MAX_CLIENTS, admittedOverload);
+
+        // 입장 제한이 없으면 과부하에서 p99가 크게 늘어난다.
+        assertTrue(unlimitedOverload > unlimitedNormal * 3);
+        // 입장 제한이 있으면 거의 그대로 (대기 시간 queue-timeout 만큼은 늘 수 있다)
+        assertTrue(admittedOverload <= admittedNormal * 2 + 50);
+        assertTrue(admittedOverload < unlimitedOverload);
+    }
+
+    // clients개 스레드가 RUN_MILLIS 동안 쉬지 않고 주문, 성공한 주문의 p99(ms)
+    // 회원별 속도 제한은 사실상 끄고(초당 100만) 동시 주문 수 제한만 본다.
+    private long run(int clients, boolean admissionControl) throws Exception {
+        OrderAdmission admission = new OrderAdmission(new SimpleMeterRegistry(), 1_000_000, 1_000_000, POOL_SIZE - 1, POOL_SIZE * 2, 50);
+        AtomicLong rejected = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS);
+
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        for (int i = 0; i < clients; i++) {
+            Long memberId = memberIds.get(i);
+            Long itemId = itemIds.get(i);
+            executor.submit(() -> {
+                Supplier<Long> order = () -> orderService.order(memberId, itemId, 1);
+                while (System.nanoTime() < deadline) {
+                    long start = System.nanoTime();
+                    try {
+                        if (admissionControl) {
+                            admission.admit(memberId, order);
+                        } else {
+                            order.get();
+                        }
+                        latencies.add(System.nanoTime() - start);
+                    } catch (OrderAdmissionRejectedException e) {
+                        rejected.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        // 커넥션 대기 시간 초과 등
+                        failed.incrementAndGet();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(RUN_MILLIS * 30, TimeUnit.MILLISECONDS));
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        long p99 = TimeUnit.NANOSECONDS.toMillis(sorted.get((int) (sorted.size() * 0.99)));
+        log.info("[order admission] clients={}, admission={}, ok={}, rejected={}, failed={}, p99={}ms",
+                clients, admissionControl, sorted.size(), rejected.get(), failed.get(), p99);
+        return p99;
+    }
+}
@@ -0,0 +1,129 @@
+package jpabook.jpashop.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jpabook.jpashop.exception.OrderAdmissionRejectedException;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class OrderAdmissionTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    public void 토큰_버킷_충전() throws Exception {
+        // given: 초당 10개, 최대 2개
+        long now = 0;
+        TokenBucket bucket = new TokenBucket(10, 2, now);
+
+        // when, then: 2개까지는 바로, 3번째는 100ms 기다려야 한다.
+        assertEquals(0, bucket.tryAcquire(now));
+        assertEquals(0, bucket.tryAcquire(now));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), bucket.tryAcquire(now));
+
+        // 100ms 지나면 하나 더
+        now += TimeUnit.MILLISECONDS.toNanos(100);
+        assertEquals(0, bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now) > 0);
+    }
+
+    @Test
+    public void 회원별_속도_제한() throws Exception {
+        // given: 회원당 초당 1개, 최대 3개
+        OrderAdmission admission = new OrderAdmission(meterRegistry, 1, 3, 8, 0, 0);
+
+        // when
+        for (int i = 0; i < 3; i++) {
+            admission.admit(1L, () -> 1L);
+        }
+
+        // then: 4번째는 429, 다른 회원은 상관없다.
+        try {
+            admission.admit(1L, () -> 1L);
+            fail("속도 제한에 걸려야 한다.");
+        } catch (OrderAdmissionRejectedException e) {
+            assertEquals(1, e.getRetryAfterSeconds());
+        }
+        assertEquals(Long.valueOf(2), admission.admit(2L, () -> 2L));
+        assertEquals(4, meterRegistry.counter("order.admission.admitted").count(), 0);
+        assertEquals(1, meterRegistry.counter("order.admission.rejected", "reason", "rate").count(), 0);
+    }
+
+    @Test
+    public void 동시_주문_수_제한() throws Exception {
+        // given: 동시에 2개, 대기 1개(50ms)
+        OrderAdmission admission = new OrderAdmission(meterRegistry, 1000, 1000, 2, 1, 50);
+        CountDownLatch running = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        for (int i = 0; i < 2; i++) {
+            long memberId = i;
+            executor.submit(() -> admission.admit(memberId, () -> {
+                running.countDown();
+                await(release);
+                return memberId;
+            }));
+        }
+        running.await();
+
+        // when, then: 자리가 없으면 잠깐 기다렸다가 429
+        long start = System.nanoTime();
+        try {
+            admission.admit(10L, () -> 10L);
+            fail("동시 주문 수 제한에 걸려야 한다.");
+        } catch (OrderAdmissionRejectedException e) {
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        }
+        assertEquals(1, meterRegistry.counter("order.admission.queued").count(), 0);
+        assertEquals(1, meterRegistry.counter("order.admission.rejected", "reason", "concurrency").count(), 0);
+
+        // 자리가 나면 다시 통과
+        release.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(Long.valueOf(11), admission.admit(11L, () -> 11L));
+    }
+
+    @Test
+    public void 동시_주문_수_제한에_걸리면_토큰을_되돌린다() throws Exception {
+        // given: 회원당 최대 1개, 동시에 1개, 대기 없음
+        OrderAdmission admission = new OrderAdmission(meterRegistry, 1, 1, 1, 0, 0);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.submit(() -> admission.admit(1L, () -> {
+            running.countDown();
+            await(release);
+            return 1L;
+        }));
+        running.await();
+
+        // when: 회원 2의 주문이 동시 주문 수 제한에 걸림
+        try {
+            admission.admit(2L, () -> 2L);
+            fail("동시 주문 수 제한에 걸려야 한다.");
+        } catch (OrderAdmissionRejectedException e) {
+            assertEquals(1, meterRegistry.counter("order.admission.rejected", "reason", "concurrency").count(), 0);
+        }
+        release.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        // then: 토큰이 남아 있으므로 바로 다시 주문할 수 있다.
+        assertEquals(Long.valueOf(2), admission.admit(2L, () -> 2L));
+        assertEquals(0, meterRegistry.counter("order.admission.rejected", "reason", "rate").count(), 0);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
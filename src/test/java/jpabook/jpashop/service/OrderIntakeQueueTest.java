@@ -0,0 +1,103 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+// 비동기 주문 접수
+// 작업 스레드가 따로 트랜잭션을 커밋하므로 @Transactional(롤백)을 쓰지 않는다. => 만든 데이터는 @After에서 지운다.
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class OrderIntakeQueueTest {
+
+    private static final int ORDERS = 300;
+    private static final int STOCK = 200;
+
+    @Autowired
+    OrderIntakeQueue orderIntakeQueue;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    CommittedRows committed;
+
+    @Before
+    public void setUp() {
+        committed = new CommittedRows(em, transactionTemplate);
+    }
+
+    @After
+    public void tearDown() {
+        committed.deleteAll();
+    }
+
+    @Test
+    public void 비동기_주문_묶음_커밋_초과판매_없음() throws Exception {
+        // given
+        Long memberId = createMember();
+        Long itemId = createBook();
+
+        // when
+        List<OrderTicket> tickets = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            tickets.add(orderIntakeQueue.submit(memberId, itemId, 1));
+        }
+        CompletableFuture.allOf(tickets.stream().map(OrderTicket::getCompletion).toArray(CompletableFuture[]::new))
+                .get(1, TimeUnit.MINUTES);
+
+        // then
+        long ordered = tickets.stream().filter(t -> t.getStatus() == OrderTicket.Status.ORDERED).count();
+        long failed = tickets.stream().filter(t -> t.getStatus() == OrderTicket.Status.FAILED).count();
+        assertEquals("재고만큼만 주문된다.", STOCK, ordered);
+        assertEquals(ORDERS - STOCK, failed);
+        assertTrue(tickets.stream().filter(t -> t.getStatus() == OrderTicket.Status.ORDERED).allMatch(t -> t.getOrderId() != null));
+        assertSame("번호표로 다시 찾을 수 있다.", tickets.get(0), orderIntakeQueue.findTicket(tickets.get(0).getId()));
+
+        int stock = transactionTemplate.execute(status -> em.find(Item.class, itemId).getStockQuantity());
+        Long orderedSum = transactionTemplate.execute(status -> em.createQuery(
+                "select sum(oi.count) from OrderItem oi where oi.item.id = :itemId", Long.class)
+                .setParameter("itemId", itemId)
+                .getSingleResult());
+        assertEquals(0, stock);
+        assertEquals(Long.valueOf(STOCK), orderedSum);
+    }
+
+    private Long createMember() {
+        return transactionTemplate.execute(status -> {
+            Member member = new Member();
+            member.setName("intake-member-" + System.nanoTime());
+            member.setAddress(new Address("서울", "경기", "123-123"));
+            em.persist(member);
+            return committed.member(member.getId());
+        });
+    }
+
+    private Long createBook() {
+        return transactionTemplate.execute(status -> {
+            Book book = new Book();
+            book.setName("intake book");
+            book.setPrice(10000);
+            book.setStockQuantity(STOCK);
+            em.persist(book);
+            return committed.item(book.getId());
+        });
+    }
+}
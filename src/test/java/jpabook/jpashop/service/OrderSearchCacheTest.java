@@ -0,0 +1,182 @@
+package jpabook.jpashop.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.DataVersion;
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.repository.DataVersions;
+import jpabook.jpashop.repository.OrderListDto;
+import jpabook.jpashop.repository.OrderPage;
+import jpabook.jpashop.repository.OrderSearch;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.Assert.*;
+
+// 주문 검색 결과 캐시
+// 캐시 무효화(세대 증가)는 커밋할 때 일어나므로, 테스트 전체를 한 트랜잭션(@Transactional 롤백)으로 묶지 않는다.
+// 다른 테스트의 데이터와 섞이지 않도록 회원 이름을 매번 다르게 만들어서 회원 이름으로 검색하고, 만든 데이터는 @After에서 지운다.
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class OrderSearchCacheTest {
+
+    @Autowired
+    OrderService orderService;
+    @Autowired
+    MemberService memberService;
+    @Autowired
+    ItemService itemService;
+    @Autowired
+    MeterRegistry meterRegistry;
+    @Autowired
+    EntityManagerFactory emf;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    DataVersions dataVersions;
+
+    Statistics statistics;
+    CommittedRows committed;
+
+    @Before
+    public void setUp() {
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        committed = new CommittedRows(em, transactionTemplate);
+    }
+
+    @After
+    public void tearDown() {
+        committed.deleteAll();
+    }
+
+    @Test
+    public void 같은_검색은_캐시에서() throws Exception {
+        // given
+        String name = "cache-order-" + System.nanoTime();
+        Long memberId = join(name);
+        Long itemId = createBook();
+        orderService.order(memberId, itemId, 1);
+        orderService.findOrderListPage(search(name, OrderStatus.ORDER), null, 20);
+        double hits = hitCount();
+
+        // when
+        statistics.clear();
+        OrderPage<OrderListDto> page = orderService.findOrderListPage(search(name, OrderStatus.ORDER), null, 20);
+
+        // then
+        assertEquals(1, page.getContent().size());
+        assertEquals("캐시에 있으면 세대 확인 쿼리만 나간다.", 1, statistics.getPrepareStatementCount());
+        assertEquals(hits + 1, hitCount(), 0.0);
+    }
+
+    @Test
+    public void 주문_취소하면_무효화() throws Exception {
+        // given
+        String name = "cache-order-" + System.nanoTime();
+        Long memberId = join(name);
+        Long itemId = createBook();
+        Long orderId = orderService.order(memberId, itemId, 1);
+        assertEquals(1, orderService.findOrderListPage(search(name, OrderStatus.ORDER), null, 20).getContent().size());
+        assertEquals(0, orderService.findOrderListPage(search(name, OrderStatus.CANCEL), null, 20).getContent().size());
+
+        // when: 주문 하나 더
+        orderService.order(memberId, itemId, 1);
+
+        // then
+        assertEquals("새 주문이 보여야 한다.", 2, orderService.findOrderListPage(search(name, OrderStatus.ORDER), null, 20).getContent().size());
+        assertEquals(2, orderService.findOrderListPage(search(name, null), null, 20).getContent().size());
+
+        // when: 취소
+        orderService.cancelOrder(orderId);
+
+        // then
+        assertEquals(1, orderService.findOrderListPage(search(name, OrderStatus.ORDER), null, 20).getContent().size());
+        assertEquals(1, orderService.findOrderListPage(search(name, OrderStatus.CANCEL), null, 20).getContent().size());
+        assertEquals(2, orderService.findOrderListPage(search(name, null), null, 20).getContent().size());
+    }
+
+    @Test
+    public void 상품_이름_변경하면_무효화() throws Exception {
+        // given
+        String name = "cache-order-" + System.nanoTime();
+        Long memberId = join(name);
+        Long itemId = createBook();
+        orderService.order(memberId, itemId, 1);
+        assertEquals("cache book", orderService.findOrderListPage(search(name, null), null, 20).getContent().get(0).getItemName());
+
+        // when
+        itemService.updateItem(itemId, "renamed book", 10000, 100);
+
+        // then
+        assertEquals("renamed book", orderService.findOrderListPage(search(name, null), null, 20).getContent().get(0).getItemName());
+    }
+
+    @Test
+    public void 다른_서버의_주문도_바로_보인다() throws Exception {
+        // given: 검색 결과가 캐시에 있다.
+        String name = "cache-order-" + System.nanoTime();
+        Long memberId = join(name);
+        Long itemId = createBook();
+        orderService.order(memberId, itemId, 1);
+        assertEquals(1, orderService.findOrderListPage(search(name, OrderStatus.ORDER), null, 20).getContent().size());
+
+        // when: 다른 서버가 주문하고 세대를 올렸다. (이 서버의 캐시는 모른다)
+        transactionTemplate.execute(status -> {
+            Member member = em.find(Member.class, memberId);
+            Book book = em.find(Book.class, itemId);
+            em.persist(Order.createOrder(member, new Delivery(), OrderItem.createOrderItem(book, book.getPrice(), 1)));
+            dataVersions.bump(DataVersion.orders(OrderStatus.ORDER));
+            return null;
+        });
+
+        // then
+        assertEquals(2, orderService.findOrderListPage(search(name, OrderStatus.ORDER), null, 20).getContent().size());
+    }
+
+    private double hitCount() {
+        return meterRegistry.get("cache.gets").tag("cache", "orderSearch").tag("result", "hit")
+                .functionCounter().count();
+    }
+
+    private OrderSearch search(String memberName, OrderStatus status) {
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberName(memberName);
+        orderSearch.setOrderStatus(status);
+        return orderSearch;
+    }
+
+    private Long join(String name) {
+        Member member = new Member();
+        member.setName(name);
+        member.setAddress(new Address("서울", "경기", "123-123"));
+        return committed.member(memberService.join(member));
+    }
+
+    private Long createBook() {
+        Book book = new Book();
+        book.setName("cache book");
+        book.setPrice(10000);
+        book.setStockQuantity(100);
+        itemService.saveItem(book);
+        return committed.item(book.getId());
+    }
+}
@@ -1,13 +1,17 @@
 package jpabook.jpashop.service;
 
 import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.DeliveryStatus;
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderStatus;
 import jpabook.jpashop.domain.item.Book;
 import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.exception.InvalidRequestException;
 import jpabook.jpashop.exception.NotEnoughStockException;
 import jpabook.jpashop.repository.OrderRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -17,6 +21,10 @@ import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.*;
 
@@ -100,6 +108,149 @@ public class OrderServiceTest {
 
     }
 
+    @Test
+    public void 장바구니_주문() throws Exception {
+        // given
+        Member member = createTestMember();
+        Book book1 = createTestBook("jpa book", 10000, 10);
+        Book book2 = createTestBook("spring book", 20000, 5);
+        Book book3 = createTestBook("java book", 30000, 3);
+
+        // 상품 id 순서와 다르게 넘겨도 된다.
+        Map<Long, Integer> itemCounts = new LinkedHashMap<>();
+        itemCounts.put(book3.getId(), 1);
+        itemCounts.put(book1.getId(), 2);
+        itemCounts.put(book2.getId(), 3);
+
+        // when
+        Long orderId = orderService.checkout(member.getId(), itemCounts);
+
+        // then
+        Order testOrder = orderRepository.findOne(orderId);
+        Assert.assertEquals("상품 주문시 상태는 ORDER", OrderStatus.ORDER, testOrder.getStatus());
+        Assert.assertEquals("장바구니 상품이 모두 한 주문에 담겨야 한다.", 3, testOrder.getOrderItems().size());
+        Assert.assertEquals("주문 가격은 상품별 가격 * 수량의 합이다.", 10000 * 2 + 20000 * 3 + 30000, testOrder.getTotalPrice());
+        Assert.assertEquals(8, book1.getStockQuantity());
+        Assert.assertEquals(2, book2.getStockQuantity());
+        Assert.assertEquals(2, book3.getStockQuantity());
+    }
+
+    @Test(expected = NotEnoughStockException.class)
+    public void 장바구니_주문_재고수량초과() throws Exception {
+        // given
+        Member member = createTestMember();
+        Book book1 = createTestBook("jpa book", 10000, 10);
+        Book book2 = createTestBook("spring book", 20000, 1);
+
+        Map<Long, Integer> itemCounts = new LinkedHashMap<>();
+        itemCounts.put(book1.getId(), 2);
+        itemCounts.put(book2.getId(), 2);
+
+        // when
+        orderService.checkout(member.getId(), itemCounts);
+
+        // then
+        fail("재고 수량 부족 예외가 발생해야 한다.");
+    }
+
+    @Test(expected = InvalidRequestException.class)
+    public void 장바구니_주문_없는상품() throws Exception {
+        // given
+        Member member = createTestMember();
+        Book book = createTestBook("jpa book", 10000, 10);
+
+        Map<Long, Integer> itemCounts = new LinkedHashMap<>();
+        itemCounts.put(book.getId(), 1);
+        itemCounts.put(-1L, 1);
+
+        // when
+        orderService.checkout(member.getId(), itemCounts);
+
+        // then
+        fail("없는 상품이 있으면 예외가 발생해야 한다.");
+    }
+
+    @Test
+    public void 일괄_주문취소() throws Exception {
+        // given
+        Member member = createTestMember();
+        Book book1 = createTestBook("jpa book", 10000, 10);
+        Book book2 = createTestBook("spring book", 20000, 10);
+
+        Map<Long, Integer> itemCounts = new LinkedHashMap<>();
+        itemCounts.put(book1.getId(), 2);
+        itemCounts.put(book2.getId(), 1);
+        Long orderId1 = orderService.checkout(member.getId(), itemCounts);
+        Long orderId2 = orderService.order(member.getId(), book1.getId(), 3);
+        Long deliveredId = orderService.order(member.getId(), book2.getId(), 1);
+        // 배송 완료된 주문은 취소할 수 없다.
+        orderRepository.findOne(deliveredId).getDelivery().setStatus(DeliveryStatus.COMP);
+        em.flush();
+        em.clear();
+
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        // when
+        List<Long> cancelled = orderService.cancelOrders(Arrays.asList(orderId1, orderId2, deliveredId));
+
+        // then
+        long count = statistics.getPrepareStatementCount();
+        statistics.setStatisticsEnabled(false);
+        assertEquals("배송 완료된 주문은 건너뛴다.", Arrays.asList(orderId1, orderId2), cancelled);
+        assertEquals("잠금 + 상태 변경 + 배송 취소 + 집계 + 상품 2종 재고 복구 => 쿼리 6번", 6, count);
+
+        assertEquals(OrderStatus.CANCEL, orderRepository.findOne(orderId1).getStatus());
+        assertEquals(OrderStatus.CANCEL, orderRepository.findOne(orderId2).getStatus());
+        assertEquals(OrderStatus.ORDER, orderRepository.findOne(deliveredId).getStatus());
+        assertEquals(DeliveryStatus.CANCEL, orderRepository.findOne(orderId1).getDelivery().getStatus());
+        assertEquals("주문 취소된 상품은 재고가 복구되야 한다.", 10, em.find(Item.class, book1.getId()).getStockQuantity());
+        assertEquals("배송 완료된 주문의 재고는 그대로다.", 9, em.find(Item.class, book2.getId()).getStockQuantity());
+    }
+
+    @Test
+    public void 일괄_주문취소_인기상품() throws Exception {
+        // given
+        Member member = createTestMember();
+        Book book = createTestBook("hot book", 10000, 10);
+        book.enableHotMode(4);
+        Long orderId1 = orderService.order(member.getId(), book.getId(), 2);
+        Long orderId2 = orderService.order(member.getId(), book.getId(), 3);
+        em.flush();
+        em.clear();
+
+        // when
+        List<Long> cancelled = orderService.cancelOrders(Arrays.asList(orderId1, orderId2));
+
+        // then
+        assertEquals(2, cancelled.size());
+        assertEquals("재고 조각들의 합이 복구되야 한다.", 10, em.find(Item.class, book.getId()).getStockQuantity());
+    }
+
+    @Test
+    public void 묶음_주문_실패한_주문만_건너뜀() throws Exception {
+        // given
+        Member member = createTestMember();
+        Book book = createTestBook("jpa book", 10000, 3);
+        List<OrderIntakeRequest> requests = Arrays.asList(
+                new OrderIntakeRequest(member.getId(), book.getId(), 2),
+                new OrderIntakeRequest(member.getId(), book.getId(), 2),
+                new OrderIntakeRequest(member.getId(), -1L, 1),
+                new OrderIntakeRequest(member.getId(), book.getId(), 1));
+
+        // when
+        List<OrderIntakeResult> results = orderService.orderBatch(requests);
+
+        // then
+        assertTrue(results.get(0).isSuccess());
+        assertEquals("재고가 부족합니다.", results.get(1).getError());
+        assertEquals("존재하지 않는 상품입니다.", results.get(2).getError());
+        assertTrue(results.get(3).isSuccess());
+        assertEquals(OrderStatus.ORDER, orderRepository.findOne(results.get(3).getOrderId()).getStatus());
+        assertEquals("성공한 주문 수량만큼 재고가 줄어야 한다.", 0, book.getStockQuantity());
+    }
+
     private Book createTestBook(String name, int price, int stockQuantity) {
         Book book = new Book();
         book.setName(name);
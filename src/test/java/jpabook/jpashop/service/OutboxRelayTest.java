@@ -0,0 +1,227 @@
+package jpabook.jpashop.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.event.EventListener;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+// 주문 이벤트 아웃박스
+// 주문이 커밋되어야 릴레이가 이벤트를 볼 수 있으므로 @Transactional(롤백)을 쓰지 않는다.
+// => 만든 회원, 상품, 주문(이벤트)과 테스트 싱크의 위치 행은 @After에서 지운다.
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "jpashop.outbox.file.path=build/test-outbox/order-events.ndjson")
+public class OutboxRelayTest {
+
+    private static final String FAILING_SINK = "test-failing";
+
+    @Autowired
+    OutboxRelay outboxRelay;
+    @Autowired
+    OutboxService outboxService;
+    @Autowired
+    OrderService orderService;
+    @Autowired
+    EventCollector eventCollector;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Value("${jpashop.outbox.file.path}")
+    String filePath;
+
+    CommittedRows committed;
+
+    @Before
+    public void setUp() {
+        committed = new CommittedRows(em, transactionTemplate);
+    }
+
+    @After
+    public void tearDown() {
+        committed.deleteAll();
+        transactionTemplate.execute(status -> em.createQuery("delete from OutboxOffset o where o.name = :name")
+                .setParameter("name", FAILING_SINK)
+                .executeUpdate());
+    }
+
+    @Test
+    public void 주문_취소_이벤트를_커밋_순서대로_한_번씩_전달() throws Exception {
+        // given
+        Files.deleteIfExists(Paths.get(filePath));
+        Long memberId = createMember();
+        Long itemId = createBook();
+        Long orderId = orderService.order(memberId, itemId, 2);
+        orderService.cancelOrder(orderId);
+
+        // when
+        outboxRelay.relay();
+        outboxRelay.relay();
+
+        // then: 같은 프로세스의 리스너
+        List<OutboxMessage> received = eventCollector.messages.stream()
+                .filter(m -> orderId.equals(m.getAggregateId()))
+                .collect(Collectors.toList());
+        assertEquals("두 번 돌려도 한 번씩만", 2, received.size());
+        assertEquals(OrderOutbox.ORDER_PLACED, received.get(0).getEventType());
+        assertEquals(OrderOutbox.ORDER_CANCELLED, received.get(1).getEventType());
+        assertTrue(received.get(0).getPosition() < received.get(1).getPosition());
+        assertTrue(received.get(0).getPayload().contains("\"count\":2"));
+
+        // 파일 싱크
+        List<String> lines = Files.readAllLines(Paths.get(filePath), StandardCharsets.UTF_8);
+        assertTrue(lines.stream().anyMatch(l -> l.contains("\"position\":" + received.get(1).getPosition() + ",")));
+
+        // 모든 싱크에 전달된 이벤트는 지워진다.
+        Long remaining = transactionTemplate.execute(status -> em.createQuery(
+                "select count(e) from OutboxEvent e where e.aggregateId = :orderId", Long.class)
+                .setParameter("orderId", orderId)
+                .getSingleResult());
+        assertEquals(Long.valueOf(0), remaining);
+    }
+
+    @Test
+    public void 첫_전달에_실패한_싱크의_이벤트는_지우지_않는다() throws Exception {
+        // given: 새로 추가된 싱크, 시작할 때 위치 행이 등록된다.
+        OutboxSink failing = new OutboxSink() {
+            @Override
+            public String name() {
+                return FAILING_SINK;
+            }
+
+            @Override
+            public void publish(List<OutboxMessage> messages) throws Exception {
+                throw new IOException("sink is down");
+            }
+        };
+        outboxService.registerOffset(failing.name());
+        Long orderId = orderService.order(createMember(), createBook(), 1);
+        outboxService.sequence(1000);
+
+        // when: 첫 전달이 실패해서 롤백
+        try {
+            outboxService.publish(failing, 1000);
+            fail("싱크 예외가 그대로 나와야 한다.");
+        } catch (IOException expected) {
+        }
+        outboxService.deletePublished(Collections.singletonList(failing.name()));
+
+        // then: 위치 행은 남아 있고, 이 싱크가 받지 못한 이벤트는 지워지지 않는다.
+        assertEquals(Long.valueOf(1), countEvents(orderId));
+
+        // 릴레이는 지금 등록된 싱크만 보므로, 이 싱크(제거된 싱크)의 위치가 정리를 막지 않는다.
+        outboxRelay.relay();
+        assertEquals(Long.valueOf(0), countEvents(orderId));
+    }
+
+    @Test
+    public void 임대를_가진_노드_한_곳만_전달한다() throws Exception {
+        // given: 이 노드가 임대 중, 같은 싱크 설정으로 뜬 다른 노드
+        outboxRelay.relay();
+        List<OutboxMessage> otherNodeReceived = new CopyOnWriteArrayList<>();
+        OutboxRelay otherNode = new OutboxRelay(outboxService,
+                Arrays.asList(collectingSink("file", otherNodeReceived), collectingSink("application-events", otherNodeReceived)),
+                new SimpleMeterRegistry(), false, 500, 30);
+        Long orderId = orderService.order(createMember(), createBook(), 1);
+
+        // when
+        int published = otherNode.relay();
+
+        // then: 다른 노드는 이 노드의 임대가 끝나기 전에는 전달하지 않는다.
+        assertEquals(0, published);
+        assertTrue(otherNodeReceived.isEmpty());
+
+        // 이 노드가 임대를 내놓으면 (종료) 다른 노드가 이어받아 모든 싱크에 전달한다.
+        outboxRelay.releaseLease();
+        try {
+            assertEquals(2, otherNode.relay());
+            assertTrue(otherNodeReceived.stream().allMatch(m -> orderId.equals(m.getAggregateId())));
+            assertEquals("임대가 없는 노드는 전달하지 않는다.", 0, outboxRelay.relay());
+        } finally {
+            otherNode.releaseLease();
+        }
+    }
+
+    private static OutboxSink collectingSink(String name, List<OutboxMessage> received) {
+        return new OutboxSink() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public void publish(List<OutboxMessage> messages) {
+                received.addAll(messages);
+            }
+        };
+    }
+
+    private Long countEvents(Long orderId) {
+        return transactionTemplate.execute(status -> em.createQuery(
+                "select count(e) from OutboxEvent e where e.aggregateId = :orderId", Long.class)
+                .setParameter("orderId", orderId)
+                .getSingleResult());
+    }
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        EventCollector eventCollector() {
+            return new EventCollector();
+        }
+    }
+
+    static class EventCollector {
+        final List<OutboxMessage> messages = new CopyOnWriteArrayList<>();
+
+        @EventListener
+        public void on(OutboxMessage message) {
+            messages.add(message);
+        }
+    }
+
+    private Long createMember() {
+        return transactionTemplate.execute(status -> {
+            Member member = new Member();
+            member.setName("outbox-member-" + System.nanoTime());
+            member.setAddress(new Address("서울", "경기", "123-123"));
+            em.persist(member);
+            return committed.member(member.getId());
+        });
+    }
+
+    private Long createBook() {
+        return transactionTemplate.execute(status -> {
+            Book book = new Book();
+            book.setName("outbox book");
+            book.setPrice(10000);
+            book.setStockQuantity(10);
+            em.persist(book);
+            return committed.item(book.getId());
+        });
+    }
+}
@@ -0,0 +1,159 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+// 한 상품에 동시 주문을 몰아서 재고가 초과 판매(갱신 분실)되지 않는지 확인
+// 여러 스레드가 각자 트랜잭션을 커밋해야 하므로 @Transactional(롤백)을 쓰지 않는다. => 만든 데이터는 @After에서 지운다.
+@Slf4j
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class StockConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int ORDERS = 2000;
+    private static final int STOCK = 500;
+
+    @Autowired
+    OrderService orderService;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    ItemService itemService;
+
+    CommittedRows committed;
+
+    @Before
+    public void setUp() {
+        committed = new CommittedRows(em, transactionTemplate);
+    }
+
+    @After
+    public void tearDown() {
+        committed.deleteAll();
+    }
+
+    @Test
+    public void 동시_주문_재고_초과판매_없음() throws Exception {
+        Long memberId = createMember();
+        Long itemId = createBook();
+
+        stress("single row", memberId, itemId);
+    }
+
+    @Test
+    public void 인기상품_재고조각_동시_주문_재고_초과판매_없음() throws Exception {
+        Long memberId = createMember();
+        Long itemId = createBook();
+        itemService.enableHotMode(itemId, 8);
+
+        stress("8 shards", memberId, itemId);
+
+        // 조각들 중 음수가 된 것이 없어야 한다.
+        Long negativeShards = transactionTemplate.execute(status -> em.createQuery(
+                "select count(s) from ItemStockShard s where s.item.id = :itemId and s.quantity < 0", Long.class)
+                .setParameter("itemId", itemId)
+                .getSingleResult());
+        assertEquals(Long.valueOf(0), negativeShards);
+    }
+
+    private void stress(String label, Long memberId, Long itemId) throws InterruptedException {
+        AtomicInteger success = new AtomicInteger();
+        AtomicInteger soldOut = new AtomicInteger();
+        AtomicInteger conflict = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(ORDERS);
+
+        // when
+        for (int i = 0; i < ORDERS; i++) {
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    orderService.order(memberId, itemId, 1);
+                    success.incrementAndGet();
+                } catch (NotEnoughStockException e) {
+                    soldOut.incrementAndGet();
+                } catch (ConcurrencyFailureException e) {
+                    // 재시도 횟수를 다 쓴 충돌
+                    conflict.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        long startNanos = System.nanoTime();
+        start.countDown();
+        assertTrue("제한 시간 안에 모든 주문이 끝나야 한다.", done.await(5, TimeUnit.MINUTES));
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+        executor.shutdown();
+
+        // then
+        // 인기 상품이면 재고 조각들의 합
+        int stock = transactionTemplate.execute(status -> em.find(Item.class, itemId).getStockQuantity());
+        Long orderedSum = transactionTemplate.execute(status -> em.createQuery(
+                "select sum(oi.count) from OrderItem oi where oi.item.id = :itemId", Long.class)
+                .setParameter("itemId", itemId)
+                .getSingleResult());
+        long orderedCount = orderedSum == null ? 0 : orderedSum;
+        int oversell = (int) Math.max(0, orderedCount - STOCK);
+
+        log.info("[stock stress: {}] threads={}, orders={}, success={}, soldOut={}, conflict={}, oversell={}, elapsed={}ms, throughput={} orders/s",
+                label, THREADS, ORDERS, success.get(), soldOut.get(), conflict.get(), oversell,
+                elapsedMillis, ORDERS * 1000L / elapsedMillis);
+
+        assertEquals("초과 판매가 없어야 한다.", 0, oversell);
+        assertEquals("성공한 주문 수량만큼만 재고가 줄어야 한다. (갱신 분실 X)", STOCK - success.get(), stock);
+        assertEquals(success.get(), orderedCount);
+        assertTrue(stock >= 0);
+        assertEquals(ORDERS, success.get() + soldOut.get() + conflict.get());
+    }
+
+    private Long createMember() {
+        return transactionTemplate.execute(status -> {
+            Member member = new Member();
+            member.setName("stress-member-" + System.nanoTime());
+            member.setAddress(new Address("서울", "경기", "123-123"));
+            em.persist(member);
+            return committed.member(member.getId());
+        });
+    }
+
+    private Long createBook() {
+        return transactionTemplate.execute(status -> {
+            Book book = new Book();
+            book.setName("hot book");
+            book.setPrice(10000);
+            book.setStockQuantity(STOCK);
+            em.persist(book);
+            return committed.item(book.getId());
+        });
+    }
+}
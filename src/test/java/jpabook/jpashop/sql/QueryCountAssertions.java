@@ -0,0 +1,36 @@
+package jpabook.jpashop.sql;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+// 컨트롤러 요청의 쿼리 수 검증 (MockMvc로 요청한 뒤에)
+// 지연 로딩이 바뀌어서 쿼리가 늘어나면 테스트가 실패한다.
+public final class QueryCountAssertions {
+
+    private QueryCountAssertions() {
+    }
+
+    // handler: 컨트롤러 클래스.메서드 (예: OrderApiController.ordersV2)
+    public static void assertQueryCount(SqlStatementRecorder recorder, String handler, int max) {
+        RequestSqlStats stats = lastRequest(recorder, handler);
+        if (stats.getStatementCount() > max) {
+            fail("쿼리가 최대 " + max + "번이어야 하는데 " + stats.getStatementCount() + "번 실행되었다.\n" + stats);
+        }
+    }
+
+    // 같은 모양의 쿼리가 N + 1 기준 횟수 이상 반복되지 않아야 한다.
+    public static void assertNoNPlusOne(SqlStatementRecorder recorder, String handler) {
+        RequestSqlStats stats = lastRequest(recorder, handler);
+        Map<String, Integer> repeated = stats.getRepeatedShapes(recorder.getNPlusOneThreshold());
+        if (!repeated.isEmpty()) {
+            fail("N + 1 의심: " + repeated + "\n" + stats);
+        }
+    }
+
+    private static RequestSqlStats lastRequest(SqlStatementRecorder recorder, String handler) {
+        RequestSqlStats stats = recorder.lastRequest(handler);
+        assertNotNull(handler + " 요청 기록이 없다.", stats);
+        return stats;
+    }
+}
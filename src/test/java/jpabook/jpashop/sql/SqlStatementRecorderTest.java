@@ -0,0 +1,134 @@
+package jpabook.jpashop.sql;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.service.MemberService;
+import jpabook.jpashop.service.OrderIntakeQueue;
+import jpabook.jpashop.service.OrderTicket;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+
+import static jpabook.jpashop.sql.QueryCountAssertions.assertNoNPlusOne;
+import static jpabook.jpashop.sql.QueryCountAssertions.assertQueryCount;
+import static org.junit.Assert.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+public class SqlStatementRecorderTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    SqlStatementRecorder sqlStatementRecorder;
+    @Autowired
+    MeterRegistry meterRegistry;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberService memberService;
+    @Autowired
+    OrderIntakeQueue orderIntakeQueue;
+
+    @Test
+    public void 주문_주문상품_api_쿼리수() throws Exception {
+        // given: 주문마다 회원, 상품이 다르다. (지연 로딩이 in 절로 묶이지 않으면 주문 수만큼 쿼리)
+        for (int i = 0; i < 10; i++) {
+            Member member = new Member();
+            member.setName("sql-count-" + i);
+            member.setAddress(new Address("서울", "경기", "123-123"));
+            memberService.join(member);
+            Book book = new Book();
+            book.setName("sql count book " + i);
+            book.setPrice(10000);
+            book.setStockQuantity(100);
+            em.persist(book);
+            em.persist(Order.createOrder(member, new Delivery(), OrderItem.createOrderItem(book, book.getPrice(), 1)));
+        }
+        em.flush();
+        em.clear();
+
+        // when
+        mockMvc.perform(get("/api/v2/orders").param("memberName", "sql-count").param("size", "100"))
+                .andExpect(status().isOk());
+
+        // then: 이름 색인 확인(회원 목록 버전), 주문 + 회원 + 배송, 주문상품, 상품 => 4번
+        assertQueryCount(sqlStatementRecorder, "OrderApiController.ordersV2", 4);
+        assertNoNPlusOne(sqlStatementRecorder, "OrderApiController.ordersV2");
+        assertTrue(meterRegistry.get("sql.statements.per.request").tag("handler", "OrderApiController.ordersV2")
+                .summary().count() >= 1);
+    }
+
+    @Test
+    public void 같은_모양의_쿼리_반복은_N_플러스_1() throws Exception {
+        // given
+        sqlStatementRecorder.begin("Test.nPlusOne");
+        for (int i = 1; i <= sqlStatementRecorder.getNPlusOneThreshold(); i++) {
+            sqlStatementRecorder.record("select m.member_id, m.name from member m where m.member_id=" + i);
+        }
+        sqlStatementRecorder.record("select o.order_id from orders o where o.member_id in (?, ?, ?)");
+
+        // when
+        sqlStatementRecorder.end();
+
+        // then
+        RequestSqlStats stats = sqlStatementRecorder.lastRequest("Test.nPlusOne");
+        assertEquals(sqlStatementRecorder.getNPlusOneThreshold() + 1, stats.getStatementCount());
+        assertEquals(1, stats.getRepeatedShapes(sqlStatementRecorder.getNPlusOneThreshold()).size());
+        assertEquals(1, meterRegistry.get("sql.n_plus_one").tag("handler", "Test.nPlusOne").counter().count(), 0);
+    }
+
+    @Test
+    public void 비동기_요청은_한_번만_센다() throws Exception {
+        // given: 없는 회원의 주문 => 작업 스레드가 곧 실패로 끝낸다.
+        OrderTicket ticket = orderIntakeQueue.submit(-1L, -1L, 1);
+        String handler = "OrderApiController.orderTicketV1";
+        long before = requestCount(handler);
+
+        // when: 롱 폴링 => REQUEST, ASYNC 두 번 디스패치
+        MvcResult result = mockMvc.perform(get("/api/v1/orders/tickets/" + ticket.getId()).param("waitMillis", "5000"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+
+        // then: preHandle이 두 번 불려도 요청 하나에 지표 한 번
+        assertEquals(before + 1, requestCount(handler));
+    }
+
+    private long requestCount(String handler) {
+        DistributionSummary summary = meterRegistry.find("sql.statements.per.request").tag("handler", handler).summary();
+        return summary == null ? 0 : summary.count();
+    }
+
+    @Test
+    public void 쿼리_모양() throws Exception {
+        // 바인딩 값, 리터럴, in 절 길이가 달라도 같은 모양
+        assertEquals(RequestSqlStats.shape("select * from item i where i.item_id in (?, ?, ?)"),
+                RequestSqlStats.shape("select * from item i where i.item_id in (?)"));
+        assertEquals(RequestSqlStats.shape("select * from member m where m.name = 'kim' and m.member_id = 1"),
+                RequestSqlStats.shape("select * from member m  where m.name = 'lee' and m.member_id = 22"));
+        // 별칭의 숫자(member0_)는 그대로
+        assertEquals("select member0_.name from member member0_", RequestSqlStats.shape("select member0_.name from member member0_"));
+    }
+}